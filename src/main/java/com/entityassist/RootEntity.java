@@ -1,7 +1,10 @@
 package com.entityassist;
 
+import com.entityassist.querybuilder.builders.QueryBuilderFactory;
 import com.entityassist.querybuilder.builders.QueryBuilderRoot;
 import com.entityassist.services.entities.IRootEntity;
+import com.entityassist.validation.EntityValidator;
+import com.entityassist.validation.ValidationViolation;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -14,6 +17,7 @@ import org.hibernate.Session;
 import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -92,11 +96,10 @@ public abstract class RootEntity<J extends RootEntity<J, Q, I>, Q extends QueryB
     @NotNull
     public Q builder()
     {
-        Class<Q> foundQueryBuilderClass = getClassQueryBuilderClass();
         Q instance = null;
         try
         {
-            instance = IGuiceContext.get(foundQueryBuilderClass);
+            instance = QueryBuilderFactory.create(getClass(), this::getClassQueryBuilderClass);
             //noinspection unchecked
             instance.setEntity((J) this);
             return instance;
@@ -126,7 +129,8 @@ public abstract class RootEntity<J extends RootEntity<J, Q, I>, Q extends QueryB
     }
 
     /**
-     * Returns this classes associated query builder class
+     * Returns this classes associated query builder class.
+     * Only called once per entity class, the result is kept by the builder factory
      *
      * @return The query builder identified class
      */
@@ -146,7 +150,13 @@ public abstract class RootEntity<J extends RootEntity<J, Q, I>, Q extends QueryB
     @NotNull
     public List<String> validate()
     {
-        return builder().validateEntity((J) this);
+        List<String> errors = new ArrayList<>();
+        for (ValidationViolation violation : IGuiceContext.get(EntityValidator.class)
+                                                          .validate(this))
+        {
+            errors.add(violation.toString());
+        }
+        return errors;
     }
 
     /**
@@ -0,0 +1,85 @@
+package com.entityassist.converters;
+
+import com.entityassist.enumerations.ActiveFlag;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Converter;
+import jakarta.persistence.Converts;
+
+import java.io.Serializable;
+
+/**
+ * Stores the active flag as its rank in a small integer column instead of its name.
+ * <p>
+ * Every active flag range is a contiguous run of ranks, so the core query builders filter rank encoded entities with a single
+ * range predicate instead of an in list. Apply it on the entity class to override the inherited mapping, with the new column :
+ * <pre>
+ * &#64;Convert(attributeName = "activeFlag", converter = ActiveFlagRankConverter.class)
+ * &#64;AttributeOverride(name = "activeFlag", column = &#64;Column(name = "ActiveFlagRank", nullable = false))
+ * </pre>
+ * See ActiveFlagRankMigration to populate the column from the existing names.
+ */
+@Converter()
+public class ActiveFlagRankConverter implements AttributeConverter<ActiveFlag, Integer>, Serializable
+{
+	/**
+	 * The mapped name of the active flag attribute
+	 */
+	public static final String ATTRIBUTE_NAME = "activeFlag";
+
+	private static final ClassValue<Boolean> applied = new ClassValue<>()
+	{
+		@Override
+		protected Boolean computeValue(Class<?> type)
+		{
+			for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass())
+			{
+				Converts converts = current.getAnnotation(Converts.class);
+				if (converts != null)
+				{
+					for (Convert convert : converts.value())
+					{
+						if (isRankConversion(convert))
+						{
+							return true;
+						}
+					}
+				}
+				if (isRankConversion(current.getAnnotation(Convert.class)))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	};
+
+	@Override
+	public Integer convertToDatabaseColumn(ActiveFlag flag)
+	{
+		return (flag == null ? null : flag.getRank());
+	}
+
+	@Override
+	public ActiveFlag convertToEntityAttribute(Integer rank)
+	{
+		return (rank == null ? null : ActiveFlag.fromRank(rank));
+	}
+
+	/**
+	 * If the entity class stores its active flag through this converter
+	 *
+	 * @param entityClass The entity class
+	 *
+	 * @return if the active flag is rank encoded
+	 */
+	public static boolean isApplied(Class<?> entityClass)
+	{
+		return applied.get(entityClass);
+	}
+
+	private static boolean isRankConversion(Convert convert)
+	{
+		return convert != null && convert.converter() == ActiveFlagRankConverter.class && ATTRIBUTE_NAME.equals(convert.attributeName());
+	}
+}
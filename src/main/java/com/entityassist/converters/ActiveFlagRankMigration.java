@@ -0,0 +1,96 @@
+package com.entityassist.converters;
+
+import com.entityassist.enumerations.ActiveFlag;
+import jakarta.persistence.EntityManager;
+
+/**
+ * Moves a table from name stored active flags to rank stored active flags.
+ * <p>
+ * The statements add the rank column, fill it from the name column in one set based update, and index it.
+ * Run them in a maintenance window, then switch the entity to ActiveFlagRankConverter and drop the name column once nothing reads it.
+ */
+@SuppressWarnings("unused")
+public final class ActiveFlagRankMigration
+{
+	private ActiveFlagRankMigration()
+	{
+		//No config required
+	}
+
+	/**
+	 * The statement adding the rank column
+	 *
+	 * @param table      The table name
+	 * @param rankColumn The new rank column name
+	 *
+	 * @return The DDL statement
+	 */
+	public static String addColumnStatement(String table, String rankColumn)
+	{
+		return "ALTER TABLE " + table + " ADD COLUMN " + rankColumn + " SMALLINT";
+	}
+
+	/**
+	 * The statement filling the rank column from the name column, unknown names get the rank of Unknown
+	 *
+	 * @param table      The table name
+	 * @param nameColumn The existing name column
+	 * @param rankColumn The new rank column
+	 *
+	 * @return The update statement
+	 */
+	public static String updateStatement(String table, String nameColumn, String rankColumn)
+	{
+		StringBuilder sql = new StringBuilder(512).append("UPDATE ")
+		                                          .append(table)
+		                                          .append(" SET ")
+		                                          .append(rankColumn)
+		                                          .append(" = CASE ")
+		                                          .append(nameColumn);
+		for (ActiveFlag flag : ActiveFlag.values())
+		{
+			sql.append(" WHEN '")
+			   .append(flag.name())
+			   .append("' THEN ")
+			   .append(flag.getRank());
+		}
+		return sql.append(" ELSE ")
+		          .append(ActiveFlag.Unknown.getRank())
+		          .append(" END")
+		          .toString();
+	}
+
+	/**
+	 * The statement indexing the rank column
+	 *
+	 * @param table      The table name
+	 * @param rankColumn The rank column
+	 *
+	 * @return The DDL statement
+	 */
+	public static String createIndexStatement(String table, String rankColumn)
+	{
+		return "CREATE INDEX IDX_" + table + "_" + rankColumn + " ON " + table + " (" + rankColumn + ")";
+	}
+
+	/**
+	 * Adds, fills and indexes the rank column in the entity manager's current transaction
+	 *
+	 * @param entityManager The entity manager with an active transaction
+	 * @param table         The table name
+	 * @param nameColumn    The existing name column
+	 * @param rankColumn    The new rank column
+	 *
+	 * @return The number of rows filled
+	 */
+	public static int migrate(EntityManager entityManager, String table, String nameColumn, String rankColumn)
+	{
+		entityManager.createNativeQuery(addColumnStatement(table, rankColumn))
+		             .executeUpdate();
+		int updated = entityManager.createNativeQuery(updateStatement(table, nameColumn, rankColumn))
+		                           .executeUpdate();
+		entityManager.createNativeQuery(createIndexStatement(table, rankColumn))
+		             .executeUpdate();
+		return updated;
+	}
+}
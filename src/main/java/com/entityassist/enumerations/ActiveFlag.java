@@ -15,79 +15,79 @@ public enum ActiveFlag
 	/**
 	 * UnknownRange
 	 */
-	Unknown("The Active Flag Status is Unknown"),
+	Unknown(0, "The Active Flag Status is Unknown"),
 	/**
 	 * If the item is unspecified
 	 */
-	Unspecified("The Active Flag Status is not specified"),
+	Unspecified(10, "The Active Flag Status is not specified"),
 	/**
 	 * RemovedRange
 	 **/
-	Deleted("The given record has been deleted"),
+	Deleted(20, "The given record has been deleted"),
 	/**
 	 * If the item is simply hidden
 	 */
-	Hidden("The record has been hidden from queries"),
+	Hidden(30, "The record has been hidden from queries"),
 	/**
 	 * If the item should be invisible
 	 */
-	Invisible("This record has been deemed invisible"),
+	Invisible(40, "This record has been deemed invisible"),
 	/**
 	 * If the active status is errored
 	 */
-	Errored("The record is marked as an Error"),
+	Errored(50, "The record is marked as an Error"),
 	/**
 	 * VisibleRange
 	 */
-	Archived("This record is enabled, and archived out of current queries"),
+	Archived(60, "This record is enabled, and archived out of current queries"),
 	/**
 	 * If the item is saved for long term storage
 	 */
-	LongTermStorage("This record is marked active for archiving after 90 days"),
+	LongTermStorage(70, "This record is marked active for archiving after 90 days"),
 	/**
 	 * If the item is saved for mid term storage
 	 */
-	MidTermStorage("This record is marked active for archiving after 60 days"),
+	MidTermStorage(80, "This record is marked active for archiving after 60 days"),
 	/**
 	 * If the item is saved for short term storage
 	 */
-	ShortTermStorage("This record is marked active for archiving after 30 days"),
+	ShortTermStorage(90, "This record is marked active for archiving after 30 days"),
 	/**
 	 * If the item is resolved
 	 */
-	Resolved("This record marks the resolution of a previously Errored record"),
+	Resolved(100, "This record marks the resolution of a previously Errored record"),
 	/**
 	 * If the item is completed
 	 */
-	Completed("This record is marked as complete"),
+	Completed(110, "This record is marked as complete"),
 	/**
 	 * ActiveRange
 	 */
-	Pending("This record is currently pending for some other activity"),
+	Pending(120, "This record is currently pending for some other activity"),
 	/**
 	 * ActiveRange
 	 */
-	Active("This record is currently active for querying"),
+	Active(130, "This record is currently active for querying"),
 	/**
 	 * If the item is current
 	 */
-	Current("This record is marked as the currently active record"),
+	Current(140, "This record is marked as the currently active record"),
 	/**
 	 * HighlightedRange
 	 **/
-	Important("This record is deemed as important "),
+	Important(150, "This record is deemed as important "),
 	/**
 	 * If the item is highlighted
 	 */
-	Highlighted("This record should be highlighted"),
+	Highlighted(160, "This record should be highlighted"),
 	/**
 	 * PermanentRange
 	 */
-	Always("This record should always be shown but is modifiable"),
+	Always(170, "This record should always be shown but is modifiable"),
 	/**
 	 * If the item is permanent
 	 */
-	Permanent("This record is permanent");
+	Permanent(180, "This record is permanent");
 
 	private static final Set<ActiveFlag> PermanentRange = EnumSet.of(Always, Permanent);
 	private static final Set<ActiveFlag> HighlightedRangeAndUp = EnumSet.of(Important, Highlighted, Always, Permanent);
@@ -105,14 +105,51 @@ public enum ActiveFlag
 	private static final Set<ActiveFlag> RemovedRange = EnumSet.of(Deleted, Hidden, Invisible, Errored);
 
 
+	/**
+	 * The stored rank when the flag is rank encoded, ordered like the ranges and spaced to leave room for new flags
+	 */
+	private final int rank;
 	private String description;
 
 
-	ActiveFlag(String description)
+	ActiveFlag(int rank, String description)
 	{
+		this.rank = rank;
 		this.description = description;
 	}
 
+	/**
+	 * The rank stored for this flag when rank encoded, fixed once assigned
+	 *
+	 * @return The rank
+	 */
+	public int getRank()
+	{
+		return rank;
+	}
+
+	/**
+	 * Returns the flag stored with the given rank
+	 *
+	 * @param rank The stored rank
+	 *
+	 * @return The flag
+	 *
+	 * @throws IllegalArgumentException if no flag has the rank
+	 */
+	@NotNull
+	public static ActiveFlag fromRank(int rank)
+	{
+		for (ActiveFlag flag : values())
+		{
+			if (flag.rank == rank)
+			{
+				return flag;
+			}
+		}
+		throw new IllegalArgumentException("No active flag has the rank " + rank);
+	}
+
 	/**
 	 * Returns the permanent range of values
 	 *
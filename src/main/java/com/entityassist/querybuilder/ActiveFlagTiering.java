@@ -0,0 +1,347 @@
+package com.entityassist.querybuilder;
+
+import com.entityassist.enumerations.ActiveFlag;
+import com.entityassist.services.querybuilders.IQueryBuilderCore;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Enforces the storage lifecycle of the active flags on core entities.
+ * <p>
+ * By default rows flagged ShortTermStorage, MidTermStorage and LongTermStorage are archived once unchanged for 30, 60 and 90 days.
+ * Each run moves the rows of every registered entity with advanceActiveFlag, in chunks of the chunk size committed one at a time
+ * and separated by the pause, so a run never holds many row locks and yields to other traffic between chunks.
+ * <pre>
+ * ActiveFlagTiering tiering = new ActiveFlagTiering().register(() -&gt; new EntityClass().builder())
+ *                                                    .setPeriod(Duration.ofHours(6))
+ *                                                    .start();
+ * </pre>
+ */
+@SuppressWarnings("unused")
+public class ActiveFlagTiering
+{
+	private static final Logger log = Logger.getLogger(ActiveFlagTiering.class.getName());
+
+	/**
+	 * Creates a new builder for each tier of each run
+	 */
+	private final List<Supplier<? extends IQueryBuilderCore<?, ?, ?>>> builders = new ArrayList<>();
+	/**
+	 * The tiers by the flag they move rows from
+	 */
+	private final Map<ActiveFlag, Tier> tiers = new LinkedHashMap<>();
+
+	private final LongAdder runs = new LongAdder();
+	private final LongAdder advanced = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+
+	/**
+	 * The number of rows updated in one transaction
+	 */
+	private long chunkSize = 1000;
+	/**
+	 * The time waited between chunks
+	 */
+	private Duration pause = Duration.ofMillis(250);
+	/**
+	 * The time between runs
+	 */
+	private Duration period = Duration.ofHours(1);
+	/**
+	 * The time before the first run
+	 */
+	private Duration initialDelay = Duration.ofMinutes(1);
+
+	private ScheduledExecutorService scheduler;
+	private ScheduledFuture<?> schedule;
+
+	public ActiveFlagTiering()
+	{
+		setTier(ActiveFlag.ShortTermStorage, ActiveFlag.Archived, Duration.ofDays(30));
+		setTier(ActiveFlag.MidTermStorage, ActiveFlag.Archived, Duration.ofDays(60));
+		setTier(ActiveFlag.LongTermStorage, ActiveFlag.Archived, Duration.ofDays(90));
+	}
+
+	/**
+	 * Registers an entity to tier, the supplier must return a new builder on each call
+	 *
+	 * @param builder Creates a builder for the entity, optionally with filters limiting the rows tiered
+	 * @return This
+	 */
+	public synchronized ActiveFlagTiering register(Supplier<? extends IQueryBuilderCore<?, ?, ?>> builder)
+	{
+		builders.add(builder);
+		return this;
+	}
+
+	/**
+	 * Sets the tier moving rows off a flag, replacing the default for that flag
+	 *
+	 * @param from The flag of the rows to move
+	 * @param to   The flag to move them to
+	 * @param age  How long a row must have been unchanged
+	 * @return This
+	 */
+	public synchronized ActiveFlagTiering setTier(ActiveFlag from, ActiveFlag to, Duration age)
+	{
+		if (from == to)
+		{
+			throw new UnsupportedOperationException("A tier must move rows to a different flag : " + from);
+		}
+		tiers.put(from, new Tier(from, to, age));
+		return this;
+	}
+
+	/**
+	 * Stops moving rows off a flag
+	 *
+	 * @param from The flag
+	 * @return This
+	 */
+	public synchronized ActiveFlagTiering removeTier(ActiveFlag from)
+	{
+		tiers.remove(from);
+		return this;
+	}
+
+	/**
+	 * The tiers by the flag they move rows from
+	 *
+	 * @return A copy of the tiers
+	 */
+	public synchronized Map<ActiveFlag, Tier> getTiers()
+	{
+		return new LinkedHashMap<>(tiers);
+	}
+
+	public long getChunkSize()
+	{
+		return chunkSize;
+	}
+
+	/**
+	 * Sets the number of rows updated in one transaction
+	 *
+	 * @param chunkSize The chunk size
+	 * @return This
+	 */
+	public ActiveFlagTiering setChunkSize(long chunkSize)
+	{
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+	public Duration getPause()
+	{
+		return pause;
+	}
+
+	/**
+	 * Sets the time waited between chunks, the throttle keeping runs from contending with other traffic
+	 *
+	 * @param pause The pause, null for none
+	 * @return This
+	 */
+	public ActiveFlagTiering setPause(Duration pause)
+	{
+		//A pause always commits each chunk on its own, the scheduler thread has no transaction to join
+		this.pause = pause == null ? Duration.ZERO : pause;
+		return this;
+	}
+
+	public Duration getPeriod()
+	{
+		return period;
+	}
+
+	/**
+	 * Sets the time between runs, applied on the next start
+	 *
+	 * @param period The period
+	 * @return This
+	 */
+	public ActiveFlagTiering setPeriod(Duration period)
+	{
+		this.period = period;
+		return this;
+	}
+
+	public Duration getInitialDelay()
+	{
+		return initialDelay;
+	}
+
+	/**
+	 * Sets the time before the first run, applied on the next start
+	 *
+	 * @param initialDelay The delay
+	 * @return This
+	 */
+	public ActiveFlagTiering setInitialDelay(Duration initialDelay)
+	{
+		this.initialDelay = initialDelay;
+		return this;
+	}
+
+	/**
+	 * The number of completed runs
+	 *
+	 * @return the run count
+	 */
+	public long getRuns()
+	{
+		return runs.sum();
+	}
+
+	/**
+	 * The rows moved over all runs
+	 *
+	 * @return the row count
+	 */
+	public long getAdvanced()
+	{
+		return advanced.sum();
+	}
+
+	/**
+	 * The tiers that failed over all runs
+	 *
+	 * @return the failure count
+	 */
+	public long getFailures()
+	{
+		return failures.sum();
+	}
+
+	/**
+	 * Starts running on a schedule with a single daemon thread, runs never overlap
+	 *
+	 * @return This
+	 */
+	public synchronized ActiveFlagTiering start()
+	{
+		if (schedule != null)
+		{
+			throw new UnsupportedOperationException("Active flag tiering has already been started");
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "active-flag-tiering");
+			thread.setDaemon(true);
+			return thread;
+		});
+		schedule = scheduler.scheduleWithFixedDelay(this::runOnce, initialDelay.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+		return this;
+	}
+
+	/**
+	 * Stops the schedule, interrupting a run in progress at its next pause
+	 */
+	public synchronized void stop()
+	{
+		if (schedule != null)
+		{
+			schedule.cancel(true);
+			scheduler.shutdownNow();
+			schedule = null;
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * If running on a schedule
+	 *
+	 * @return if started
+	 */
+	public synchronized boolean isStarted()
+	{
+		return schedule != null;
+	}
+
+	/**
+	 * Runs every tier of every registered entity once on the calling thread.
+	 * A failed tier is logged and the run continues with the next
+	 *
+	 * @return The number of rows moved
+	 */
+	public long runOnce()
+	{
+		List<Supplier<? extends IQueryBuilderCore<?, ?, ?>>> entities;
+		List<Tier> run;
+		synchronized (this)
+		{
+			entities = new ArrayList<>(builders);
+			run = new ArrayList<>(tiers.values());
+		}
+		long moved = 0;
+		for (Supplier<? extends IQueryBuilderCore<?, ?, ?>> entity : entities)
+		{
+			for (Tier tier : run)
+			{
+				if (Thread.currentThread()
+				          .isInterrupted())
+				{
+					return moved;
+				}
+				try
+				{
+					long rows = entity.get()
+					                  .advanceActiveFlag(tier.getFrom(), tier.getTo(), tier.getAge(), chunkSize, pause);
+					moved += rows;
+					advanced.add(rows);
+					log.log(Level.FINE, "Moved " + rows + " rows from " + tier.getFrom() + " to " + tier.getTo());
+				}
+				catch (RuntimeException e)
+				{
+					failures.increment();
+					log.log(Level.SEVERE, "Unable to move rows from " + tier.getFrom() + " to " + tier.getTo(), e);
+				}
+			}
+		}
+		runs.increment();
+		return moved;
+	}
+
+	/**
+	 * Moves rows unchanged for longer than the age from one flag to another
+	 */
+	public static final class Tier
+	{
+		private final ActiveFlag from;
+		private final ActiveFlag to;
+		private final Duration age;
+
+		public Tier(ActiveFlag from, ActiveFlag to, Duration age)
+		{
+			this.from = from;
+			this.to = to;
+			this.age = age;
+		}
+
+		public ActiveFlag getFrom()
+		{
+			return from;
+		}
+
+		public ActiveFlag getTo()
+		{
+			return to;
+		}
+
+		public Duration getAge()
+		{
+			return age;
+		}
+	}
+}
@@ -1,28 +1,58 @@
 package com.entityassist.querybuilder;
 
 import com.entityassist.BaseEntity;
+import com.entityassist.EntityAssistException;
 import com.entityassist.enumerations.OrderByType;
+import com.entityassist.querybuilder.builders.CurrentVersionCache;
 import com.entityassist.querybuilder.builders.DefaultQueryBuilder;
 import com.entityassist.querybuilder.builders.JoinExpression;
+import com.entityassist.querybuilder.builders.KeysetPage;
+import com.entityassist.querybuilder.builders.QueryCoalescer;
+import com.entityassist.querybuilder.builders.QueryExecutors;
+import com.entityassist.querybuilder.builders.QueryPlanCache;
+import com.entityassist.querybuilder.builders.QueryResultCache;
+import com.entityassist.querybuilder.builders.ResultPublisher;
 import com.entityassist.services.querybuilders.IQueryBuilder;
 import com.google.common.base.Strings;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.FlushModeType;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.NonUniqueResultException;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.*;
 import jakarta.persistence.metamodel.Attribute;
 import jakarta.persistence.metamodel.PluralAttribute;
 import jakarta.persistence.metamodel.SingularAttribute;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.entityassist.querybuilder.builders.IFilterExpression.isPluralOrMapAttribute;
 import static com.entityassist.querybuilder.builders.IFilterExpression.isSingularAttribute;
@@ -45,6 +75,41 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 	 */
 	private boolean returnFirst;
 	
+	/**
+	 * The JDBC fetch size for reads, null for the driver default
+	 */
+	private Integer fetchSize;
+	/**
+	 * The number of streamed rows after which they are detached, 0 to keep them attached
+	 */
+	private int streamDetachInterval;
+	/**
+	 * If the loaded entities are read only, without snapshots or dirty checking
+	 */
+	private boolean readOnly;
+	
+	/**
+	 * The default number of ids loaded per in clause by getAllById
+	 */
+	public static int defaultIdChunkSize = 500;
+	/**
+	 * The number of ids loaded per in clause by getAllById
+	 */
+	private int idChunkSize = defaultIdChunkSize;
+	/**
+	 * The number of chunks getAllById loads concurrently, each on its own entity manager
+	 */
+	private int idChunkParallelism = 1;
+	
+	/**
+	 * The values assigned by a bulk update, in the order they were set
+	 */
+	private final Map<SingularAttribute<? super E, ?>, Object> updateValues = new LinkedHashMap<>();
+	/**
+	 * The executor the async operations run on, null for the shared default
+	 */
+	private Executor asyncExecutor;
+	
 	/**
 	 * Trigger if select should happen
 	 *
@@ -73,31 +138,66 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 	@Override
 	public Long getCount()
 	{
-		if (!selected)
-		{
-			selectCount();
-			select();
-		}
 		if (onSelect())
 		{
-			TypedQuery<Long> query = getQueryCount();
-			applyCache(query);
-			onSelectExecution(query);
-			Long j;
-			try
+			QueryResultCache.ResultKey resultKey = isResultCached() || isCoalesced() ? QueryResultCache.key(this, QueryPlanCache.COUNT, Long.class) : null;
+			if (resultKey != null && isResultCached())
 			{
-				j = query.getSingleResult();
-				return j;
+				Long cached = QueryResultCache.get(resultKey);
+				if (cached != null)
+				{
+					return cached;
+				}
 			}
-			catch (NoResultException nre)
+			if (resultKey != null && isCoalesced() && isShareable(resultKey))
 			{
-				Logger.getLogger(getClass().getName()).log(Level.WARNING, "Couldn't find object with name : " + getEntityClass().getName(), nre);
-				return 0L;
+				return QueryCoalescer.execute(resultKey, () -> Collections.singletonList(selectCount(resultKey)))
+				                     .get(0);
 			}
+			return selectCount(resultKey);
 		}
 		return null;
 	}
 	
+	/**
+	 * If rows read for the key may be shared with other callers, which they may not while this session has uncommitted writes the key reads
+	 *
+	 * @param resultKey The result key
+	 * @return if the result may be shared
+	 */
+	private boolean isShareable(QueryResultCache.ResultKey resultKey)
+	{
+		return !QueryResultCache.hasPendingWrites(getEntityManager().unwrap(Session.class), resultKey);
+	}
+	
+	/**
+	 * Runs the count for getCount, storing it in the result cache when enabled
+	 *
+	 * @param resultKey The result key when the count is shared, otherwise null
+	 * @return The count
+	 */
+	private Long selectCount(QueryResultCache.ResultKey resultKey)
+	{
+		TypedQuery<Long> query = getQueryCount();
+		applyCache(query);
+		onSelectExecution(query);
+		Long j;
+		try
+		{
+			j = query.getSingleResult();
+			if (resultKey != null && isResultCached() && j != null && isShareable(resultKey))
+			{
+				QueryResultCache.put(resultKey, j);
+			}
+			return j;
+		}
+		catch (NoResultException nre)
+		{
+			Logger.getLogger(getClass().getName()).log(Level.WARNING, "Couldn't find object with name : " + getEntityClass().getName(), nre);
+			return 0L;
+		}
+	}
+	
 	/**
 	 * Returns the generated query, always created new
 	 *
@@ -107,11 +207,9 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 	@Override
 	public <T> TypedQuery<T> getQuery()
 	{
-		if (!selected)
-		{
-			select();
-		}
-		return getEntityManager().createQuery(getCriteriaQuery());
+		TypedQuery<T> query = compileQuery(false);
+		bindParameters(query);
+		return query;
 	}
 	
 	/**
@@ -122,15 +220,65 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 	 */
 	@Override
 	public <T> TypedQuery<T> getQueryCount()
+	{
+		return (TypedQuery<T>) createQuery(Long.class, QueryPlanCache.COUNT);
+	}
+	
+	/**
+	 * Builds the criteria query and creates the query from it, without binding any values
+	 *
+	 * @param count If the query is for a count
+	 * @param <T>   Any type returned
+	 * @return A new typed query
+	 */
+	private <T> TypedQuery<T> compileQuery(boolean count)
 	{
 		if (!selected)
 		{
-			selectCount();
+			if (count)
+			{
+				selectCount();
+			}
 			select();
 		}
 		return getEntityManager().createQuery(getCriteriaQuery());
 	}
 	
+	/**
+	 * Creates the bound query for execution.
+	 * <p>
+	 * When this builder is plan cached and its shape has been compiled before, the compiled plan is bound with this builder's values
+	 * and the select walk is skipped entirely. Otherwise the criteria query is built, and registered as the plan for its shape.
+	 *
+	 * @param resultType The type of result
+	 * @param purpose    The plan purpose (select or count)
+	 * @param <T>        The result type
+	 * @return A bound typed query
+	 */
+	private <T> TypedQuery<T> createQuery(Class<T> resultType, String purpose)
+	{
+		String fingerprint = null;
+		if (isPlanCached() && !selected && !isDelete() && !isUpdate())
+		{
+			fingerprint = getPlanFingerprint(purpose);
+			if (fingerprint != null)
+			{
+				Optional<TypedQuery<T>> planned = QueryPlanCache.fromPlan(getEntityManager(), fingerprint, getBoundValues(), resultType);
+				if (planned.isPresent())
+				{
+					return planned.get();
+				}
+			}
+		}
+		TypedQuery<T> query = compileQuery(QueryPlanCache.COUNT.equals(purpose));
+		if (fingerprint != null)
+		{
+			QueryPlanCache.register(getEntityManager(), fingerprint, getBoundParameterNames(), query);
+		}
+		bindParameters(query);
+		return query;
+	}
+	
 	/**
 	 * Prepares the select statement
 	 *
@@ -206,7 +354,11 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 			cq.having((Expression<Boolean>) expression);
 		}
 		
-		if (!getOrderBys().isEmpty())
+		if (isKeyset())
+		{
+			cq.orderBy(getKeysetOrders());
+		}
+		else if (!getOrderBys().isEmpty())
 		{
 			List<Order> orderBys = new ArrayList<>();
 			getOrderBys().forEach((key, value) ->
@@ -332,12 +484,10 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 	@SuppressWarnings({"Duplicates", "unused"})
 	public <T> Stream<T> getResultStream(Class<T> resultType)
 	{
-		if (!selected)
-		{
-			select();
-		}
-		TypedQuery<T> query = getQuery();
+		TypedQuery<T> query = createQuery(resultType, QueryPlanCache.SELECT);
 		applyCache(query);
+		applyReadOnly(query);
+		applyFetchSize(query);
 		if (getMaxResults() != null)
 		{
 			query.setMaxResults(getMaxResults());
@@ -346,7 +496,214 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 		{
 			query.setFirstResult(getFirstResults());
 		}
-		return query.getResultStream();
+		if (streamDetachInterval <= 0)
+		{
+			return query.getResultStream();
+		}
+		return boundedStream(query);
+	}
+	
+	/**
+	 * Scrolls the query forward only, detaching the streamed rows from the persistence context every stream detach interval rows,
+	 * so the heap stays constant however many rows are read. The cursor is closed when the stream is exhausted or closed.
+	 *
+	 * @param query The query to scroll
+	 * @param <T>   The row type
+	 * @return A sequential stream that must be closed if not fully consumed
+	 */
+	private <T> Stream<T> boundedStream(TypedQuery<T> query)
+	{
+		ScrollableResults<T> results = query.unwrap(org.hibernate.query.Query.class)
+		                                    .scroll(ScrollMode.FORWARD_ONLY);
+		Session session = getEntityManager().unwrap(Session.class);
+		int interval = streamDetachInterval;
+		List<Object> pending = new ArrayList<>(interval);
+		Runnable detachPending = () -> {
+			for (Object row : pending)
+			{
+				if (session.contains(row))
+				{
+					session.detach(row);
+				}
+			}
+			pending.clear();
+		};
+		Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL)
+		{
+			private boolean open = true;
+			
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action)
+			{
+				if (!open)
+				{
+					return false;
+				}
+				if (!results.next())
+				{
+					open = false;
+					detachPending.run();
+					results.close();
+					return false;
+				}
+				T row = results.get();
+				if (row instanceof BaseEntity)
+				{
+					((BaseEntity<?, ?, ?>) row).setFake(false);
+					pending.add(row);
+				}
+				action.accept(row);
+				if (pending.size() >= interval)
+				{
+					detachPending.run();
+				}
+				return true;
+			}
+		};
+		return StreamSupport.stream(spliterator, false)
+		                    .onClose(() -> {
+			                    detachPending.run();
+			                    results.close();
+		                    });
+	}
+	
+	/**
+	 * Marks the query read only, so loaded entities keep no snapshot and are never dirty checked,
+	 * and only flushes pending changes on commit instead of before the query
+	 *
+	 * @param query The query
+	 */
+	private void applyReadOnly(TypedQuery<?> query)
+	{
+		if (readOnly)
+		{
+			query.setHint("org.hibernate.readOnly", true);
+			query.setFlushMode(FlushModeType.COMMIT);
+		}
+	}
+	
+	/**
+	 * Loads the results as read only entities.
+	 * <p>
+	 * Hibernate keeps no loaded state snapshot for read only entities and skips them when flushing,
+	 * and the query does not flush pending changes before running. Changes made to the returned entities are not persisted.
+	 *
+	 * @return This
+	 */
+	@Override
+	@NotNull
+	public J readOnly()
+	{
+		return setReadOnly(true);
+	}
+	
+	/**
+	 * If the results are loaded as read only entities
+	 *
+	 * @return if read only
+	 */
+	@Override
+	public boolean isReadOnly()
+	{
+		return readOnly;
+	}
+	
+	/**
+	 * Sets if the results are loaded as read only entities
+	 *
+	 * @param readOnly if read only
+	 * @return This
+	 */
+	@Override
+	@NotNull
+	public J setReadOnly(boolean readOnly)
+	{
+		this.readOnly = readOnly;
+		return (J) this;
+	}
+	
+	/**
+	 * Applies the JDBC fetch size hint if one is configured
+	 *
+	 * @param query The query
+	 */
+	private void applyFetchSize(TypedQuery<?> query)
+	{
+		if (fetchSize != null)
+		{
+			query.setHint("org.hibernate.fetchSize", fetchSize);
+		}
+	}
+	
+	/**
+	 * The JDBC fetch size applied to list and stream reads
+	 *
+	 * @return The fetch size or null for the driver default
+	 */
+	@Override
+	public Integer getFetchSize()
+	{
+		return fetchSize;
+	}
+	
+	/**
+	 * Sets the JDBC fetch size applied to list and stream reads
+	 *
+	 * @param fetchSize The fetch size or null for the driver default
+	 * @return This
+	 */
+	@Override
+	@NotNull
+	public J setFetchSize(Integer fetchSize)
+	{
+		this.fetchSize = fetchSize;
+		return (J) this;
+	}
+	
+	/**
+	 * The number of rows after which getResultStream detaches the streamed entities
+	 *
+	 * @return The interval, 0 when streamed rows stay attached
+	 */
+	@Override
+	public int getStreamDetachInterval()
+	{
+		return streamDetachInterval;
+	}
+	
+	/**
+	 * Sets the number of rows after which getResultStream detaches the streamed entities.
+	 * <p>
+	 * When set, the stream scrolls the results forward only, and must be closed (try-with-resources) if it is not fully consumed
+	 *
+	 * @param streamDetachInterval The interval, 0 to keep streamed rows attached
+	 * @return This
+	 */
+	@Override
+	@NotNull
+	public J setStreamDetachInterval(int streamDetachInterval)
+	{
+		this.streamDetachInterval = streamDetachInterval;
+		return (J) this;
+	}
+	
+	/**
+	 * Streams the results in constant memory, with the given JDBC fetch size and detaching the rows in batches of the same size.
+	 * <p>
+	 * The returned stream must be closed (try-with-resources) if it is not fully consumed
+	 *
+	 * @param resultType The result type
+	 * @param fetchSize  The rows fetched per round trip and detached per batch
+	 * @param <T>        The result type
+	 * @return A sequential stream of the results
+	 */
+	@Override
+	@NotNull
+	public <T> Stream<T> getBoundedStream(Class<T> resultType, int fetchSize)
+	{
+		setFetchSize(fetchSize);
+		setStreamDetachInterval(fetchSize);
+		return getResultStream(resultType);
 	}
 	
 	/**
@@ -381,17 +738,18 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 	 * @return Optional of the given class type (which should be a select column)
 	 */
 	@Override
-	@SuppressWarnings({"Duplicates", "unused"})
+	@SuppressWarnings({"Duplicates", "unused", "unchecked"})
 	@NotNull
 	public <T> Optional<T> get(@NotNull Class<T> asType)
 	{
-		if (!selected)
-		{
-			select();
-		}
 		if (onSelect())
 		{
-			TypedQuery<T> query = getQuery();
+			if (isIdLookup() && asType.isAssignableFrom(getEntityClass()))
+			{
+				return Optional.ofNullable((T) findById(getEntityManager()));
+			}
+			TypedQuery<T> query = createQuery(asType, QueryPlanCache.SELECT);
+			applyReadOnly(query);
 			if (getMaxResults() != null)
 			{
 				query.setMaxResults(getMaxResults());
@@ -476,6 +834,32 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 		return Optional.empty();
 	}
 	
+	/**
+	 * Loads the find(id) entity through the entity manager, using the persistence context and second level cache
+	 *
+	 * @param entityManager The entity manager to load with
+	 * @return The entity or null if not found
+	 */
+	private E findById(EntityManager entityManager)
+	{
+		E found = readOnly ? entityManager.unwrap(Session.class)
+		                                  .byId(getEntityClass())
+		                                  .withReadOnly(true)
+		                                  .load(getFindId())
+		                   : entityManager.find(getEntityClass(), getFindId());
+		if (found == null)
+		{
+			Logger.getLogger(getClass().getName()).log(Level.FINER, "Couldn't find object : " + getEntityClass().getName() + "}");
+			return null;
+		}
+		found.setFake(false);
+		if (detach)
+		{
+			entityManager.detach(found);
+		}
+		return found;
+	}
+	
 	/**
 	 * If this builder is configured to return the first row
 	 *
@@ -522,79 +906,1028 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 	 * @return The type of the column returned
 	 */
 	@Override
-	@SuppressWarnings({"Duplicates", "unused"})
+	@SuppressWarnings({"Duplicates", "unused", "unchecked"})
 	@NotNull
 	public <T> List<T> getAll(Class<T> returnClassType)
 	{
-		if (!selected)
-		{
-			select();
-		}
 		if (onSelect())
 		{
-			TypedQuery<T> query = getQuery();
-			applyCache(query);
-			if (getMaxResults() != null)
-			{
-				query.setMaxResults(getMaxResults());
-			}
-			if (getFirstResults() != null)
+			if (isIdLookup() && returnClassType.isAssignableFrom(getEntityClass()))
 			{
-				query.setFirstResult(getFirstResults());
+				E found = findById(getEntityManager());
+				return found == null ? new ArrayList<>() : new ArrayList<>(List.of((T) found));
 			}
-			onSelectExecution(query);
-			List<T> j;
-			j = query.getResultList();
-			if (!j.isEmpty())
+			QueryResultCache.ResultKey resultKey = isResultCached() || isCoalesced() ? QueryResultCache.key(this, QueryPlanCache.SELECT, returnClassType) : null;
+			if (resultKey != null && isResultCached())
 			{
-				if (detach)
+				List<T> cached = QueryResultCache.get(resultKey);
+				if (cached != null)
 				{
-					for (T t : j)
-					{
-						try
-						{
-							if (BaseEntity.class.isAssignableFrom(t.getClass()))
-							{
-								//noinspection rawtypes
-								((BaseEntity) t)
-										.setFake(false);
-							}
-							getEntityManager().detach(t);
-						}
-						catch (Throwable T)
-						{
-							Logger.getLogger(getClass().getName()).finer("Unable to detach : " + t.getClass()
-							                                   .getName());
-						}
-					}
+					return new ArrayList<>(cached);
 				}
 			}
-			return j;
+			if (resultKey != null && isCoalesced() && isShareable(resultKey))
+			{
+				return QueryCoalescer.execute(resultKey, () -> selectAll(returnClassType, resultKey));
+			}
+			return selectAll(returnClassType, resultKey);
 		}
 		return null;
 	}
 	
 	/**
-	 * Sets whether or not to detach the selected entity/ies
+	 * Runs the select for getAll, detaching the rows when they are shared through the result cache or coalescing
 	 *
-	 * @return This
+	 * @param returnClassType The row type
+	 * @param resultKey       The result key when the rows are shared, otherwise null
+	 * @param <T>             The row type
+	 * @return The rows
 	 */
-	@Override
-	public J detach()
+	private <T> List<T> selectAll(Class<T> returnClassType, QueryResultCache.ResultKey resultKey)
 	{
-		detach = true;
-		return (J) this;
-	}
-	
-	/**
-	 * Returns the number of rows affected by the delete.
-	 * <p>
-	 * Bulk Delete Operation
-	 * <p>
-	 * WARNING : Be very careful if you haven't added a filter this will truncate the table or throw a unsupported exception if no filters.
-	 *
-	 * @return number of results deleted
-	 */
+		TypedQuery<T> query = createQuery(returnClassType, QueryPlanCache.SELECT);
+		applyCache(query);
+		applyReadOnly(query);
+		applyFetchSize(query);
+		if (getMaxResults() != null)
+		{
+			query.setMaxResults(getMaxResults());
+		}
+		if (getFirstResults() != null)
+		{
+			query.setFirstResult(getFirstResults());
+		}
+		onSelectExecution(query);
+		boolean shared = detach || resultKey != null;
+		boolean contextWasEmpty = shared && getEntityManager().unwrap(Session.class)
+		                                                      .getStatistics()
+		                                                      .getEntityCount() == 0;
+		List<T> j;
+		j = query.getResultList();
+		for (T t : j)
+		{
+			if (t instanceof BaseEntity)
+			{
+				//noinspection rawtypes
+				((BaseEntity) t).setFake(false);
+			}
+		}
+		if (shared && !j.isEmpty())
+		{
+			detachAll(j, contextWasEmpty);
+		}
+		//Rows read with this session's uncommitted writes stay with this caller
+		if (resultKey != null && isResultCached() && isShareable(resultKey))
+		{
+			QueryResultCache.put(resultKey, Collections.unmodifiableList(new ArrayList<>(j)));
+		}
+		return j;
+	}
+	
+	/**
+	 * Detaches the loaded rows in a single operation when they are the only entities in the persistence context,
+	 * otherwise one by one
+	 *
+	 * @param rows            The loaded rows
+	 * @param contextWasEmpty If the persistence context held no entities before the rows were loaded
+	 */
+	private void detachAll(List<?> rows, boolean contextWasEmpty)
+	{
+		if (contextWasEmpty)
+		{
+			getEntityManager().clear();
+			return;
+		}
+		for (Object row : rows)
+		{
+			try
+			{
+				getEntityManager().detach(row);
+			}
+			catch (Throwable T)
+			{
+				Logger.getLogger(getClass().getName()).finer("Unable to detach : " + row.getClass()
+				                                                                    .getName());
+			}
+		}
+	}
+	
+	/**
+	 * Returns a page of rows using keyset (seek) pagination instead of an offset.
+	 * <p>
+	 * Rows are ordered by this builder's order bys followed by the identifier, and the continuation token of a page
+	 * seeks directly past its last row, so deep pages cost the same as the first. Pass the token with an identically built builder
+	 * to get the next page. First results cannot be combined with a keyset.
+	 *
+	 * @param pageSize          The maximum rows in the page
+	 * @param continuationToken The token from the previous page, or null for the first page
+	 * @return The page with its continuation token
+	 */
+	@Override
+	@NotNull
+	public KeysetPage<E> getPage(int pageSize, String continuationToken)
+	{
+		if (pageSize < 1)
+		{
+			throw new UnsupportedOperationException("The page size must be at least 1");
+		}
+		if (getFirstResults() != null && getFirstResults() > 0)
+		{
+			throw new UnsupportedOperationException("First results cannot be used with keyset pagination");
+		}
+		applyKeyset(continuationToken);
+		Integer maxResults = getMaxResults();
+		setMaxResults(pageSize + 1);
+		List<E> rows;
+		try
+		{
+			rows = getAll();
+		}
+		finally
+		{
+			setMaxResults(maxResults);
+		}
+		if (rows == null)
+		{
+			return new KeysetPage<>(new ArrayList<>(), null);
+		}
+		if (rows.size() <= pageSize)
+		{
+			return new KeysetPage<>(rows, null);
+		}
+		rows = new ArrayList<>(rows.subList(0, pageSize));
+		return new KeysetPage<>(rows, getContinuationToken(rows.get(pageSize - 1)));
+	}
+	
+	/**
+	 * Loads the entities for the given ids, keyed by id in the order the ids were given.
+	 * <p>
+	 * Ids are de-duplicated, entities already in the persistence context or the second level cache are served from there,
+	 * and the remainder is loaded in in clauses of at most the id chunk size. Other filters on this builder are not applied.
+	 * <p>
+	 * With an id chunk parallelism above one the chunks run concurrently on the async executor, up to the parallelism at a time,
+	 * each worker on a new entity manager, so the returned entities are detached from this builder's entity manager
+	 *
+	 * @param ids The ids to load
+	 * @return The found entities by id, ids that were not found are not in the map
+	 */
+	@Override
+	@NotNull
+	public Map<I, E> getAllById(Collection<I> ids)
+	{
+		Map<I, E> results = new LinkedHashMap<>();
+		if (ids == null || ids.isEmpty())
+		{
+			return results;
+		}
+		List<I> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+		distinct.remove(null);
+		int chunkSize = Math.max(1, idChunkSize);
+		if (idChunkParallelism <= 1 || distinct.size() <= chunkSize)
+		{
+			collectById(results, distinct, multiLoad(getEntityManager(), distinct, chunkSize));
+			return results;
+		}
+		
+		List<List<I>> chunks = new ArrayList<>();
+		for (int i = 0; i < distinct.size(); i += chunkSize)
+		{
+			chunks.add(distinct.subList(i, Math.min(distinct.size(), i + chunkSize)));
+		}
+		EntityManagerFactory factory = getEntityManager().getEntityManagerFactory();
+		List<List<E>> loaded = new ArrayList<>(Collections.nCopies(chunks.size(), null));
+		AtomicInteger next = new AtomicInteger();
+		//Each worker takes the next chunk until none remain, so no more than the parallelism run at once on the shared executor
+		Runnable worker = () -> {
+			EntityManager entityManager = factory.createEntityManager();
+			try
+			{
+				for (int chunk = next.getAndIncrement(); chunk < chunks.size(); chunk = next.getAndIncrement())
+				{
+					loaded.set(chunk, multiLoad(entityManager, chunks.get(chunk), chunkSize));
+				}
+			}
+			catch (RuntimeException e)
+			{
+				next.set(chunks.size());
+				throw e;
+			}
+			finally
+			{
+				entityManager.close();
+			}
+		};
+		int workers = Math.min(idChunkParallelism, chunks.size());
+		CompletableFuture<?>[] running = new CompletableFuture<?>[workers];
+		for (int i = 0; i < workers; i++)
+		{
+			running[i] = CompletableFuture.runAsync(worker, getAsyncExecutor());
+		}
+		try
+		{
+			CompletableFuture.allOf(running)
+			                 .get();
+			for (int i = 0; i < chunks.size(); i++)
+			{
+				collectById(results, chunks.get(i), loaded.get(i));
+			}
+		}
+		catch (InterruptedException e)
+		{
+			next.set(chunks.size());
+			Thread.currentThread()
+			      .interrupt();
+			throw new EntityAssistException("Interrupted while loading " + getEntityClass().getName() + " by id", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new EntityAssistException("Unable to load " + getEntityClass().getName() + " by id", e.getCause());
+		}
+		return results;
+	}
+	
+	/**
+	 * Loads the entities for the given ids as a list in the order of the given ids, skipping ids that were not found
+	 *
+	 * @param ids The ids to load
+	 * @return The found entities in id order
+	 */
+	@Override
+	@NotNull
+	public List<E> getAllByIdOrdered(Collection<I> ids)
+	{
+		List<E> results = new ArrayList<>();
+		if (ids == null || ids.isEmpty())
+		{
+			return results;
+		}
+		Map<I, E> found = getAllById(ids);
+		for (I id : ids)
+		{
+			E entity = found.get(id);
+			if (entity != null)
+			{
+				results.add(entity);
+			}
+		}
+		return results;
+	}
+	
+	private List<E> multiLoad(EntityManager entityManager, List<I> ids, int batchSize)
+	{
+		return entityManager.unwrap(Session.class)
+		                    .byMultipleIds(getEntityClass())
+		                    .enableSessionCheck(true)
+		                    .enableOrderedReturn(true)
+		                    .withBatchSize(batchSize)
+		                    .multiLoad(ids);
+	}
+	
+	private void collectById(Map<I, E> results, List<I> ids, List<E> found)
+	{
+		for (int i = 0; i < ids.size() && i < found.size(); i++)
+		{
+			E entity = found.get(i);
+			if (entity != null)
+			{
+				entity.setFake(false);
+				if (detach)
+				{
+					getEntityManager().detach(entity);
+				}
+				results.put(ids.get(i), entity);
+			}
+		}
+	}
+	
+	/**
+	 * The number of ids loaded per in clause by getAllById
+	 *
+	 * @return the chunk size
+	 */
+	@Override
+	public int getIdChunkSize()
+	{
+		return idChunkSize;
+	}
+	
+	/**
+	 * Sets the number of ids loaded per in clause by getAllById
+	 *
+	 * @param idChunkSize the chunk size
+	 * @return This
+	 */
+	@Override
+	@NotNull
+	public J setIdChunkSize(int idChunkSize)
+	{
+		this.idChunkSize = idChunkSize;
+		return (J) this;
+	}
+	
+	/**
+	 * The number of chunks getAllById loads concurrently
+	 *
+	 * @return the parallelism, 1 for sequential
+	 */
+	@Override
+	public int getIdChunkParallelism()
+	{
+		return idChunkParallelism;
+	}
+	
+	/**
+	 * Sets the number of chunks getAllById loads concurrently, each on its own entity manager
+	 *
+	 * @param idChunkParallelism the parallelism, 1 for sequential
+	 * @return This
+	 */
+	@Override
+	@NotNull
+	public J setIdChunkParallelism(int idChunkParallelism)
+	{
+		this.idChunkParallelism = idChunkParallelism;
+		return (J) this;
+	}
+	
+	/**
+	 * Sets whether or not to detach the selected entity/ies
+	 *
+	 * @return This
+	 */
+	@Override
+	public J detach()
+	{
+		detach = true;
+		return (J) this;
+	}
+	
+	/**
+	 * Publishes the rows to a reactive subscriber with backpressure.
+	 * <p>
+	 * The query is built on the calling thread. Each subscription then reads its own server side cursor on the async executor,
+	 * fetching only the rows the subscriber has requested, so a slow subscriber throttles the database read.
+	 * The rows are detached once emitted. The builder must not be changed while subscriptions are open.
+	 *
+	 * @return A publisher of the rows
+	 */
+	@Override
+	@NotNull
+	public Flow.Publisher<E> getPublisher()
+	{
+		if (!selected)
+		{
+			select();
+		}
+		CriteriaQuery<E> criteria = getCriteriaQuery();
+		Integer max = getMaxResults();
+		Integer first = getFirstResults();
+		int cursorFetchSize = fetchSize == null ? ResultPublisher.defaultFetchSize : fetchSize;
+		return new ResultPublisher<>(getEntityManager().getEntityManagerFactory(), getAsyncExecutor(), entityManager -> {
+			TypedQuery<E> query = entityManager.createQuery(criteria);
+			bindParameters(query);
+			applyReadOnly(query);
+			query.setHint("org.hibernate.fetchSize", cursorFetchSize);
+			if (max != null)
+			{
+				query.setMaxResults(max);
+			}
+			if (first != null)
+			{
+				query.setFirstResult(first);
+			}
+			onSelectExecution(query);
+			//Projections and constructed selections publish rows that are not entities
+			return query.getResultStream()
+			            .peek((Object row) -> {
+				            if (row instanceof BaseEntity)
+				            {
+					            ((BaseEntity<?, ?, ?>) row).setFake(false);
+				            }
+			            });
+		});
+	}
+	
+	/**
+	 * Runs get() asynchronously on the async executor
+	 *
+	 * @return The future optional result
+	 * @see #getAllAsync()
+	 */
+	@Override
+	@NotNull
+	public CompletableFuture<Optional<E>> getAsync()
+	{
+		if (!onSelect())
+		{
+			return CompletableFuture.completedFuture(Optional.empty());
+		}
+		if (isIdLookup())
+		{
+			return supplyInScope(false, entityManager -> Optional.ofNullable(findById(entityManager)));
+		}
+		Integer originalMax = getMaxResults();
+		if (originalMax == null)
+		{
+			//Two rows are enough to know if the result is unique
+			setMaxResults(2);
+		}
+		CompletableFuture<List<E>> rows = getAllAsync();
+		setMaxResults(originalMax);
+		boolean first = isReturnFirst();
+		return rows.thenApply(list -> {
+			if (list.isEmpty())
+			{
+				return Optional.empty();
+			}
+			if (list.size() > 1 && !first)
+			{
+				Logger.getLogger(getClass().getName())
+				      .log(Level.FINE, "Non Unique Result. Found too many for a get() for class : " + getEntityClass().getName() + "}. Get First Result disabled. Returning empty");
+				return Optional.empty();
+			}
+			return Optional.of(list.get(0));
+		});
+	}
+	
+	/**
+	 * Runs getAll() asynchronously on the async executor.
+	 * <p>
+	 * The query is built on the calling thread, then runs on its own entity manager, so independent queries overlap their database latency.
+	 * The returned entities are detached. The builder must not be changed until the future completes.
+	 * As with getAll, a builder with selected columns or a construct completes with rows of the selected type.
+	 *
+	 * @return The future rows
+	 */
+	@Override
+	@NotNull
+	public CompletableFuture<List<E>> getAllAsync()
+	{
+		if (!onSelect())
+		{
+			return CompletableFuture.completedFuture(new ArrayList<>());
+		}
+		if (isIdLookup())
+		{
+			return supplyInScope(false, entityManager -> {
+				E found = findById(entityManager);
+				return found == null ? new ArrayList<>() : new ArrayList<>(List.of(found));
+			});
+		}
+		if (!selected)
+		{
+			select();
+		}
+		CriteriaQuery<E> criteria = getCriteriaQuery();
+		Integer max = getMaxResults();
+		Integer first = getFirstResults();
+		return supplyInScope(false, entityManager -> {
+			TypedQuery<E> query = entityManager.createQuery(criteria);
+			bindParameters(query);
+			applyCache(query);
+			applyReadOnly(query);
+			applyFetchSize(query);
+			if (max != null)
+			{
+				query.setMaxResults(max);
+			}
+			if (first != null)
+			{
+				query.setFirstResult(first);
+			}
+			onSelectExecution(query);
+			List<E> rows = query.getResultList();
+			//Projections and constructed selections return rows that are not entities
+			for (Object row : rows)
+			{
+				if (row instanceof BaseEntity)
+				{
+					((BaseEntity<?, ?, ?>) row).setFake(false);
+				}
+			}
+			return rows;
+		});
+	}
+	
+	/**
+	 * Runs getCount() asynchronously on the async executor
+	 *
+	 * @return The future count
+	 * @see #getAllAsync()
+	 */
+	@Override
+	@NotNull
+	public CompletableFuture<Long> getCountAsync()
+	{
+		if (!onSelect())
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		if (!selected)
+		{
+			selectCount();
+			select();
+		}
+		CriteriaQuery<Long> criteria = getCriteriaQuery();
+		return supplyInScope(false, entityManager -> {
+			TypedQuery<Long> query = entityManager.createQuery(criteria);
+			bindParameters(query);
+			applyCache(query);
+			onSelectExecution(query);
+			Long count = query.getSingleResult();
+			return count == null ? 0L : count;
+		});
+	}
+	
+	/**
+	 * Runs delete() asynchronously on the async executor, in its own transaction
+	 *
+	 * @return The future number of rows deleted
+	 */
+	@Override
+	@NotNull
+	public CompletableFuture<Integer> deleteAsync()
+	{
+		if (getFilters().isEmpty())
+		{
+			throw new UnsupportedOperationException("Calling the delete method with no filters. This will truncate the table. Rather call truncate()");
+		}
+		CriteriaDelete<E> deletion = getCriteriaBuilder().createCriteriaDelete(getEntityClass());
+		reset(deletion.from(getEntityClass()));
+		setCriteriaDelete(deletion);
+		select();
+		return supplyInScope(true, entityManager -> {
+			Query query = entityManager.createQuery(deletion);
+			bindParameters(query);
+			int deleted = query.executeUpdate();
+			QueryResultCache.invalidate(entityManager.unwrap(Session.class), getEntityClass());
+			CurrentVersionCache.invalidate(entityManager.unwrap(Session.class), getEntityClass());
+			return deleted;
+		});
+	}
+	
+	/**
+	 * Runs truncate() asynchronously on the async executor, in its own transaction
+	 *
+	 * @return The future number of rows deleted
+	 */
+	@Override
+	@NotNull
+	public CompletableFuture<Integer> truncateAsync()
+	{
+		CriteriaDelete<E> deletion = getCriteriaBuilder().createCriteriaDelete(getEntityClass());
+		setCriteriaDelete(deletion);
+		reset(deletion.from(getEntityClass()));
+		getFilters().clear();
+		select();
+		return supplyInScope(true, entityManager -> {
+			int deleted = entityManager.createQuery(deletion)
+			                           .executeUpdate();
+			QueryResultCache.invalidate(entityManager.unwrap(Session.class), getEntityClass());
+			CurrentVersionCache.invalidate(entityManager.unwrap(Session.class), getEntityClass());
+			return deleted;
+		});
+	}
+	
+	/**
+	 * Runs the work on the async executor with a new entity manager, closed when the work completes.
+	 * <p>
+	 * Transactional work runs in its own resource local transaction, committed on success and rolled back on failure.
+	 * JTA entity managers cannot start a local transaction, so transactional work on them fails fast instead of running without one.
+	 *
+	 * @param transactional If the work writes
+	 * @param work          The work to perform
+	 * @param <T>           The result type
+	 * @return The future result
+	 */
+	private <T> CompletableFuture<T> supplyInScope(boolean transactional, Function<EntityManager, T> work)
+	{
+		EntityManagerFactory factory = getEntityManager().getEntityManagerFactory();
+		return CompletableFuture.supplyAsync(() -> runInScope(factory, transactional, work), getAsyncExecutor());
+	}
+	
+	/**
+	 * Runs the work on the calling thread with a new entity manager, closed when the work completes.
+	 * Transactional work runs in its own resource local transaction, and is refused on JTA entity managers,
+	 * whose work cannot start one and would otherwise run without a transaction
+	 *
+	 * @param factory       The factory to create the entity manager from
+	 * @param transactional If the work writes
+	 * @param work          The work to perform
+	 * @param <T>           The result type
+	 * @return The result
+	 */
+	private static <T> T runInScope(EntityManagerFactory factory, boolean transactional, Function<EntityManager, T> work)
+	{
+		EntityManager entityManager = factory.createEntityManager();
+		try
+		{
+			if (!transactional)
+			{
+				return work.apply(entityManager);
+			}
+			EntityTransaction transaction;
+			try
+			{
+				transaction = entityManager.getTransaction();
+			}
+			catch (IllegalStateException jta)
+			{
+				throw new UnsupportedOperationException("Writes off the calling thread need a resource local entity manager, "
+				                                        + "JTA entity managers cannot start their own transaction", jta);
+			}
+			transaction.begin();
+			try
+			{
+				T result = work.apply(entityManager);
+				transaction.commit();
+				return result;
+			}
+			catch (RuntimeException e)
+			{
+				if (transaction.isActive())
+				{
+					transaction.rollback();
+				}
+				throw e;
+			}
+		}
+		finally
+		{
+			entityManager.close();
+		}
+	}
+	
+	/**
+	 * The executor the async operations run on
+	 *
+	 * @return The builder's executor, or the shared default
+	 */
+	@Override
+	public Executor getAsyncExecutor()
+	{
+		return asyncExecutor == null ? QueryExecutors.getDefaultExecutor() : asyncExecutor;
+	}
+	
+	/**
+	 * Sets the executor the async operations of this builder run on
+	 *
+	 * @param asyncExecutor The executor, or null for the shared default
+	 * @return This
+	 */
+	@Override
+	@NotNull
+	public J setAsyncExecutor(Executor asyncExecutor)
+	{
+		this.asyncExecutor = asyncExecutor;
+		return (J) this;
+	}
+	
+	/**
+	 * Scans the rows matching this builder in key range partitions, each read concurrently on its own thread and entity manager,
+	 * and merges them into one stream as they arrive.
+	 * <p>
+	 * Rows are handed over detached through a bounded queue, so a slow consumer holds the partition reads back instead of buffering the table.
+	 * The stream has no overall order, and must be closed to stop any partition still reading.
+	 *
+	 * @param partitions The number of partitions
+	 * @return The merged rows
+	 * @see #getAllPartitioned(int, BiConsumer)
+	 */
+	@Override
+	@NotNull
+	public Stream<E> getAllPartitioned(int partitions)
+	{
+		Object done = new Object();
+		BlockingQueue<Object> queue = new ArrayBlockingQueue<>(Math.max(256, fetchSize == null ? 0 : fetchSize * 2));
+		ExecutorService executor = QueryExecutors.newTaskExecutor();
+		List<Future<?>> submitted;
+		try
+		{
+			submitted = submitPartitions(executor, partitions, true, (partition, rows) -> {
+				rows.forEach(row -> put(queue, row));
+				put(queue, done);
+			}, failure -> put(queue, new PartitionFailure(failure)));
+		}
+		catch (RuntimeException e)
+		{
+			executor.shutdownNow();
+			throw e;
+		}
+		int started = submitted.size();
+		Spliterator<E> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.NONNULL)
+		{
+			private int finished;
+			
+			@Override
+			public boolean tryAdvance(Consumer<? super E> action)
+			{
+				while (finished < started)
+				{
+					Object next;
+					try
+					{
+						next = queue.take();
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread()
+						      .interrupt();
+						throw new EntityAssistException("Interrupted while scanning " + getEntityClass().getName(), e);
+					}
+					if (next == done)
+					{
+						finished++;
+					}
+					else if (next instanceof PartitionFailure)
+					{
+						throw new EntityAssistException("Unable to scan a partition of " + getEntityClass().getName(), ((PartitionFailure) next).cause);
+					}
+					else
+					{
+						action.accept((E) next);
+						return true;
+					}
+				}
+				executor.shutdown();
+				return false;
+			}
+		};
+		return StreamSupport.stream(spliterator, false)
+		                    .onClose(executor::shutdownNow);
+	}
+	
+	/**
+	 * Scans the rows matching this builder in key range partitions, handing each partition's rows to the consumer on that partition's own thread.
+	 * <p>
+	 * The partitions are closed key ranges of the single id, split evenly between the lowest and highest matching id for numeric ids,
+	 * or at sampled boundaries read at evenly spaced offsets for other comparable ids.
+	 * Each partition runs on its own virtual thread where available with its own entity manager, so the rows are detached once the partition completes.
+	 * Returns once every partition has been consumed.
+	 *
+	 * @param partitions The number of partitions
+	 * @param consumer   Receives the partition number and a stream of its rows
+	 */
+	@Override
+	public void getAllPartitioned(int partitions, BiConsumer<Integer, Stream<E>> consumer)
+	{
+		ExecutorService executor = QueryExecutors.newTaskExecutor();
+		try
+		{
+			for (Future<?> future : submitPartitions(executor, partitions, false, consumer, null))
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread()
+			      .interrupt();
+			throw new EntityAssistException("Interrupted while scanning " + getEntityClass().getName(), e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new EntityAssistException("Unable to scan a partition of " + getEntityClass().getName(), e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Computes the partition ranges, builds the partition query and submits a task per range
+	 *
+	 * @param executor   The executor to run on
+	 * @param partitions The number of partitions requested
+	 * @param detachRows If each row is detached before it is handed on
+	 * @param consumer   Receives each partition's rows
+	 * @param onFailure  Receives a failed partition's exception, or null to fail the task
+	 * @return The submitted tasks
+	 */
+	private List<Future<?>> submitPartitions(ExecutorService executor, int partitions, boolean detachRows, BiConsumer<Integer, Stream<E>> consumer,
+	                                         Consumer<RuntimeException> onFailure)
+	{
+		if (partitions < 1)
+		{
+			throw new UnsupportedOperationException("A partitioned scan needs at least 1 partition");
+		}
+		if (!getHavingExpressions().isEmpty() || !getGroupBys().isEmpty() || !getSelections().isEmpty())
+		{
+			throw new UnsupportedOperationException("A partitioned scan reads entities, remove the selections and groupings");
+		}
+		Attribute<?, ?> idAttribute = getIdAttribute();
+		if (!(idAttribute instanceof SingularAttribute) || !Comparable.class.isAssignableFrom(wrap(idAttribute.getJavaType())))
+		{
+			throw new UnsupportedOperationException("A partitioned scan requires a single comparable id on " + getEntityClass().getName());
+		}
+		SingularAttribute<? super E, Comparable<Object>> id = (SingularAttribute<? super E, Comparable<Object>>) idAttribute;
+		CriteriaQuery<?> originalQuery = getCriteriaQuery();
+		From<?, ?> originalRoot = getRoot();
+		boolean originalSelected = selected;
+		try
+		{
+			List<Comparable<Object>[]> ranges = partitionRanges(id, partitions);
+			if (ranges.isEmpty())
+			{
+				return new ArrayList<>();
+			}
+		
+			CriteriaBuilder cb = getCriteriaBuilder();
+			Class<Comparable<Object>> idType = (Class<Comparable<Object>>) wrap(id.getJavaType());
+			ParameterExpression<Comparable<Object>> low = cb.parameter(idType, "partitionLow");
+			ParameterExpression<Comparable<Object>> high = cb.parameter(idType, "partitionHigh");
+			CriteriaQuery<E> partitionQuery = cb.createQuery(getEntityClass());
+			setCriteriaQuery(partitionQuery);
+			rebuildRoot(partitionQuery);
+			Path<Comparable<Object>> idPath = getRoot().get(id);
+			Predicate lowPredicate = cb.greaterThanOrEqualTo(idPath, low);
+			Predicate highPredicate = cb.lessThanOrEqualTo(idPath, high);
+			getFilters().add(lowPredicate);
+			getFilters().add(highPredicate);
+			select();
+			getFilters().remove(lowPredicate);
+			getFilters().remove(highPredicate);
+		
+			EntityManagerFactory factory = getEntityManager().getEntityManagerFactory();
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < ranges.size(); i++)
+			{
+				Integer partition = i;
+				Comparable<Object>[] range = ranges.get(i);
+				futures.add(executor.submit(() -> {
+					EntityManager entityManager = factory.createEntityManager();
+					try
+					{
+						TypedQuery<E> query = entityManager.createQuery(partitionQuery);
+						bindParameters(query);
+						query.setParameter(low, range[0]);
+						query.setParameter(high, range[1]);
+						applyFetchSize(query);
+						applyReadOnly(query);
+						try (Stream<E> rows = query.getResultStream())
+						{
+							consumer.accept(partition, detachRows ? rows.peek(entityManager::detach) : rows);
+						}
+					}
+					catch (RuntimeException e)
+					{
+						if (onFailure == null)
+						{
+							throw e;
+						}
+						onFailure.accept(e);
+					}
+					finally
+					{
+						entityManager.close();
+					}
+					return null;
+				}));
+			}
+		
+			return futures;
+		}
+		finally
+		{
+			//The probes and the partition query replace the root, put the builder back on its own query
+			Map<Attribute<?, ?>, OrderByType> orderBys = new LinkedHashMap<>(getOrderBys());
+			setCriteriaQuery(originalQuery);
+			reset(originalRoot);
+			getOrderBys().putAll(orderBys);
+			selected = originalSelected;
+		}
+	}
+	
+	/**
+	 * Computes closed id ranges that split the matching rows.
+	 * <p>
+	 * Numeric ids are split evenly between the lowest and highest matching id,
+	 * other ids at the keys found at evenly spaced offsets of the matching rows in id order.
+	 *
+	 * @param id         The id attribute
+	 * @param partitions The number of partitions requested
+	 * @return The low and high id of each range, fewer than requested when there are fewer rows
+	 */
+	private List<Comparable<Object>[]> partitionRanges(SingularAttribute<? super E, Comparable<Object>> id, int partitions)
+	{
+		CriteriaBuilder cb = getCriteriaBuilder();
+		List<Comparable<Object>[]> ranges = new ArrayList<>();
+		if (Number.class.isAssignableFrom(wrap(id.getJavaType())))
+		{
+			CriteriaQuery<Object[]> probe = cb.createQuery(Object[].class);
+			rebuildRoot(probe);
+			Path<Number> path = getRoot().get(id);
+			probe.multiselect(cb.min(path), cb.max(path))
+			     .where(getFilters().toArray(new Predicate[0]));
+			TypedQuery<Object[]> query = getEntityManager().createQuery(probe);
+			bindParameters(query);
+			Object[] bounds = query.getSingleResult();
+			if (bounds[0] == null)
+			{
+				return ranges;
+			}
+			long min = ((Number) bounds[0]).longValue();
+			long max = ((Number) bounds[1]).longValue();
+			long width = Math.max(1, (max - min) / partitions + 1);
+			for (long start = min; ; start += width)
+			{
+				long end = max - start < width ? max : start + width - 1;
+				ranges.add(new Comparable[]{(Comparable<Object>) toIdType((SingularAttribute) id, start), (Comparable<Object>) toIdType((SingularAttribute) id, end)});
+				if (end == max)
+				{
+					break;
+				}
+			}
+			return ranges;
+		}
+		
+		CriteriaQuery<Long> countProbe = cb.createQuery(Long.class);
+		rebuildRoot(countProbe);
+		countProbe.select(cb.count(getRoot()))
+		          .where(getFilters().toArray(new Predicate[0]));
+		TypedQuery<Long> countQuery = getEntityManager().createQuery(countProbe);
+		bindParameters(countQuery);
+		long total = countQuery.getSingleResult();
+		if (total == 0)
+		{
+			return ranges;
+		}
+		int effective = (int) Math.min(partitions, total);
+		CriteriaQuery<Comparable<Object>> keyProbe = cb.createQuery((Class<Comparable<Object>>) wrap(id.getJavaType()));
+		rebuildRoot(keyProbe);
+		Path<Comparable<Object>> path = getRoot().get(id);
+		keyProbe.select(path)
+		        .where(getFilters().toArray(new Predicate[0]))
+		        .orderBy(cb.asc(path));
+		TypedQuery<Comparable<Object>> keyQuery = getEntityManager().createQuery(keyProbe);
+		bindParameters(keyQuery);
+		keyQuery.setMaxResults(1);
+		for (int i = 0; i < effective; i++)
+		{
+			long first = total * i / effective;
+			long last = total * (i + 1) / effective - 1;
+			ranges.add(new Comparable[]{keyAt(keyQuery, first), keyAt(keyQuery, last)});
+		}
+		return ranges;
+	}
+	
+	private static Comparable<Object> keyAt(TypedQuery<Comparable<Object>> keyQuery, long offset)
+	{
+		return keyQuery.setFirstResult((int) offset)
+		               .getSingleResult();
+	}
+	
+	/**
+	 * Moves the builder onto a new root of the given query, keeping the order bys
+	 *
+	 * @param query The query to build on
+	 */
+	private void rebuildRoot(AbstractQuery<?> query)
+	{
+		Map<Attribute<?, ?>, OrderByType> orderBys = new LinkedHashMap<>(getOrderBys());
+		reset(query.from(getEntityClass()));
+		getOrderBys().putAll(orderBys);
+		selected = false;
+	}
+	
+	private static void put(BlockingQueue<Object> queue, Object item)
+	{
+		try
+		{
+			queue.put(item);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread()
+			      .interrupt();
+			throw new EntityAssistException("The partitioned scan was closed", e);
+		}
+	}
+	
+	/**
+	 * Carries a partition failure to the merged stream
+	 */
+	private static final class PartitionFailure
+	{
+		private final RuntimeException cause;
+		
+		private PartitionFailure(RuntimeException cause)
+		{
+			this.cause = cause;
+		}
+	}
+	
+	
+	/**
+	 * Returns the number of rows affected by the delete.
+	 * <p>
+	 * Bulk Delete Operation
+	 * <p>
+	 * WARNING : Be very careful if you haven't added a filter this will truncate the table or throw a unsupported exception if no filters.
+	 *
+	 * @return number of results deleted
+	 */
 	@Override
 	public int delete()
 	{
@@ -606,8 +1939,321 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 		reset(deletion.from(getEntityClass()));
 		setCriteriaDelete(deletion);
 		select();
-		return getEntityManager().createQuery(deletion)
-		                         .executeUpdate();
+		Query query = getEntityManager().createQuery(deletion);
+		bindParameters(query);
+		int deleted = query.executeUpdate();
+		invalidateResults();
+		invalidateCurrentVersions();
+		return deleted;
+	}
+	
+	/**
+	 * Assigns a value to an attribute for a bulk update
+	 *
+	 * @param attribute The attribute to update
+	 * @param value     The value to set, may be null
+	 * @param <Y>       The attribute type
+	 * @return This
+	 */
+	@Override
+	@NotNull
+	public <Y> J set(SingularAttribute<? super E, Y> attribute, Y value)
+	{
+		updateValues.put(attribute, value);
+		return (J) this;
+	}
+	
+	/**
+	 * Assigns an expression to an attribute for a bulk update, e.g. a column increment with
+	 * {@code setExpression(attribute, (root, cb) -> cb.sum(root.get(attribute), 1))}.
+	 * <p>
+	 * Every statement, and every chunk of a chunked update, is built on a new root,
+	 * so the expression is built against that root each time rather than against getRoot()
+	 *
+	 * @param attribute  The attribute to update
+	 * @param expression Builds the expression to set the attribute to from the update root and the criteria builder
+	 * @param <Y>        The attribute type
+	 * @return This
+	 */
+	@Override
+	@NotNull
+	public <Y> J setExpression(SingularAttribute<? super E, Y> attribute, BiFunction<Root<E>, CriteriaBuilder, Expression<? extends Y>> expression)
+	{
+		updateValues.put(attribute, expression);
+		return (J) this;
+	}
+	
+	/**
+	 * Assigns a value to an attribute by name for a bulk update
+	 *
+	 * @param attributeName The attribute name
+	 * @param value         The value to set, may be null
+	 * @return This
+	 */
+	@Override
+	@NotNull
+	public J set(String attributeName, Object value)
+	{
+		Attribute<?, ?> attribute = getAttribute(attributeName);
+		if (!(attribute instanceof SingularAttribute))
+		{
+			throw new EntityAssistException("Attribute " + attributeName + " cannot be set on " + getEntityClass().getName());
+		}
+		updateValues.put((SingularAttribute<? super E, ?>) attribute, value);
+		return (J) this;
+	}
+	
+	/**
+	 * Returns the values assigned by set
+	 *
+	 * @return The attribute values in the order they were set, expressions as their builder functions
+	 */
+	@Override
+	public Map<SingularAttribute<? super E, ?>, Object> getUpdateValues()
+	{
+		return updateValues;
+	}
+	
+	/**
+	 * Executes a single bulk UPDATE of the set values for all rows matching the filters.
+	 * <p>
+	 * Entities already loaded into the persistence context are not refreshed.
+	 * <p>
+	 * WARNING : An update with no filters throws an unsupported exception, add an explicit filter to update every row.
+	 *
+	 * @return The number of rows updated
+	 */
+	@Override
+	public int executeUpdate()
+	{
+		checkBulkUpdate();
+		return executeUpdate(getEntityManager(), null, null);
+	}
+	
+	/**
+	 * Executes the bulk UPDATE in chunks of at most the given number of matching rows, one statement per chunk.
+	 * <p>
+	 * Each chunk reads the next matching ids after the previous chunk in id order, then updates the id range they span,
+	 * so sparse ids never cost an empty statement. Shorter statements hold their row locks for less time,
+	 * and log or replication pressure is spread over the run. Requires a single numeric id.
+	 *
+	 * @param chunkSize The number of matching rows per statement
+	 * @return The total number of rows updated
+	 */
+	@Override
+	public long executeUpdate(long chunkSize)
+	{
+		return executeUpdate(chunkSize, null);
+	}
+	
+	/**
+	 * Executes the bulk UPDATE in chunks of at most the given number of matching rows, committing each chunk in its own transaction
+	 * and sleeping for the pause between chunks so the run yields to other traffic.
+	 * <p>
+	 * Each chunk runs on a new entity manager, so a failure leaves the earlier chunks committed and the run can simply be repeated.
+	 * Without a pause the chunks run in the caller's transaction as with executeUpdate(long). Requires a single numeric id.
+	 *
+	 * @param chunkSize The number of matching rows per statement
+	 * @param pause     The time to wait between chunks, or null to run every chunk in the caller's transaction
+	 * @return The total number of rows updated, up to the interrupted chunk if the thread is interrupted during a pause
+	 */
+	@Override
+	public long executeUpdate(long chunkSize, Duration pause)
+	{
+		checkBulkUpdate();
+		if (chunkSize < 1)
+		{
+			throw new UnsupportedOperationException("The chunk size must be at least 1");
+		}
+		if (!isNumericId())
+		{
+			throw new UnsupportedOperationException("Id chunking requires a single numeric id on " + getEntityClass().getName());
+		}
+		SingularAttribute<? super E, Number> id = (SingularAttribute<? super E, Number>) getIdAttribute();
+		EntityManagerFactory factory = pause == null ? null : getEntityManager().getEntityManagerFactory();
+		int limit = (int) Math.min(Integer.MAX_VALUE, chunkSize);
+		long updated = 0;
+		Number after = null;
+		while (true)
+		{
+			List<Number> ids = nextIds(id, after, limit);
+			if (ids.isEmpty())
+			{
+				break;
+			}
+			Number from = ids.get(0);
+			Number to = ids.get(ids.size() - 1);
+			if (factory == null)
+			{
+				updated += executeUpdate(getEntityManager(), from, to);
+			}
+			else
+			{
+				updated += runInScope(factory, true, entityManager -> executeUpdate(entityManager, from, to));
+			}
+			Logger.getLogger(getClass().getName())
+			      .log(Level.FINER, "Bulk update of " + getEntityClass().getSimpleName() + " ids " + from + " to " + to + " complete");
+			if (ids.size() < limit)
+			{
+				break;
+			}
+			after = to;
+			if (pause != null && !pause.isZero())
+			{
+				try
+				{
+					Thread.sleep(pause.toMillis());
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread()
+					      .interrupt();
+					Logger.getLogger(getClass().getName())
+					      .log(Level.WARNING, "Bulk update of " + getEntityClass().getSimpleName() + " interrupted after id " + to);
+					break;
+				}
+			}
+		}
+		return updated;
+	}
+	
+	/**
+	 * Executes the bulk UPDATE as a single statement on a new entity manager, committed in its own transaction.
+	 * For scheduled work that has no surrounding transaction and cannot chunk by id
+	 *
+	 * @return The number of rows updated
+	 */
+	protected int executeUpdateInOwnTransaction()
+	{
+		checkBulkUpdate();
+		return runInScope(getEntityManager().getEntityManagerFactory(), true, entityManager -> executeUpdate(entityManager, null, null));
+	}
+	
+	/**
+	 * Reads the next ids matching the filters in id order
+	 *
+	 * @param id    The id attribute
+	 * @param after The last id of the previous chunk, or null to start from the lowest
+	 * @param limit The maximum number of ids
+	 * @return The ids, ascending
+	 */
+	private List<Number> nextIds(SingularAttribute<? super E, Number> id, Number after, int limit)
+	{
+		CriteriaQuery<Number> idQuery = getCriteriaBuilder().createQuery(Number.class);
+		reset(idQuery.from(getEntityClass()));
+		Path<Number> idPath = getRoot().get(id);
+		List<Predicate> allWheres = new ArrayList<>(getFilters());
+		if (after != null)
+		{
+			allWheres.add(getCriteriaBuilder().gt(idPath, after));
+		}
+		idQuery.select(idPath)
+		       .where(allWheres.toArray(new Predicate[0]))
+		       .orderBy(getCriteriaBuilder().asc(idPath));
+		TypedQuery<Number> query = getEntityManager().createQuery(idQuery);
+		bindParameters(query);
+		return query.setMaxResults(limit)
+		            .getResultList();
+	}
+	
+	/**
+	 * If the entity has a single numeric id, as id chunking requires
+	 *
+	 * @return if the id is a single number
+	 */
+	protected boolean isNumericId()
+	{
+		Attribute<?, ?> idAttribute = getIdAttribute();
+		return idAttribute instanceof SingularAttribute && Number.class.isAssignableFrom(wrap(idAttribute.getJavaType()));
+	}
+	
+	private void checkBulkUpdate()
+	{
+		if (updateValues.isEmpty())
+		{
+			throw new UnsupportedOperationException("Calling executeUpdate with no values set");
+		}
+		if (getFilters().isEmpty())
+		{
+			throw new UnsupportedOperationException("Calling executeUpdate with no filters. This will update every row, add an explicit filter");
+		}
+		if (!getJoins().isEmpty())
+		{
+			throw new UnsupportedOperationException("Bulk updates cannot contain joins");
+		}
+	}
+	
+	private int executeUpdate(EntityManager entityManager, Number fromId, Number toId)
+	{
+		CriteriaUpdate<E> update = getCriteriaBuilder().createCriteriaUpdate(getEntityClass());
+		Root<E> root = update.from(getEntityClass());
+		reset(root);
+		setCriteriaUpdate(update);
+		for (Map.Entry<SingularAttribute<? super E, ?>, Object> entry : updateValues.entrySet())
+		{
+			Path<Object> path = root.get(entry.getKey());
+			if (entry.getValue() instanceof BiFunction)
+			{
+				update.set(path, ((BiFunction<Root<E>, CriteriaBuilder, Expression<?>>) entry.getValue()).apply(root, getCriteriaBuilder()));
+			}
+			else
+			{
+				update.set(path, entry.getValue());
+			}
+		}
+		List<Predicate> allWheres = new ArrayList<>(getFilters());
+		if (fromId != null)
+		{
+			Path<Number> idPath = getRoot().get((SingularAttribute<? super E, Number>) getIdAttribute());
+			allWheres.add(getCriteriaBuilder().ge(idPath, fromId));
+			allWheres.add(getCriteriaBuilder().le(idPath, toId));
+		}
+		update.where(allWheres.toArray(new Predicate[0]));
+		Query query = entityManager.createQuery(update);
+		bindParameters(query);
+		int updated = query.executeUpdate();
+		QueryResultCache.invalidate(entityManager.unwrap(Session.class), getEntityClass());
+		CurrentVersionCache.invalidate(entityManager.unwrap(Session.class), getEntityClass());
+		return updated;
+	}
+	
+	private static Class<?> wrap(Class<?> type)
+	{
+		if (type == long.class)
+		{
+			return Long.class;
+		}
+		if (type == int.class)
+		{
+			return Integer.class;
+		}
+		if (type == short.class)
+		{
+			return Short.class;
+		}
+		return type;
+	}
+	
+	private static Number toIdType(SingularAttribute<?, Number> id, long value)
+	{
+		Class<?> type = wrap(id.getJavaType());
+		if (type == Integer.class)
+		{
+			return (int) value;
+		}
+		if (type == Short.class)
+		{
+			return (short) value;
+		}
+		if (type == BigInteger.class)
+		{
+			return BigInteger.valueOf(value);
+		}
+		if (type == BigDecimal.class)
+		{
+			return BigDecimal.valueOf(value);
+		}
+		return value;
 	}
 	
 	/**
@@ -621,6 +2267,8 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 	public E delete(E entity)
 	{
 		getEntityManager().remove(entity);
+		invalidateResults();
+		invalidateCurrentVersion(entity.getId());
 		return entity;
 	}
 	
@@ -649,6 +2297,8 @@ public abstract class QueryBuilder<J extends QueryBuilder<J, E, I>, E extends Ba
 		select();
 		int results = getEntityManager().createQuery(deletion)
 						.executeUpdate();
+		invalidateResults();
+		invalidateCurrentVersions();
 		return results;
 	}
 	
@@ -1,14 +1,41 @@
 package com.entityassist.querybuilder;
 
 import com.entityassist.*;
+import com.entityassist.converters.ActiveFlagRankConverter;
 import com.entityassist.enumerations.ActiveFlag;
+import com.entityassist.querybuilder.builders.CurrentVersionCache;
+import com.entityassist.querybuilder.builders.PersistReport;
+import com.entityassist.querybuilder.builders.QueryResultCache;
+import com.entityassist.querybuilder.builders.RowHash;
 
-import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.metamodel.SingularAttribute;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.Session;
 import java.io.Serializable;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import static com.entityassist.enumerations.Operand.Equals;
+import static com.entityassist.enumerations.Operand.GreaterThanEqualTo;
 import static com.entityassist.enumerations.Operand.InList;
+import static com.entityassist.enumerations.Operand.LessThan;
+import static com.entityassist.enumerations.Operand.LessThanEqualTo;
 import static java.time.ZoneOffset.*;
 
 /**
@@ -36,8 +63,7 @@ public abstract class QueryBuilderCore<J extends QueryBuilderCore<J, E, I>, E ex
 	@SuppressWarnings("unchecked")
 	public J inActiveRange()
 	{
-		where((Attribute<Object, Object>) getAttribute(ACTIVE_FLAG_DATE_COLUMN_NAME), InList, ActiveFlag.getActiveRangeAndUp());
-		return (J) this;
+		return inActiveFlagRange(ActiveFlag.getActiveRangeAndUp());
 	}
 	
 	/**
@@ -50,10 +76,120 @@ public abstract class QueryBuilderCore<J extends QueryBuilderCore<J, E, I>, E ex
 	@SuppressWarnings("unchecked")
 	public J inVisibleRange()
 	{
-		where((Attribute<Object, Object>) getAttribute(ACTIVE_FLAG_DATE_COLUMN_NAME), InList, ActiveFlag.getVisibleRangeAndUp());
+		return inActiveFlagRange(ActiveFlag.getVisibleRangeAndUp());
+	}
+	
+	/**
+	 * Filters to the given active flags.
+	 * <p>
+	 * When the entity stores its flag through the ActiveFlagRankConverter and the flags are a contiguous run of ranks,
+	 * as every range of ActiveFlag is, the filter is a single rank range instead of an in list so the column index can be used.
+	 *
+	 * @param flags The flags to include
+	 * @return This
+	 */
+	@Override
+	@NotNull
+	@SuppressWarnings("unchecked")
+	public J inActiveFlagRange(Set<ActiveFlag> flags)
+	{
+		if (flags.isEmpty() || !ActiveFlagRankConverter.isApplied(getEntityClass()))
+		{
+			where(getEntityAttributes().<Object, Object>getActiveFlag(), InList, flags);
+			return (J) this;
+		}
+		ActiveFlag lowest = null;
+		ActiveFlag highest = null;
+		for (ActiveFlag flag : flags)
+		{
+			lowest = lowest == null || flag.getRank() < lowest.getRank() ? flag : lowest;
+			highest = highest == null || flag.getRank() > highest.getRank() ? flag : highest;
+		}
+		int between = 0;
+		for (ActiveFlag flag : ActiveFlag.values())
+		{
+			if (flag.getRank() >= lowest.getRank() && flag.getRank() <= highest.getRank())
+			{
+				between++;
+			}
+		}
+		if (between != flags.size())
+		{
+			where(getEntityAttributes().<Object, Object>getActiveFlag(), InList, flags);
+			return (J) this;
+		}
+		if (lowest == highest)
+		{
+			where(getEntityAttributes().<Object, Object>getActiveFlag(), Equals, lowest);
+			return (J) this;
+		}
+		if (lowest.getRank() > ActiveFlag.Unknown.getRank())
+		{
+			where(getEntityAttributes().<Object, Object>getActiveFlag(), GreaterThanEqualTo, lowest);
+		}
+		if (highest.getRank() < ActiveFlag.Permanent.getRank())
+		{
+			where(getEntityAttributes().<Object, Object>getActiveFlag(), LessThanEqualTo, highest);
+		}
 		return (J) this;
 	}
 	
+	/**
+	 * Returns the current version of a business key, the active row with an effective to date of the end of time.
+	 * <p>
+	 * Answers from the current version near cache when it holds the key, otherwise applies the filters to this builder,
+	 * loads the version and keeps a copy for the next lookup. Other filters on this builder are applied on a miss only,
+	 * so use a new builder without filters. Each call returns a new detached copy.
+	 *
+	 * @param businessKey The attribute identifying the entity across its versions
+	 * @param value       The business key value
+	 * @return The current version, if there is one
+	 */
+	@Override
+	@NotNull
+	@SuppressWarnings("unchecked")
+	public Optional<E> findCurrent(SingularAttribute<? super E, ?> businessKey, Object value)
+	{
+		//A session with uncommitted writes to the class reads its own rows and never shares them
+		boolean shared = CurrentVersionCache.isEnabled() && !QueryResultCache.hasPendingWrites(getEntityManager().unwrap(Session.class), getEntityClass());
+		E cached = shared ? CurrentVersionCache.get(getEntityClass(), businessKey.getName(), value) : null;
+		if (cached != null)
+		{
+			return Optional.of(cached);
+		}
+		long writes = CurrentVersionCache.getWrites(getEntityClass());
+		where((SingularAttribute<E, Object>) businessKey, Equals, value);
+		where(getEntityAttributes().getEffectiveToDate(), Equals, SCDEntity.EndOfTime.atOffset(UTC));
+		inActiveRange();
+		boolean detached = isDetach();
+		setDetach(true);
+		List<E> versions;
+		try
+		{
+			versions = getAll();
+		}
+		finally
+		{
+			setDetach(detached);
+		}
+		if (versions == null || versions.isEmpty())
+		{
+			return Optional.empty();
+		}
+		if (versions.size() > 1)
+		{
+			Logger.getLogger(getClass().getName())
+			      .log(Level.WARNING, versions.size() + " current versions of " + getEntityClass().getName() + " " + businessKey.getName() + " [" + value + "], not caching");
+			return Optional.of(versions.get(0));
+		}
+		E version = versions.get(0);
+		if (shared)
+		{
+			CurrentVersionCache.put(getEntityClass(), businessKey.getName(), value, version.getId(), version, writes);
+		}
+		return Optional.of(version);
+	}
+	
 	/**
 	 * Updates the current record with the given active flag type
 	 * uses the merge
@@ -69,6 +205,8 @@ public abstract class QueryBuilderCore<J extends QueryBuilderCore<J, E, I>, E ex
 		entity.setEffectiveToDate(convertToUTCDateTime(RootEntity.getNow()));
 		entity.setActiveFlag(newActiveFlagType);
 		getEntityManager().merge(entity);
+		invalidateResults();
+		invalidateCurrentVersion(entity.getId());
 		return entity;
 	}
 	
@@ -85,6 +223,8 @@ public abstract class QueryBuilderCore<J extends QueryBuilderCore<J, E, I>, E ex
 		entity.setEffectiveToDate(convertToUTCDateTime(RootEntity.getNow()));
 		entity.setActiveFlag(ActiveFlag.Deleted);
 		getEntityManager().merge(entity);
+		invalidateResults();
+		invalidateCurrentVersion(entity.getId());
 		return entity;
 	}
 	
@@ -102,9 +242,103 @@ public abstract class QueryBuilderCore<J extends QueryBuilderCore<J, E, I>, E ex
 		entity.setActiveFlag(ActiveFlag.Archived);
 		
 		getEntityManager().merge(entity);
+		invalidateResults();
+		invalidateCurrentVersion(entity.getId());
 		return entity;
 	}
 	
+	/**
+	 * Marks every record matching the filters as deleted in one bulk update,
+	 * setting the effective to date and warehouse last updated timestamps to now
+	 *
+	 * @return The number of rows updated
+	 */
+	@Override
+	public int softDelete()
+	{
+		return softDelete(ActiveFlag.Deleted);
+	}
+	
+	/**
+	 * Marks every current record matching the filters with the given active flag type in one bulk update,
+	 * setting the effective to date and warehouse last updated timestamps to now.
+	 * Historical versions, already closed with an earlier effective to date, are left as they are
+	 *
+	 * @param newActiveFlagType The new flag type to apply
+	 * @return The number of rows updated
+	 */
+	@Override
+	public int softDelete(ActiveFlag newActiveFlagType)
+	{
+		return closeMatching(newActiveFlagType);
+	}
+	
+	/**
+	 * Marks every current record matching the filters as archived in one bulk update,
+	 * setting the effective to date and warehouse last updated timestamps to now.
+	 * Historical versions, already closed with an earlier effective to date, are left as they are
+	 *
+	 * @return The number of rows updated
+	 */
+	@Override
+	public int archiveMatching()
+	{
+		return closeMatching(ActiveFlag.Archived);
+	}
+	
+	/**
+	 * Sets the active flag, effective to date and warehouse last updated timestamp on all matching current rows,
+	 * those still open with an effective to date of the end of time
+	 *
+	 * @param status The new status
+	 * @return The number of rows updated
+	 */
+	@SuppressWarnings("unchecked")
+	private int closeMatching(ActiveFlag status)
+	{
+		OffsetDateTime now = convertToUTCDateTime(RootEntity.getNow());
+		where(getEntityAttributes().getEffectiveToDate(), Equals, SCDEntity.EndOfTime.atOffset(UTC));
+		set((SingularAttribute<? super E, Object>) getEntityAttributes().<E, Object>getActiveFlag(), status);
+		set((SingularAttribute<? super E, OffsetDateTime>) getEntityAttributes().<E>getEffectiveToDate(), now);
+		set((SingularAttribute<? super E, OffsetDateTime>) getEntityAttributes().<E>getWarehouseLastUpdatedTimestamp(), now);
+		return executeUpdate();
+	}
+	
+	/**
+	 * Moves every row matching the filters that has carried the from flag since before the given age to the to flag, in set based updates.
+	 * <p>
+	 * Age is measured from the warehouse last updated timestamp, which is set to now on the moved rows.
+	 * Moving to Archived also closes the rows with an effective to date of now, as archive does.
+	 * With a numeric id the update runs in chunks of the next chunk size matching rows, each committed on its own with the pause between chunks.
+	 * Otherwise it runs as one statement, committed in its own transaction when a pause is given and in the caller's transaction without one.
+	 *
+	 * @param from      The flag of the rows to move
+	 * @param to        The flag to move them to
+	 * @param age       How long a row must have been unchanged
+	 * @param chunkSize The number of rows moved per statement
+	 * @param pause     The time to wait between chunks, or null to run in the caller's transaction
+	 * @return The number of rows moved
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public long advanceActiveFlag(ActiveFlag from, ActiveFlag to, Duration age, long chunkSize, Duration pause)
+	{
+		OffsetDateTime now = convertToUTCDateTime(RootEntity.getNow());
+		where(getEntityAttributes().<Object, Object>getActiveFlag(), Equals, from);
+		where(getEntityAttributes().getWarehouseLastUpdatedTimestamp(), LessThan, now.minus(age));
+		set((SingularAttribute<? super E, Object>) getEntityAttributes().<E, Object>getActiveFlag(), to);
+		set((SingularAttribute<? super E, OffsetDateTime>) getEntityAttributes().<E>getWarehouseLastUpdatedTimestamp(), now);
+		if (to == ActiveFlag.Archived)
+		{
+			set((SingularAttribute<? super E, OffsetDateTime>) getEntityAttributes().<E>getEffectiveToDate(), now);
+		}
+		if (!isNumericId())
+		{
+			return pause == null ? executeUpdate() : executeUpdateInOwnTransaction();
+		}
+		return executeUpdate(chunkSize, pause);
+	}
+	
 	/**
 	 * Marks the given entity as the given status, with the effective to date and warehouse last updated as now
 	 * Merges the entity, then detaches,
@@ -125,6 +359,7 @@ public abstract class QueryBuilderCore<J extends QueryBuilderCore<J, E, I>, E ex
 		
 		getEntityManager().merge(entity);
 		getEntityManager().detach(entity);
+		invalidateCurrentVersion(entity.getId());
 		
 		entity.setId(null);
 		
@@ -139,4 +374,168 @@ public abstract class QueryBuilderCore<J extends QueryBuilderCore<J, E, I>, E ex
 		return entity;
 	}
 	
+	/**
+	 * Versions a batch of changed entities as SCD type 2 records.
+	 * <p>
+	 * The current rows of all the entities are closed with the given status in set based updates, one per id chunk,
+	 * then the entities are inserted as the new active versions through persistAll with JDBC batching.
+	 * Only rows still open with an effective to date of the end of time are closed. An id that is not a current version,
+	 * or that appears twice, throws before any new version is inserted, so the caller rolls back rather than corrupting the history.
+	 * The entities are detached first so their pending changes only reach the new versions.
+	 * <p>
+	 * Runs in the caller's transaction. persistAll stops at the first failed insert batch, leaving the later versions unwritten,
+	 * and this method then throws with that batch's failure so the caller rolls back the whole versioning, closed rows included.
+	 * Identity generated ids cannot be JDBC batched by Hibernate.
+	 *
+	 * @param entities The changed entities, with the ids of their current versions
+	 * @param status   The status of the closed versions
+	 * @return The new versions with their generated ids
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<E> closeAndReturnNewlyUpdate(Collection<E> entities, ActiveFlag status)
+	{
+		List<E> versions = new ArrayList<>(entities);
+		if (versions.isEmpty())
+		{
+			return versions;
+		}
+		OffsetDateTime now = convertToUTCDateTime(RootEntity.getNow());
+		OffsetDateTime endOfTime = SCDEntity.EndOfTime.atOffset(UTC);
+		List<I> ids = new ArrayList<>(versions.size());
+		Set<I> distinct = new HashSet<>();
+		for (E entity : versions)
+		{
+			if (entity.getId() == null)
+			{
+				throw new EntityAssistException("Cannot version an entity without the id of its current version : " + getEntityClass().getName());
+			}
+			if (!distinct.add(entity.getId()))
+			{
+				throw new EntityAssistException("Cannot version the same current version twice : " + getEntityClass().getName() + " " + entity.getId());
+			}
+			ids.add(entity.getId());
+			if (getEntityManager().contains(entity))
+			{
+				getEntityManager().detach(entity);
+			}
+		}
+		
+		CriteriaBuilder cb = getCriteriaBuilder();
+		SingularAttribute<? super E, Object> activeFlag = (SingularAttribute<? super E, Object>) getEntityAttributes().<E, Object>getActiveFlag();
+		SingularAttribute<? super E, OffsetDateTime> effectiveTo = (SingularAttribute<? super E, OffsetDateTime>) getEntityAttributes().<E>getEffectiveToDate();
+		SingularAttribute<? super E, OffsetDateTime> lastUpdated = (SingularAttribute<? super E, OffsetDateTime>) getEntityAttributes().<E>getWarehouseLastUpdatedTimestamp();
+		SingularAttribute<? super E, Object> id = (SingularAttribute<? super E, Object>) getEntityAttributes().<E, Object>getIdAttribute();
+		int chunkSize = Math.max(1, getIdChunkSize());
+		for (int i = 0; i < ids.size(); i += chunkSize)
+		{
+			List<I> chunk = ids.subList(i, Math.min(ids.size(), i + chunkSize));
+			CriteriaUpdate<E> close = cb.createCriteriaUpdate(getEntityClass());
+			Root<E> root = close.from(getEntityClass());
+			close.set(root.get(activeFlag), status)
+			     .set(root.get(effectiveTo), now)
+			     .set(root.get(lastUpdated), now)
+			     .where(root.get(id)
+			                .in(chunk), cb.equal(root.get(effectiveTo), endOfTime));
+			int closed = getEntityManager().createQuery(close)
+			                               .executeUpdate();
+			if (closed != chunk.size())
+			{
+				throw new EntityAssistException("Closed " + closed + " of " + chunk.size() + " current versions of " + getEntityClass().getName()
+				                                + ", the other ids are not current versions. Roll back the transaction");
+			}
+		}
+		invalidateResults();
+		for (I closed : ids)
+		{
+			invalidateCurrentVersion(closed);
+		}
+		
+		for (E entity : versions)
+		{
+			entity.setId(null);
+			entity.setWarehouseCreatedTimestamp(now);
+			entity.setWarehouseLastUpdatedTimestamp(now);
+			entity.setEffectiveFromDate(now);
+			entity.setEffectiveToDate(endOfTime);
+			entity.setActiveFlag(ActiveFlag.Active);
+		}
+		PersistReport report = persistAll(versions);
+		if (!report.isSuccessful())
+		{
+			PersistReport.Batch failed = report.getFailedBatches()
+			                                   .get(0);
+			throw new EntityAssistException("Unable to insert the new versions of " + getEntityClass().getName() + " in batch " + failed.getNumber()
+			                                + (report.isStopped() ? ", the later batches were not attempted" : ""), failed.getFailure());
+		}
+		return versions;
+	}
+	
+	/**
+	 * Merges an incoming snapshot into the table, versioning only the rows whose content changed.
+	 * <p>
+	 * The hashes of the current versions are compared in bulk against the incoming entities.
+	 * Unchanged rows are skipped, changed rows go through the bulk versioning of closeAndReturnNewlyUpdate,
+	 * and rows without a current version are inserted through persistAll.
+	 * A generated id on an inserted row is cleared so a new one is generated, an assigned id is kept,
+	 * so an assigned id that only matches a closed version fails the insert on its primary key and this method throws.
+	 *
+	 * @param incoming The incoming snapshot
+	 * @param status   The status of the closed versions
+	 * @return The written entities, versioned rows first then inserted rows
+	 */
+	@Override
+	public List<E> mergeSnapshot(Collection<E> incoming, ActiveFlag status)
+	{
+		List<I> ids = new ArrayList<>(incoming.size());
+		for (E entity : incoming)
+		{
+			if (entity.getId() != null)
+			{
+				ids.add(entity.getId());
+			}
+		}
+		Map<I, String> current = getCurrentRowHashes(ids);
+		boolean generatedId = isGeneratedId();
+		List<E> changed = new ArrayList<>();
+		List<E> created = new ArrayList<>();
+		for (E entity : incoming)
+		{
+			if (entity.getId() == null || !current.containsKey(entity.getId()))
+			{
+				if (generatedId)
+				{
+					entity.setId(null);
+				}
+				created.add(entity);
+			}
+			else if (!RowHash.of(entity)
+			                 .equals(current.get(entity.getId())))
+			{
+				changed.add(entity);
+			}
+		}
+		List<E> written = new ArrayList<>(closeAndReturnNewlyUpdate(changed, status));
+		PersistReport report = persistAll(created);
+		if (!report.isSuccessful())
+		{
+			PersistReport.Batch failed = report.getFailedBatches()
+			                                   .get(0);
+			throw new EntityAssistException("Unable to insert the new rows of " + getEntityClass().getName() + " in batch " + failed.getNumber(), failed.getFailure());
+		}
+		written.addAll(created);
+		return written;
+	}
+	
+	/**
+	 * If the id is generated by the database rather than assigned
+	 *
+	 * @return if the id attribute is annotated with GeneratedValue
+	 */
+	private boolean isGeneratedId()
+	{
+		Member member = getEntityAttributes().getIdAttribute()
+		                                     .getJavaMember();
+		return member instanceof AnnotatedElement && ((AnnotatedElement) member).isAnnotationPresent(GeneratedValue.class);
+	}
 }
@@ -4,7 +4,19 @@ import com.entityassist.RootEntity;
 import com.entityassist.SCDEntity;
 import com.entityassist.enumerations.Operand;
 import com.entityassist.enumerations.OrderByType;
+import com.entityassist.querybuilder.builders.AsOfSnapshot;
+import com.entityassist.querybuilder.builders.AsOfSnapshotCache;
+import com.entityassist.querybuilder.builders.ChangeBatch;
+import com.entityassist.querybuilder.builders.KeysetPage;
+import com.entityassist.querybuilder.builders.QueryResultCache;
+import com.entityassist.querybuilder.builders.RowHash;
+import com.entityassist.querybuilder.builders.WatermarkStore;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.metamodel.SingularAttribute;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.Session;
 
 import java.io.Serializable;
 import java.sql.SQLException;
@@ -12,6 +24,7 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,6 +58,11 @@ public abstract class QueryBuilderSCD<J extends QueryBuilderSCD<J, E, I>, E exte
 	 */
 	@SuppressWarnings("WeakerAccess")
 	public static final String WAREHOUSE_UPDATED_DATE_COLUMN_NAME = "warehouseLastUpdatedTimestamp";
+	/**
+	 * The optional row content hash column name
+	 */
+	@SuppressWarnings("WeakerAccess")
+	public static final String ROW_HASH_COLUMN_NAME = "rowHash";
 	
 	/**
 	 * Where effective from date is greater than today
@@ -73,8 +91,8 @@ public abstract class QueryBuilderSCD<J extends QueryBuilderSCD<J, E, I>, E exte
 	@SuppressWarnings("unchecked")
 	public J inDateRange(LocalDateTime betweenThisDate)
 	{
-		where(getAttribute(EFFECTIVE_FROM_DATE_COLUMN_NAME), Operand.LessThanEqualTo, convertToUTCDateTime(betweenThisDate));
-		where(getAttribute(EFFECTIVE_TO_DATE_COLUMN_NAME), Operand.GreaterThanEqualTo, convertToUTCDateTime(betweenThisDate));
+		where(getEntityAttributes().getEffectiveFromDate(), Operand.LessThanEqualTo, convertToUTCDateTime(betweenThisDate));
+		where(getEntityAttributes().getEffectiveToDate(), Operand.GreaterThanEqualTo, convertToUTCDateTime(betweenThisDate));
 		return (J) this;
 	}
 	
@@ -90,7 +108,7 @@ public abstract class QueryBuilderSCD<J extends QueryBuilderSCD<J, E, I>, E exte
 	@SuppressWarnings("unchecked")
 	public J inDateRange(LocalDateTime effectiveToDate, boolean toDate)
 	{
-		where(getAttribute(EFFECTIVE_TO_DATE_COLUMN_NAME), Operand.LessThanEqualTo, convertToUTCDateTime(effectiveToDate));
+		where(getEntityAttributes().getEffectiveToDate(), Operand.LessThanEqualTo, convertToUTCDateTime(effectiveToDate));
 		return (J) this;
 	}
 	
@@ -124,16 +142,16 @@ public abstract class QueryBuilderSCD<J extends QueryBuilderSCD<J, E, I>, E exte
 	{
 		if (fromDate != null)
 		{
-			where(getAttribute(EFFECTIVE_FROM_DATE_COLUMN_NAME), Operand.GreaterThanEqualTo, convertToUTCDateTime(fromDate));
+			where(getEntityAttributes().getEffectiveFromDate(), Operand.GreaterThanEqualTo, convertToUTCDateTime(fromDate));
 		}
 		//noinspection ReplaceNullCheck
 		if (toDate != null)
 		{
-			where(getAttribute(EFFECTIVE_TO_DATE_COLUMN_NAME), Operand.LessThanEqualTo, convertToUTCDateTime(toDate));
+			where(getEntityAttributes().getEffectiveToDate(), Operand.LessThanEqualTo, convertToUTCDateTime(toDate));
 		}
 		else
 		{
-			where(getAttribute(EFFECTIVE_TO_DATE_COLUMN_NAME), Operand.LessThanEqualTo, EndOfTime.atOffset(UTC));
+			where(getEntityAttributes().getEffectiveToDate(), Operand.LessThanEqualTo, EndOfTime.atOffset(UTC));
 		}
 		
 		return (J) this;
@@ -143,7 +161,7 @@ public abstract class QueryBuilderSCD<J extends QueryBuilderSCD<J, E, I>, E exte
 	{
 		if (time != null)
 		{
-			where(getAttribute(WAREHOUSE_CREATED_DATE_COLUMN_NAME), Operand.Equals, convertToUTCDateTime(time));
+			where(getEntityAttributes().getWarehouseCreatedTimestamp(), Operand.Equals, convertToUTCDateTime(time));
 		}
 		//noinspection unchecked
 		return (J) this;
@@ -153,12 +171,134 @@ public abstract class QueryBuilderSCD<J extends QueryBuilderSCD<J, E, I>, E exte
 	{
 		if (time != null)
 		{
-			where(getAttribute(WAREHOUSE_UPDATED_DATE_COLUMN_NAME), Operand.Equals, convertToUTCDateTime(time));
+			where(getEntityAttributes().getWarehouseLastUpdatedTimestamp(), Operand.Equals, convertToUTCDateTime(time));
 		}
 		//noinspection unchecked
 		return (J) this;
 	}
 	
+	/**
+	 * Returns the versions valid at the given time that match this builder, materialized as a reusable snapshot.
+	 * <p>
+	 * When AsOfSnapshotCache is enabled, snapshots are kept by session, entity, time and the fingerprint and bound values of the builder,
+	 * so an identically built builder in the same session is answered without a database round trip
+	 * until a write to the entity makes the snapshot stale or it expires.
+	 * Only builders whose filters are parameterized can be described and kept, see setParameterized.
+	 *
+	 * @param asOf The point in time
+	 * @return The snapshot of detached versions
+	 */
+	@Override
+	@NotNull
+	public AsOfSnapshot<E> getSnapshot(LocalDateTime asOf)
+	{
+		boolean parameterized = isParameterized();
+		setParameterized(true);
+		try
+		{
+			inDateRange(asOf);
+		}
+		finally
+		{
+			setParameterized(parameterized);
+		}
+		QueryResultCache.ResultKey key = AsOfSnapshotCache.isEnabled() ? QueryResultCache.key(this, AsOfSnapshotCache.SNAPSHOT, getEntityClass()) : null;
+		Session session = key != null ? getEntityManager().unwrap(Session.class) : null;
+		if (key != null)
+		{
+			AsOfSnapshot<E> cached = AsOfSnapshotCache.get(session, key);
+			if (cached != null)
+			{
+				return cached;
+			}
+		}
+		boolean detached = isDetach();
+		setDetach(true);
+		List<E> rows;
+		try
+		{
+			rows = getAll();
+		}
+		finally
+		{
+			setDetach(detached);
+		}
+		AsOfSnapshot<E> snapshot = new AsOfSnapshot<>(asOf, rows == null ? new ArrayList<>() : rows);
+		if (key != null)
+		{
+			AsOfSnapshotCache.put(session, key, snapshot);
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * Where the warehouse last updated timestamp is on or after the given time, to start a change feed from a point in time
+	 *
+	 * @param time The earliest update to include
+	 * @return This
+	 */
+	@Override
+	@NotNull
+	public J updatedSince(LocalDateTime time)
+	{
+		if (time != null)
+		{
+			where(getEntityAttributes().getWarehouseLastUpdatedTimestamp(), Operand.GreaterThanEqualTo, convertToUTCDateTime(time));
+		}
+		//noinspection unchecked
+		return (J) this;
+	}
+	
+	/**
+	 * Returns the next batch of rows changed after the watermark, ordered by warehouse last updated timestamp and then identifier.
+	 * <p>
+	 * The watermark seeks past the last row delivered, so each batch costs the same regardless of how far the feed has advanced
+	 * and rows sharing a timestamp are neither skipped nor repeated. Other filters on this builder are applied to every batch,
+	 * so the next batch must be read with an identically built builder. Rows are only visible once their transaction commits,
+	 * a writer that commits a timestamp older than a delivered watermark is not picked up.
+	 *
+	 * @param watermark The watermark of the previous batch, or null to start from the beginning
+	 * @param batchSize The maximum rows in the batch
+	 * @return The batch with the watermark to continue from
+	 */
+	@Override
+	@NotNull
+	public ChangeBatch<E> getChanges(String watermark, int batchSize)
+	{
+		return readChanges(watermark, batchSize, null, null);
+	}
+	
+	/**
+	 * Returns the next batch of a named feed, resuming from the watermark saved in the store.
+	 * <p>
+	 * The watermark is only saved when the batch is acknowledged, so rows are delivered at least once.
+	 * Read batches with a new builder until a batch has no more waiting
+	 *
+	 * @param feed      The feed name
+	 * @param store     The durable watermark store
+	 * @param batchSize The maximum rows in the batch
+	 * @return The batch, acknowledge it once processed
+	 */
+	@Override
+	@NotNull
+	public ChangeBatch<E> getChanges(String feed, WatermarkStore store, int batchSize)
+	{
+		return readChanges(store.load(feed), batchSize, store, feed);
+	}
+	
+	private ChangeBatch<E> readChanges(String watermark, int batchSize, WatermarkStore store, String feed)
+	{
+		if (!getOrderByExpressions().isEmpty())
+		{
+			throw new UnsupportedOperationException("A change feed is ordered by the last updated timestamp and cannot use other order bys");
+		}
+		orderBy(getEntityAttributes().getWarehouseLastUpdatedTimestamp(), OrderByType.ASC);
+		KeysetPage<E> page = getPage(batchSize, watermark);
+		List<E> rows = page.getResults();
+		String next = rows.isEmpty() ? watermark : getContinuationToken(rows.get(rows.size() - 1));
+		return new ChangeBatch<>(rows, next, page.hasNext(), store, feed);
+	}
+	
 	@Override
 	public @NotNull E update(E entity)
 	{
@@ -235,6 +375,10 @@ public abstract class QueryBuilderSCD<J extends QueryBuilderSCD<J, E, I>, E exte
 		{
 			entity.setEffectiveToDate(EndOfTime.atOffset(UTC));
 		}
+		if (getEntityAttributes().getRowHash() != null)
+		{
+			RowHash.stamp(entity);
+		}
 		return true;
 	}
 	
@@ -249,9 +393,98 @@ public abstract class QueryBuilderSCD<J extends QueryBuilderSCD<J, E, I>, E exte
 	public boolean onUpdate(E entity)
 	{
 		entity.setWarehouseLastUpdatedTimestamp(convertToUTCDateTime(RootEntity.getNow()));
+		if (getEntityAttributes().getRowHash() != null)
+		{
+			RowHash.stamp(entity);
+		}
 		return true;
 	}
 	
+	/**
+	 * Returns the content hashes of the current versions with the given ids, those with an effective to date of the end of time.
+	 * <p>
+	 * When the entity maps a row hash column only the id and hash are projected, in id chunks, without loading any entity.
+	 * Otherwise the rows are loaded through getAllById and hashed in memory.
+	 *
+	 * @param ids The ids to look up
+	 * @return The stored hash by id, ids that are missing or only closed versions are absent
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Map<I, String> getCurrentRowHashes(Collection<I> ids)
+	{
+		Map<I, String> hashes = new HashMap<>();
+		if (ids.isEmpty())
+		{
+			return hashes;
+		}
+		SingularAttribute<? super E, String> rowHash = (SingularAttribute<? super E, String>) getEntityAttributes().<E>getRowHash();
+		OffsetDateTime endOfTime = EndOfTime.atOffset(UTC);
+		if (rowHash == null)
+		{
+			getAllById(ids).forEach((id, entity) -> {
+				if (endOfTime.isEqual(entity.getEffectiveToDate()))
+				{
+					hashes.put(id, RowHash.of(entity));
+				}
+			});
+			return hashes;
+		}
+		SingularAttribute<? super E, OffsetDateTime> effectiveTo = (SingularAttribute<? super E, OffsetDateTime>) getEntityAttributes().<E>getEffectiveToDate();
+		SingularAttribute<? super E, I> id = (SingularAttribute<? super E, I>) getEntityAttributes().<E, I>getIdAttribute();
+		List<I> idList = new ArrayList<>(new LinkedHashSet<>(ids));
+		int chunkSize = Math.max(1, getIdChunkSize());
+		for (int i = 0; i < idList.size(); i += chunkSize)
+		{
+			List<I> chunk = idList.subList(i, Math.min(idList.size(), i + chunkSize));
+			CriteriaQuery<Object[]> query = getCriteriaBuilder().createQuery(Object[].class);
+			Root<E> root = query.from(getEntityClass());
+			query.multiselect(root.get(id), root.get(rowHash))
+			     .where(root.get(id)
+			                .in(chunk), getCriteriaBuilder().equal(root.get(effectiveTo), endOfTime));
+			TypedQuery<Object[]> typedQuery = getEntityManager().createQuery(query);
+			if (isReadOnly())
+			{
+				typedQuery.setHint("org.hibernate.readOnly", true);
+			}
+			for (Object[] row : typedQuery.getResultList())
+			{
+				hashes.put((I) row[0], (String) row[1]);
+			}
+		}
+		return hashes;
+	}
+	
+	/**
+	 * Returns the incoming entities whose content differs from their current version, including those without a current version
+	 *
+	 * @param incoming The incoming snapshot
+	 * @return The new and changed entities in snapshot order
+	 */
+	@Override
+	public List<E> getChanged(Collection<E> incoming)
+	{
+		List<I> ids = new ArrayList<>(incoming.size());
+		for (E entity : incoming)
+		{
+			if (entity.getId() != null)
+			{
+				ids.add(entity.getId());
+			}
+		}
+		Map<I, String> current = getCurrentRowHashes(ids);
+		List<E> changed = new ArrayList<>();
+		for (E entity : incoming)
+		{
+			if (entity.getId() == null || !RowHash.of(entity)
+			                                      .equals(current.get(entity.getId())))
+			{
+				changed.add(entity);
+			}
+		}
+		return changed;
+	}
+	
 	public static OffsetDateTime convertToUTCDateTime(LocalDateTime ldt) {
 		if (ldt == null)
 		{
@@ -292,7 +525,7 @@ public abstract class QueryBuilderSCD<J extends QueryBuilderSCD<J, E, I>, E exte
 
 	public J latestFirst()
 	{
-		orderBy(getAttribute(WAREHOUSE_UPDATED_DATE_COLUMN_NAME), OrderByType.DESC);
+		orderBy(getEntityAttributes().getWarehouseLastUpdatedTimestamp(), OrderByType.DESC);
 		return (J)this;
 	}
 }
@@ -0,0 +1,98 @@
+package com.entityassist.querybuilder.builders;
+
+import com.entityassist.services.entities.IRootEntity;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * The versions of an SCD table that were valid at a point in time, materialized once for repeated drill-downs.
+ * <p>
+ * Rows are detached and shared between every reader of the snapshot, so treat them as read only.
+ *
+ * @param <E> The entity type
+ */
+@SuppressWarnings("unused")
+public final class AsOfSnapshot<E extends IRootEntity<?, ?, ?>>
+{
+	/**
+	 * The point in time the versions were valid at
+	 */
+	private final LocalDateTime asOf;
+	/**
+	 * The versions in query order
+	 */
+	private final List<E> results;
+	/**
+	 * The versions by id
+	 */
+	private final Map<Object, E> byId;
+
+	public AsOfSnapshot(LocalDateTime asOf, List<E> results)
+	{
+		this.asOf = asOf;
+		this.results = Collections.unmodifiableList(new ArrayList<>(results));
+		Map<Object, E> ids = new HashMap<>(Math.max(16, results.size() * 4 / 3 + 1));
+		for (E result : results)
+		{
+			ids.put(result.getId(), result);
+		}
+		byId = Collections.unmodifiableMap(ids);
+	}
+
+	/**
+	 * The point in time the versions were valid at
+	 *
+	 * @return The as of time
+	 */
+	public LocalDateTime getAsOf()
+	{
+		return asOf;
+	}
+
+	/**
+	 * The versions valid at the as of time
+	 *
+	 * @return An unmodifiable list of the versions
+	 */
+	public List<E> getResults()
+	{
+		return results;
+	}
+
+	/**
+	 * The version with the given id
+	 *
+	 * @param id The id
+	 * @return The version, if it was valid at the as of time and matched the builder
+	 */
+	public Optional<E> find(Object id)
+	{
+		return Optional.ofNullable(byId.get(id));
+	}
+
+	/**
+	 * Drills down into the snapshot without going back to the database
+	 *
+	 * @param filter The rows to keep
+	 * @return The matching versions in query order
+	 */
+	public List<E> filter(Predicate<? super E> filter)
+	{
+		return results.stream()
+		              .filter(filter)
+		              .collect(Collectors.toList());
+	}
+
+	/**
+	 * The number of versions in the snapshot
+	 *
+	 * @return the size
+	 */
+	public int size()
+	{
+		return results.size();
+	}
+}
@@ -0,0 +1,321 @@
+package com.entityassist.querybuilder.builders;
+
+import com.entityassist.services.entities.IRootEntity;
+import org.hibernate.Session;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds as of snapshots keyed by session, entity, point in time and the structural fingerprint and bound values of the builder.
+ * <p>
+ * A snapshot is only reused by the session that read it, so it may hold that session's uncommitted rows.
+ * The cache is bounded by the total rows held across all snapshots, evicting the least recently used first,
+ * and snapshots expire after the time to live or once their session is collected.
+ * Snapshots use the write generations of the query result cache, so any write to a class they read makes them stale.
+ */
+@SuppressWarnings("unused")
+public final class AsOfSnapshotCache
+{
+	/**
+	 * The query purpose of snapshot keys
+	 */
+	public static final String SNAPSHOT = "snapshot";
+
+	private static final LongAdder hits = new LongAdder();
+	private static final LongAdder misses = new LongAdder();
+	private static final LongAdder evictions = new LongAdder();
+
+	/**
+	 * If snapshots are kept for reuse
+	 */
+	private static volatile boolean enabled = false;
+	/**
+	 * The maximum rows held across all snapshots
+	 */
+	private static volatile int maximumRows = 100_000;
+	/**
+	 * How long a snapshot is served for
+	 */
+	private static volatile Duration timeToLive = Duration.ofMinutes(5);
+	/**
+	 * The rows currently held
+	 */
+	private static int rows;
+
+	/**
+	 * The snapshots in access order
+	 */
+	private static final LinkedHashMap<SnapshotKey, Entry> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+
+	private AsOfSnapshotCache()
+	{
+		//No config required
+	}
+
+	/**
+	 * If snapshots are kept for reuse
+	 *
+	 * @return if enabled
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Sets if snapshots are kept for reuse
+	 *
+	 * @param enabled if enabled
+	 */
+	public static void setEnabled(boolean enabled)
+	{
+		AsOfSnapshotCache.enabled = enabled;
+		if (!enabled)
+		{
+			clear();
+		}
+	}
+
+	/**
+	 * The maximum rows held across all snapshots
+	 *
+	 * @return the maximum
+	 */
+	public static int getMaximumRows()
+	{
+		return maximumRows;
+	}
+
+	/**
+	 * Sets the maximum rows held across all snapshots, larger snapshots are returned but not kept
+	 *
+	 * @param maximumRows the maximum
+	 */
+	public static void setMaximumRows(int maximumRows)
+	{
+		synchronized (snapshots)
+		{
+			AsOfSnapshotCache.maximumRows = maximumRows;
+			trim();
+		}
+	}
+
+	/**
+	 * How long a snapshot is served for
+	 *
+	 * @return the time to live
+	 */
+	public static Duration getTimeToLive()
+	{
+		return timeToLive;
+	}
+
+	/**
+	 * Sets how long a snapshot is served for
+	 *
+	 * @param timeToLive the time to live
+	 */
+	public static void setTimeToLive(Duration timeToLive)
+	{
+		AsOfSnapshotCache.timeToLive = timeToLive;
+	}
+
+	/**
+	 * The rows currently held
+	 *
+	 * @return the row count
+	 */
+	public static int getRows()
+	{
+		synchronized (snapshots)
+		{
+			return rows;
+		}
+	}
+
+	public static long getHits()
+	{
+		return hits.sum();
+	}
+
+	public static long getMisses()
+	{
+		return misses.sum();
+	}
+
+	public static long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+	/**
+	 * The number of snapshots held
+	 *
+	 * @return the size
+	 */
+	public static int size()
+	{
+		synchronized (snapshots)
+		{
+			return snapshots.size();
+		}
+	}
+
+	/**
+	 * Removes all snapshots
+	 */
+	public static void clear()
+	{
+		synchronized (snapshots)
+		{
+			snapshots.clear();
+			rows = 0;
+		}
+	}
+
+	/**
+	 * Returns the snapshot the session read for the key, if it is still current
+	 *
+	 * @param session The reading session
+	 * @param key     The key
+	 * @param <E>     The entity type
+	 * @return The snapshot, or null on a miss
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E extends IRootEntity<?, ?, ?>> AsOfSnapshot<E> get(Session session, QueryResultCache.ResultKey key)
+	{
+		Entry entry = null;
+		if (enabled)
+		{
+			SnapshotKey snapshotKey = new SnapshotKey(session, key);
+			synchronized (snapshots)
+			{
+				entry = snapshots.get(snapshotKey);
+				if (entry != null && (entry.expires - System.nanoTime() < 0 || !entry.key.isCurrent()))
+				{
+					remove(snapshotKey);
+					entry = null;
+				}
+			}
+		}
+		if (entry == null)
+		{
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return (AsOfSnapshot<E>) entry.snapshot;
+	}
+
+	/**
+	 * Keeps the snapshot for the session, unless one of the classes it read was written while it was materialized
+	 *
+	 * @param session  The reading session
+	 * @param key      The key created before the snapshot was read
+	 * @param snapshot The snapshot
+	 */
+	public static void put(Session session, QueryResultCache.ResultKey key, AsOfSnapshot<?> snapshot)
+	{
+		if (!enabled || !key.isCurrent() || snapshot.size() > maximumRows)
+		{
+			return;
+		}
+		SnapshotKey snapshotKey = new SnapshotKey(session, key);
+		Entry entry = new Entry(key, snapshot, System.nanoTime() + timeToLive.toNanos());
+		synchronized (snapshots)
+		{
+			remove(snapshotKey);
+			snapshots.put(snapshotKey, entry);
+			rows += snapshot.size();
+			trim();
+		}
+	}
+
+	private static void remove(SnapshotKey key)
+	{
+		Entry removed = snapshots.remove(key);
+		if (removed != null)
+		{
+			rows -= removed.snapshot.size();
+			evictions.increment();
+		}
+	}
+
+	private static void trim()
+	{
+		long now = System.nanoTime();
+		Iterator<Map.Entry<SnapshotKey, Entry>> eldest = snapshots.entrySet()
+		                                                          .iterator();
+		while (eldest.hasNext())
+		{
+			Map.Entry<SnapshotKey, Entry> next = eldest.next();
+			if (rows > maximumRows || next.getKey().session.get() == null || next.getValue().expires - now < 0)
+			{
+				rows -= next.getValue().snapshot.size();
+				eldest.remove();
+				evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * A result key within the session that read it
+	 */
+	private static final class SnapshotKey
+	{
+		private final WeakReference<Session> session;
+		private final int sessionHash;
+		private final QueryResultCache.ResultKey key;
+
+		private SnapshotKey(Session session, QueryResultCache.ResultKey key)
+		{
+			this.session = new WeakReference<>(session);
+			this.sessionHash = System.identityHashCode(session);
+			this.key = key;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+			{
+				return true;
+			}
+			if (!(o instanceof SnapshotKey))
+			{
+				return false;
+			}
+			SnapshotKey that = (SnapshotKey) o;
+			Session mine = session.get();
+			return mine != null && mine == that.session.get() && key.equals(that.key);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * sessionHash + key.hashCode();
+		}
+	}
+
+	/**
+	 * A snapshot, the key holding the generations it was read at and when it expires
+	 */
+	private static final class Entry
+	{
+		private final QueryResultCache.ResultKey key;
+		private final AsOfSnapshot<?> snapshot;
+		private final long expires;
+
+		private Entry(QueryResultCache.ResultKey key, AsOfSnapshot<?> snapshot, long expires)
+		{
+			this.key = key;
+			this.snapshot = snapshot;
+			this.expires = expires;
+		}
+	}
+}
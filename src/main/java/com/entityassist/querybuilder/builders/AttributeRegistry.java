@@ -0,0 +1,56 @@
+package com.entityassist.querybuilder.builders;
+
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
+
+/**
+ * A lock-free registry of the metamodel attributes of each entity class.
+ * <p>
+ * Entries are created once per class and resolve their attributes from the JPA metamodel on first use,
+ * replacing the reflective lookup of the static metamodel class on every call.
+ * Call register(Metamodel) on startup to resolve every managed type up front.
+ */
+@SuppressWarnings("unused")
+public final class AttributeRegistry
+{
+	private static final ClassValue<EntityAttributes> registry = new ClassValue<>()
+	{
+		@Override
+		protected EntityAttributes computeValue(Class<?> type)
+		{
+			return new EntityAttributes(type);
+		}
+	};
+
+	private AttributeRegistry()
+	{
+		//No config required
+	}
+
+	/**
+	 * Returns the attribute entry for the given entity class
+	 *
+	 * @param entityClass The entity class
+	 * @return The entry, never null
+	 */
+	public static EntityAttributes of(Class<?> entityClass)
+	{
+		return registry.get(entityClass);
+	}
+
+	/**
+	 * Resolves the attributes of every managed type in the metamodel
+	 *
+	 * @param metamodel The metamodel of the entity manager factory
+	 */
+	public static void register(Metamodel metamodel)
+	{
+		for (ManagedType<?> managedType : metamodel.getManagedTypes())
+		{
+			if (managedType.getJavaType() != null)
+			{
+				of(managedType.getJavaType()).resolve(metamodel);
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.entityassist.querybuilder.builders;
+
+import java.util.List;
+
+/**
+ * A bounded batch of rows from a change feed, ordered by last updated timestamp and identifier
+ *
+ * @param <T> The row type
+ */
+@SuppressWarnings("unused")
+public final class ChangeBatch<T>
+{
+	/**
+	 * The changed rows of this batch
+	 */
+	private final List<T> results;
+	/**
+	 * The watermark after the last row of this batch, or the requested watermark when the batch is empty
+	 */
+	private final String watermark;
+	/**
+	 * If more changes were waiting when this batch was read
+	 */
+	private final boolean more;
+	/**
+	 * The store and feed the watermark is acknowledged to, null when read by watermark
+	 */
+	private final WatermarkStore store;
+	private final String feed;
+
+	public ChangeBatch(List<T> results, String watermark, boolean more, WatermarkStore store, String feed)
+	{
+		this.results = results;
+		this.watermark = watermark;
+		this.more = more;
+		this.store = store;
+		this.feed = feed;
+	}
+
+	/**
+	 * The changed rows of this batch
+	 *
+	 * @return The rows, never null
+	 */
+	public List<T> getResults()
+	{
+		return results;
+	}
+
+	/**
+	 * The watermark to read the next batch from
+	 *
+	 * @return The watermark, null if nothing has been read from the feed yet
+	 */
+	public String getWatermark()
+	{
+		return watermark;
+	}
+
+	/**
+	 * If more changes were waiting when this batch was read
+	 *
+	 * @return if the next batch should be read straight away
+	 */
+	public boolean hasMore()
+	{
+		return more;
+	}
+
+	/**
+	 * Saves the watermark of this batch to the feed's store once its rows have been processed.
+	 * Until then a restarted consumer reads this batch again.
+	 */
+	public void acknowledge()
+	{
+		if (store == null)
+		{
+			throw new UnsupportedOperationException("This batch was not read from a watermark store");
+		}
+		if (!results.isEmpty())
+		{
+			store.save(feed, watermark);
+		}
+	}
+}
@@ -0,0 +1,415 @@
+package com.entityassist.querybuilder.builders;
+
+import org.hibernate.Session;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A near cache mapping the business key of an SCD entity to its current version.
+ * <p>
+ * Entries hold the id and a private copy of the current version, and every hit returns a new copy so callers never share state.
+ * Writes of single entities through the builders remove only the entries of that id, while set based statements drop every entry of their class.
+ * Both happen when the write runs and again when the writing transaction completes, and each class carries a write counter
+ * so a version loaded while any write of its class ran is not kept. Sessions with uncommitted writes to a class bypass the cache.
+ * <p>
+ * Writes made outside the builders, by other nodes or by native SQL are only seen once an entry expires, so the cache is off by default.
+ */
+@SuppressWarnings("unused")
+public final class CurrentVersionCache
+{
+	/**
+	 * Advanced by every invalidation of a class
+	 */
+	private static final ClassValue<AtomicLong> writes = new ClassValue<>()
+	{
+		@Override
+		protected AtomicLong computeValue(Class<?> type)
+		{
+			return new AtomicLong();
+		}
+	};
+
+	private static final LongAdder hits = new LongAdder();
+	private static final LongAdder misses = new LongAdder();
+	private static final LongAdder evictions = new LongAdder();
+	private static final LongAdder invalidations = new LongAdder();
+
+	/**
+	 * If current versions are kept
+	 */
+	private static volatile boolean enabled = false;
+	/**
+	 * The maximum number of business keys held
+	 */
+	private static int maximumEntries = 10_000;
+	/**
+	 * How long a current version is served for
+	 */
+	private static volatile Duration timeToLive = Duration.ofMinutes(5);
+
+	/**
+	 * The current versions by business key in access order
+	 */
+	private static final LinkedHashMap<VersionKey, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+	/**
+	 * The business keys cached for each id
+	 */
+	private static final Map<VersionKey, Set<VersionKey>> keysById = new HashMap<>();
+
+	private CurrentVersionCache()
+	{
+		//No config required
+	}
+
+	/**
+	 * If current versions are kept
+	 *
+	 * @return if enabled
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Sets if current versions are kept
+	 *
+	 * @param enabled if enabled
+	 */
+	public static void setEnabled(boolean enabled)
+	{
+		CurrentVersionCache.enabled = enabled;
+		if (!enabled)
+		{
+			clear();
+		}
+	}
+
+	/**
+	 * The maximum number of business keys held
+	 *
+	 * @return the maximum
+	 */
+	public static int getMaximumEntries()
+	{
+		return maximumEntries;
+	}
+
+	/**
+	 * Sets the maximum number of business keys held, the least recently used are evicted first
+	 *
+	 * @param maximumEntries the maximum
+	 */
+	public static void setMaximumEntries(int maximumEntries)
+	{
+		synchronized (entries)
+		{
+			CurrentVersionCache.maximumEntries = maximumEntries;
+			trim();
+		}
+	}
+
+	/**
+	 * How long a current version is served for
+	 *
+	 * @return the time to live
+	 */
+	public static Duration getTimeToLive()
+	{
+		return timeToLive;
+	}
+
+	/**
+	 * Sets how long a current version is served for
+	 *
+	 * @param timeToLive the time to live
+	 */
+	public static void setTimeToLive(Duration timeToLive)
+	{
+		CurrentVersionCache.timeToLive = timeToLive;
+	}
+
+	public static long getHits()
+	{
+		return hits.sum();
+	}
+
+	public static long getMisses()
+	{
+		return misses.sum();
+	}
+
+	public static long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+	public static long getInvalidations()
+	{
+		return invalidations.sum();
+	}
+
+	/**
+	 * The number of business keys held
+	 *
+	 * @return the size
+	 */
+	public static int size()
+	{
+		synchronized (entries)
+		{
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Removes all entries
+	 */
+	public static void clear()
+	{
+		synchronized (entries)
+		{
+			entries.clear();
+			keysById.clear();
+		}
+	}
+
+	/**
+	 * The write counter of a class, read before loading a version to put
+	 *
+	 * @param entityClass The entity class
+	 * @return The current count
+	 */
+	public static long getWrites(Class<?> entityClass)
+	{
+		return writes.get(entityClass)
+		             .get();
+	}
+
+	/**
+	 * Returns a copy of the current version for the business key
+	 *
+	 * @param entityClass The entity class
+	 * @param attribute   The business key attribute name
+	 * @param value       The business key value
+	 * @param <E>         The entity type
+	 * @return A copy of the current version, or null on a miss
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> E get(Class<?> entityClass, String attribute, Object value)
+	{
+		Entry entry = null;
+		if (enabled)
+		{
+			VersionKey key = new VersionKey(entityClass, attribute, value);
+			synchronized (entries)
+			{
+				entry = entries.get(key);
+				if (entry != null && entry.expires - System.nanoTime() < 0)
+				{
+					remove(key);
+					evictions.increment();
+					entry = null;
+				}
+			}
+		}
+		if (entry == null)
+		{
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return (E) QueryCoalescer.copyOf(entry.state);
+	}
+
+	/**
+	 * Keeps a copy of the current version for the business key, unless its class was written since the given count
+	 *
+	 * @param entityClass The entity class
+	 * @param attribute   The business key attribute name
+	 * @param value       The business key value
+	 * @param id          The id of the current version
+	 * @param version     The detached current version
+	 * @param writesRead  The write count read before the version was loaded
+	 */
+	public static void put(Class<?> entityClass, String attribute, Object value, Object id, Object version, long writesRead)
+	{
+		if (!enabled || id == null)
+		{
+			return;
+		}
+		VersionKey key = new VersionKey(entityClass, attribute, value);
+		VersionKey idKey = new VersionKey(entityClass, null, id);
+		Entry entry = new Entry(idKey, QueryCoalescer.copyOf(version), System.nanoTime() + timeToLive.toNanos());
+		synchronized (entries)
+		{
+			if (getWrites(entityClass) != writesRead)
+			{
+				return;
+			}
+			remove(key);
+			entries.put(key, entry);
+			keysById.computeIfAbsent(idKey, k -> new HashSet<>())
+			        .add(key);
+			trim();
+		}
+	}
+
+	/**
+	 * Removes the business keys whose current version has the given id now, and again when the session's transaction completes
+	 *
+	 * @param session     The writing session
+	 * @param entityClass The entity class
+	 * @param id          The id of the written version
+	 */
+	public static void invalidate(Session session, Class<?> entityClass, Object id)
+	{
+		invalidate(entityClass, id);
+		QueryResultCache.onCompletion(session, () -> invalidate(entityClass, id));
+	}
+
+	/**
+	 * Removes every business key of the class now, and again when the session's transaction completes
+	 *
+	 * @param session     The writing session
+	 * @param entityClass The entity class
+	 */
+	public static void invalidate(Session session, Class<?> entityClass)
+	{
+		invalidate(entityClass);
+		QueryResultCache.onCompletion(session, () -> invalidate(entityClass));
+	}
+
+	/**
+	 * Removes the business keys whose current version has the given id
+	 *
+	 * @param entityClass The entity class
+	 * @param id          The id of the written version
+	 */
+	public static void invalidate(Class<?> entityClass, Object id)
+	{
+		invalidations.increment();
+		synchronized (entries)
+		{
+			for (Class<?> type = entityClass; type != null && type != Object.class; type = type.getSuperclass())
+			{
+				writes.get(type)
+				      .incrementAndGet();
+				Set<VersionKey> keys = keysById.remove(new VersionKey(type, null, id));
+				if (keys != null)
+				{
+					keys.forEach(entries::remove);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes every business key of the class, for set based statements whose rows are not known
+	 *
+	 * @param entityClass The entity class
+	 */
+	public static void invalidate(Class<?> entityClass)
+	{
+		invalidations.increment();
+		synchronized (entries)
+		{
+			for (Class<?> type = entityClass; type != null && type != Object.class; type = type.getSuperclass())
+			{
+				writes.get(type)
+				      .incrementAndGet();
+				Class<?> written = type;
+				entries.keySet()
+				       .removeIf(key -> key.entityClass == written);
+				keysById.keySet()
+				        .removeIf(key -> key.entityClass == written);
+			}
+		}
+	}
+
+	private static void remove(VersionKey key)
+	{
+		Entry removed = entries.remove(key);
+		if (removed != null)
+		{
+			Set<VersionKey> keys = keysById.get(removed.id);
+			if (keys != null)
+			{
+				keys.remove(key);
+				if (keys.isEmpty())
+				{
+					keysById.remove(removed.id);
+				}
+			}
+		}
+	}
+
+	private static void trim()
+	{
+		while (entries.size() > maximumEntries)
+		{
+			remove(entries.keySet()
+			              .iterator()
+			              .next());
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * A business key, or an id when the attribute is null
+	 */
+	private static final class VersionKey
+	{
+		private final Class<?> entityClass;
+		private final String attribute;
+		private final Object value;
+
+		private VersionKey(Class<?> entityClass, String attribute, Object value)
+		{
+			this.entityClass = entityClass;
+			this.attribute = attribute;
+			this.value = value;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+			{
+				return true;
+			}
+			if (!(o instanceof VersionKey))
+			{
+				return false;
+			}
+			VersionKey other = (VersionKey) o;
+			return entityClass == other.entityClass && Objects.equals(attribute, other.attribute) && Objects.equals(value, other.value);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(entityClass, attribute, value);
+		}
+	}
+
+	/**
+	 * A current version, the id key it is indexed under and when it expires
+	 */
+	private static final class Entry
+	{
+		private final VersionKey id;
+		private final Object state;
+		private final long expires;
+
+		private Entry(VersionKey id, Object state, long expires)
+		{
+			this.id = id;
+			this.state = state;
+			this.expires = expires;
+		}
+	}
+}
@@ -8,15 +8,15 @@ import com.entityassist.enumerations.OrderByType;
 import com.entityassist.enumerations.SelectAggregrate;
 import com.entityassist.querybuilder.QueryBuilder;
 import com.google.common.base.Strings;
-import jakarta.persistence.Id;
+import jakarta.persistence.Query;
 import jakarta.persistence.criteria.*;
 import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EmbeddableType;
 import jakarta.persistence.metamodel.PluralAttribute;
 import jakarta.persistence.metamodel.SingularAttribute;
 import jakarta.validation.constraints.NotNull;
 
 import java.io.Serializable;
-import java.lang.reflect.Field;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -89,6 +89,35 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 	 * Returns the root object of this entity
 	 */
 	private From<?, ?> root;
+	/**
+	 * If new builders bind their where values as parameters instead of literals
+	 */
+	public static boolean defaultParameterized = false;
+	
+	/**
+	 * If this builder binds its values as parameters and executes through the compiled query plan cache
+	 */
+	private boolean planCached = QueryPlanCache.isEnabled();
+	/**
+	 * If the results of this builder are served from and stored in the query result cache
+	 */
+	private boolean resultCached = QueryResultCache.isEnabled();
+	/**
+	 * If concurrent identical executions of this builder share one database call
+	 */
+	private boolean coalesced = QueryCoalescer.isEnabled();
+	/**
+	 * If this builder binds its where values as parameters instead of literals
+	 */
+	private boolean parameterized = defaultParameterized;
+	/**
+	 * The id of a find(id), for loading directly through the entity manager
+	 */
+	private I findId;
+	/**
+	 * The cursor columns when paging by keyset, null otherwise
+	 */
+	private List<KeysetKey> keysetKeys;
 	
 	/**
 	 * Constructs a new query builder core with typed classes instantiated
@@ -132,13 +161,17 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 	}
 	
 	/**
-	 * Gets my given root
+	 * Gets my given root, creating it on the criteria query on first use
 	 *
 	 * @return The From object that is being used
 	 */
 	@Override
 	public From getRoot()
 	{
+		if (root == null && getEntityClass() != null)
+		{
+			root = getCriteriaQuery().from(getEntityClass());
+		}
 		return root;
 	}
 	
@@ -167,91 +200,230 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 	@SuppressWarnings("unchecked")
 	public J find(I id)
 	{
-		Field found = null;
-		Field[] allFields = id.getClass()
-		                      .getFields();
-		for (Field allField : allFields)
+		where(getIdAttribute(), Operand.Equals, id);
+		findId = id;
+		return (J) this;
+	}
+	
+	/**
+	 * Returns the identifier attribute of the entity from the attribute registry, or the "id" attribute if the entity uses an id class
+	 *
+	 * @param <X> The declaring type
+	 * @param <Y> The identifier type
+	 * @return The identifier attribute
+	 */
+	protected <X, Y> Attribute<X, Y> getIdAttribute()
+	{
+		Attribute<X, Y> idAttribute = getEntityAttributes().getIdAttribute();
+		if (idAttribute == null)
 		{
-			if (allField.isAnnotationPresent(Id.class))
-			{
-				found = allField;
-				break;
-			}
+			idAttribute = getAttribute("id");
 		}
-		
-		Optional<Field> idField = Optional.ofNullable(found);
-		if (!idField.isPresent())
+		return idAttribute;
+	}
+	
+	/**
+	 * If this builder is a plain primary key lookup that can be answered by the entity manager.
+	 * <p>
+	 * True when find(id) was the only filter applied and nothing changes the shape of the result,
+	 * so the persistence context and the second level cache can be used instead of a query
+	 *
+	 * @return if the find id can be loaded directly
+	 */
+	protected boolean isIdLookup()
+	{
+		return findId != null
+		       && getWhereExpressions().size() == 1
+		       && getFilters().size() == 1
+		       && getJoins().isEmpty()
+		       && getSelectExpressions().isEmpty()
+		       && getSelections().isEmpty()
+		       && getGroupBys().isEmpty()
+		       && getHavingExpressions().isEmpty()
+		       && getConstruct() == null
+		       && !isDelete()
+		       && !isUpdate()
+		       && (getFirstResults() == null || getFirstResults() == 0);
+	}
+	
+	/**
+	 * The id given to the last find(id)
+	 *
+	 * @return The id or null
+	 */
+	protected I getFindId()
+	{
+		return findId;
+	}
+	
+	
+	/**
+	 * Where the "id" field is in
+	 *
+	 * @param id Finds by ID
+	 * @return This (Use get to return results)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public J find(Collection<I> id)
+	{
+		List<Object> idList = new ArrayList<>(new LinkedHashSet<>(id));
+		where(this.<Object, Object>getIdAttribute(), Operand.InList, idList);
+		return (J) this;
+	}
+	
+	/**
+	 * Switches this builder to keyset pagination and, if a continuation token is given, filters to the rows after it.
+	 * <p>
+	 * The cursor is the order by attributes followed by the identifier, with embedded and id class identifiers split into their columns.
+	 * The seek predicate is the expanded row value comparison (a &gt; x) or (a = x and b &gt; y)..., built from where expressions
+	 * so it binds as parameters like any other filter. Cursor columns must not be null.
+	 *
+	 * @param continuationToken The token of the previous page, or null for the first page
+	 */
+	protected void applyKeyset(String continuationToken)
+	{
+		if (keysetKeys != null)
+		{
+			throw new UnsupportedOperationException("Keyset pagination has already been applied to this builder");
+		}
+		keysetKeys = buildKeysetKeys();
+		if (continuationToken == null)
+		{
+			return;
+		}
+		List<Object> values = KeysetCursor.decode(keysetKeys, continuationToken);
+		GroupedExpression seek = new GroupedExpression();
+		seek.setGroupedFilterType(GroupedFilterType.Or);
+		for (int i = 0; i < keysetKeys.size(); i++)
 		{
-			Field[] fields = getEntityClass().getDeclaredFields();
-			for (Field field : fields)
+			GroupedExpression step = new GroupedExpression();
+			step.setGroupedFilterType(GroupedFilterType.And);
+			for (int j = 0; j < i; j++)
 			{
-				if (field.isAnnotationPresent(Id.class))
-				{
-					idField = Optional.of(field);
-				}
+				step.getFilterExpressions()
+				    .add(newKeysetExpression(keysetKeys.get(j), Operand.Equals, values.get(j)));
 			}
+			KeysetKey key = keysetKeys.get(i);
+			Operand after = key.getDirection() == OrderByType.DESC ? Operand.LessThan : Operand.GreaterThan;
+			step.getFilterExpressions()
+			    .add(newKeysetExpression(key, after, values.get(i)));
+			seek.getFilterExpressions()
+			    .add(step);
 		}
-		
-		if (idField.isPresent())
+		getWhereExpressions().add(seek);
+		seek.toPredicate(getCriteriaBuilder())
+		    .ifPresent(getFilters()::add);
+	}
+	
+	/**
+	 * Creates the continuation token pointing after the given row
+	 *
+	 * @param row The last row of a page
+	 * @return The opaque token
+	 */
+	protected String getContinuationToken(Object row)
+	{
+		if (keysetKeys == null)
 		{
-			where(getAttribute(idField.get()
-			                          .getName()), Operand.Equals, id);
+			throw new UnsupportedOperationException("Keyset pagination has not been applied to this builder");
 		}
-		else
+		return KeysetCursor.encode(keysetKeys, KeysetCursor.readValues(keysetKeys, row));
+	}
+	
+	/**
+	 * If this builder is paging by keyset
+	 *
+	 * @return if keyset pagination is applied
+	 */
+	protected boolean isKeyset()
+	{
+		return keysetKeys != null;
+	}
+	
+	/**
+	 * The ordering of the keyset cursor, replacing the order bys when paging by keyset
+	 *
+	 * @return The orders, in cursor order
+	 */
+	protected List<Order> getKeysetOrders()
+	{
+		List<Order> orders = new ArrayList<>();
+		for (KeysetKey key : keysetKeys)
 		{
-			where(getAttribute("id"), Operand.Equals, id);
+			Path<?> path = key.toPath(getRoot());
+			orders.add(key.getDirection() == OrderByType.DESC ? getCriteriaBuilder().desc(path) : getCriteriaBuilder().asc(path));
 		}
-		return (J) this;
+		return orders;
 	}
 	
-	
 	/**
-	 * Where the "id" field is in
+	 * The cursor columns when paging by keyset
 	 *
-	 * @param id Finds by ID
-	 * @return This (Use get to return results)
+	 * @return The keys or null
 	 */
-	@Override
-	@SuppressWarnings("unchecked")
-	public J find(Collection<I> id)
+	List<KeysetKey> getKeysetKeys()
 	{
-		List<I> idList = new ArrayList(Arrays.asList(id));
-		
-		Field found = null;
-		Field[] allFields = id.getClass()
-		                      .getFields();
-		for (Field allField : allFields)
+		return keysetKeys;
+	}
+	
+	private WhereExpression<?, ?> newKeysetExpression(KeysetKey key, Operand operand, Object value)
+	{
+		return newWhereExpression(key.getAttribute(), key.toPath(getRoot()), operand, value);
+	}
+	
+	@SuppressWarnings("rawtypes")
+	private List<KeysetKey> buildKeysetKeys()
+	{
+		Map<String, KeysetKey> keys = new LinkedHashMap<>();
+		for (OrderByExpression orderByExpression : getOrderByExpressions())
 		{
-			if (allField.isAnnotationPresent(Id.class))
+			if (!(orderByExpression.getAttribute() instanceof SingularAttribute))
 			{
-				found = allField;
-				break;
+				throw new UnsupportedOperationException("Keyset pagination can only order by singular attributes : " + orderByExpression.getAttribute());
 			}
+			KeysetKey key = new KeysetKey(List.of((SingularAttribute<?, ?>) orderByExpression.getAttribute()), orderByExpression.getOrderByType());
+			keys.putIfAbsent(key.getName(), key);
 		}
 		
-		Optional<Field> idField = Optional.ofNullable(found);
-		if (!idField.isPresent())
+		List<KeysetKey> identifier = new ArrayList<>();
+		Attribute<?, ?> idAttribute = getEntityAttributes().getIdAttribute();
+		if (idAttribute instanceof SingularAttribute)
 		{
-			Field[] fields = getEntityClass().getDeclaredFields();
-			for (Field field : fields)
+			SingularAttribute<?, ?> id = (SingularAttribute<?, ?>) idAttribute;
+			if (id.getType() instanceof EmbeddableType)
 			{
-				if (field.isAnnotationPresent(Id.class))
+				for (SingularAttribute<?, ?> component : sortedByName(((EmbeddableType<?>) id.getType()).getSingularAttributes()))
 				{
-					idField = Optional.of(field);
+					identifier.add(new KeysetKey(List.of(id, component), OrderByType.ASC));
 				}
 			}
+			else
+			{
+				identifier.add(new KeysetKey(List.of(id), OrderByType.ASC));
+			}
 		}
-		
-		if (idField.isPresent())
+		else
 		{
-			where((Attribute<Object, Object>) getAttribute(idField.get()
-			                                                      .getName()), Operand.InList, idList);
+			for (SingularAttribute<?, ?> component : sortedByName(getEntityManager().getMetamodel()
+			                                                                        .entity(getEntityClass())
+			                                                                        .getIdClassAttributes()))
+			{
+				identifier.add(new KeysetKey(List.of(component), OrderByType.ASC));
+			}
 		}
-		else
+		for (KeysetKey key : identifier)
 		{
-			where((Attribute<Object, Object>) getAttribute("id"), Operand.InList, idList);
+			keys.putIfAbsent(key.getName(), key);
 		}
-		return (J) this;
+		return new ArrayList<>(keys.values());
+	}
+	
+	private static List<SingularAttribute<?, ?>> sortedByName(Collection<? extends SingularAttribute<?, ?>> attributes)
+	{
+		List<SingularAttribute<?, ?>> sorted = new ArrayList<>(attributes);
+		sorted.sort(Comparator.comparing(Attribute::getName));
+		return sorted;
 	}
 	
 	/**
@@ -480,6 +652,207 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 		}
 	}
 	
+	/**
+	 * Creates a new where expression, bound as parameters if this builder is parameterized or plan cached
+	 *
+	 * @param attr      The attribute
+	 * @param attribute The expression to filter on
+	 * @param operator  The operand
+	 * @param value     The value
+	 * @param <X>       The attribute type
+	 * @param <Y>       The column type
+	 * @return The where expression
+	 */
+	private <X, Y> WhereExpression<X, Y> newWhereExpression(Attribute attr, Expression<X> attribute, Operand operator, Object value)
+	{
+		WhereExpression<X, Y> whereExpression = new WhereExpression<>(attr, attribute, operator, value);
+		whereExpression.setParameterized(isParameterized() || isPlanCached() || isResultCached() || isCoalesced());
+		return whereExpression;
+	}
+	
+	/**
+	 * Returns the structural fingerprint of this builder, used to key the compiled query plan
+	 *
+	 * @param purpose What the query is for, one of the QueryPlanCache purposes
+	 * @return The fingerprint, or null if this builder cannot share a compiled plan
+	 */
+	protected String getPlanFingerprint(String purpose)
+	{
+		return QueryFingerprint.of(this, purpose);
+	}
+	
+	/**
+	 * Returns all the bound values of this builder and its joins, in fingerprint order
+	 *
+	 * @return The values to bind
+	 */
+	protected List<Object> getBoundValues()
+	{
+		List<Object> values = new ArrayList<>();
+		for (WhereExpression<?, ?> whereExpression : QueryFingerprint.boundExpressions(this))
+		{
+			if (whereExpression.isBound())
+			{
+				values.addAll(whereExpression.getBoundValues());
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * Returns all the parameter names of this builder and its joins, in fingerprint order
+	 *
+	 * @return The parameter names
+	 */
+	protected List<String> getBoundParameterNames()
+	{
+		List<String> names = new ArrayList<>();
+		for (WhereExpression<?, ?> whereExpression : QueryFingerprint.boundExpressions(this))
+		{
+			if (whereExpression.isBound())
+			{
+				for (ParameterExpression<?> parameter : whereExpression.getParameters())
+				{
+					names.add(parameter.getName());
+				}
+			}
+		}
+		return names;
+	}
+	
+	/**
+	 * Binds the values of all parameterized where expressions onto a query built from this builder
+	 *
+	 * @param query The query to bind to
+	 */
+	protected void bindParameters(Query query)
+	{
+		for (WhereExpression<?, ?> whereExpression : QueryFingerprint.boundExpressions(this))
+		{
+			if (whereExpression.isBound())
+			{
+				whereExpression.bind(query);
+			}
+		}
+	}
+	
+	/**
+	 * If this builder binds its where values as parameters instead of literals.
+	 * <p>
+	 * Every operand value becomes a parameter expression bound at execution, and in lists are padded to power-of-two sizes,
+	 * so the number of distinct statements stays bounded for the Hibernate and database statement caches
+	 *
+	 * @return if parameterized
+	 */
+	@Override
+	public boolean isParameterized()
+	{
+		return parameterized;
+	}
+	
+	/**
+	 * Sets if this builder binds its where values as parameters instead of literals.
+	 * <p>
+	 * Applies to filters added after this call, so set it before any where clauses
+	 *
+	 * @param parameterized if parameterized
+	 * @return This
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	@NotNull
+	public J setParameterized(boolean parameterized)
+	{
+		this.parameterized = parameterized;
+		return (J) this;
+	}
+	
+	/**
+	 * If this builder binds its values as parameters and executes through the compiled query plan cache
+	 *
+	 * @return if plan cached
+	 */
+	@Override
+	public boolean isPlanCached()
+	{
+		return planCached;
+	}
+	
+	/**
+	 * Sets if this builder binds its values as parameters and executes through the compiled query plan cache.
+	 * <p>
+	 * Applies to filters added after this call, so set it before any where clauses
+	 *
+	 * @param planCached if plan cached
+	 * @return This
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	@NotNull
+	public J setPlanCached(boolean planCached)
+	{
+		this.planCached = planCached;
+		return (J) this;
+	}
+	
+	/**
+	 * If the results of this builder are served from and stored in the query result cache
+	 *
+	 * @return if result cached
+	 */
+	@Override
+	public boolean isResultCached()
+	{
+		return resultCached;
+	}
+	
+	/**
+	 * Sets if the results of this builder are served from and stored in the query result cache.
+	 * Cached rows are detached and shared between callers.
+	 * <p>
+	 * Applies to filters added after this call, so set it before any where clauses
+	 *
+	 * @param resultCached if result cached
+	 * @return This
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	@NotNull
+	public J setResultCached(boolean resultCached)
+	{
+		this.resultCached = resultCached;
+		return (J) this;
+	}
+	
+	/**
+	 * If concurrent identical executions of this builder share one database call
+	 *
+	 * @return if coalesced
+	 */
+	@Override
+	public boolean isCoalesced()
+	{
+		return coalesced;
+	}
+	
+	/**
+	 * Sets if concurrent identical executions of this builder share one database call.
+	 * The rows are detached, and callers that waited on another's execution receive shallow copies.
+	 * <p>
+	 * Applies to filters added after this call, so set it before any where clauses
+	 *
+	 * @param coalesced if coalesced
+	 * @return This
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	@NotNull
+	public J setCoalesced(boolean coalesced)
+	{
+		this.coalesced = coalesced;
+		return (J) this;
+	}
+	
 	/**
 	 * Where the field name is equal to the value
 	 *
@@ -561,7 +934,7 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 	@SuppressWarnings("unchecked")
 	<X, Y> J where(Attribute attr, Expression<X> attribute, Operand operator, Y[] value)
 	{
-		WhereExpression<X, Y> whereExpression = new WhereExpression<>(attr, attribute, operator, value);
+		WhereExpression<X, Y> whereExpression = newWhereExpression(attr, attribute, operator, value);
 		whereExpressions.add(whereExpression);
 		doWhere(whereExpression);
 		return (J) this;
@@ -600,7 +973,7 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 	@SuppressWarnings("unchecked")
 	<X, Y> J where(Attribute attr, Expression<X> attribute, Operand operator, Collection<Y> value)
 	{
-		WhereExpression<X, Y> whereExpression = new WhereExpression<>(attr, attribute, operator, value);
+		WhereExpression<X, Y> whereExpression = newWhereExpression(attr, attribute, operator, value);
 		whereExpressions.add(whereExpression);
 		doWhere(whereExpression);
 		return (J) this;
@@ -635,7 +1008,7 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 	@SuppressWarnings("unchecked")
 	<X, Y> J where(Attribute attr, Expression<X> attribute, Operand operator, Y value)
 	{
-		WhereExpression<X, Y> whereExpression = new WhereExpression<>(attr, attribute, operator, value);
+		WhereExpression<X, Y> whereExpression = newWhereExpression(attr, attribute, operator, value);
 		whereExpressions.add(whereExpression);
 		doWhere(whereExpression);
 		return (J) this;
@@ -810,6 +1183,13 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 				we.switchRoot(newRoot);
 				doWhere(we);
 			}
+			else if (GroupedExpression.class.isAssignableFrom(whereExpression.getClass()))
+			{
+				GroupedExpression ge = (GroupedExpression) whereExpression;
+				ge.switchRoot(newRoot);
+				ge.toPredicate(getCriteriaBuilder())
+				  .ifPresent(getFilters()::add);
+			}
 		}
 		getSelectExpressions().forEach(this::redoSelectExpression);
 	}
@@ -1633,7 +2013,7 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 	}
 	
 	/**
-	 * Sets the entity to the given item
+	 * Sets the entity to the given item. The criteria root is created on first use
 	 *
 	 * @param entity The entity
 	 * @return This
@@ -1644,12 +2024,16 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 	public J setEntity(E entity)
 	{
 		super.setEntity(entity);
-		root = getCriteriaQuery().from(entity.getClass());
+		if (root != null && !root.getJavaType()
+		                         .equals(entity.getClass()))
+		{
+			root = null;
+		}
 		return (J) this;
 	}
 	
 	/**
-	 * Sets the entity to the given item
+	 * Sets the entity to the given item. The criteria root is created on first use
 	 *
 	 * @param entity The entity
 	 * @return This
@@ -1660,7 +2044,11 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 	public J setEntity(Object entity)
 	{
 		super.setEntity((E) entity);
-		root = getCriteriaQuery().from(entity.getClass());
+		if (root != null && !root.getJavaType()
+		                         .equals(entity.getClass()))
+		{
+			root = null;
+		}
 		return (J) this;
 	}
 	
@@ -1769,7 +2157,7 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 	{
 		GroupedExpression groupedExpression = new GroupedExpression();
 		groupedExpression.setGroupedFilterType(GroupedFilterType.Or);
-		WhereExpression<X, Y> whereExpression = new WhereExpression<>(attr, attribute, operator, value);
+		WhereExpression<X, Y> whereExpression = newWhereExpression(attr, attribute, operator, value);
 		processOr(groupedExpression, whereExpression, nest);
 		return (J) this;
 	}
@@ -1876,7 +2264,7 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 	{
 		GroupedExpression groupedExpression = new GroupedExpression();
 		groupedExpression.setGroupedFilterType(GroupedFilterType.Or);
-		WhereExpression<X, Y> whereExpression = new WhereExpression<>(attr, attribute, operator, value);
+		WhereExpression<X, Y> whereExpression = newWhereExpression(attr, attribute, operator, value);
 		processOr(groupedExpression, whereExpression, nest);
 		return (J) this;
 	}
@@ -1936,7 +2324,7 @@ public abstract class DefaultQueryBuilder<J extends DefaultQueryBuilder<J, E, I>
 	{
 		GroupedExpression groupedExpression = new GroupedExpression();
 		groupedExpression.setGroupedFilterType(GroupedFilterType.Or);
-		WhereExpression<X, Y> whereExpression = new WhereExpression<>(attr, attribute, operator, value);
+		WhereExpression<X, Y> whereExpression = newWhereExpression(attr, attribute, operator, value);
 		processOr(groupedExpression, whereExpression, nest);
 		return (J) this;
 	}
@@ -0,0 +1,278 @@
+package com.entityassist.querybuilder.builders;
+
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Id;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.IdentifiableType;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.entityassist.querybuilder.QueryBuilderCore.ACTIVE_FLAG_DATE_COLUMN_NAME;
+import static com.entityassist.querybuilder.QueryBuilderSCD.*;
+
+/**
+ * The resolved metamodel attributes of a single entity class, with handles for the identifier and the well known SCD and Core columns.
+ * <p>
+ * The attributes are resolved once and published through a volatile field, so lookups never lock or reflect.
+ * The column handles are null until the entry is resolved.
+ */
+@SuppressWarnings({"unchecked", "unused"})
+public final class EntityAttributes
+{
+	private static final Logger log = Logger.getLogger(EntityAttributes.class.getName());
+
+	/**
+	 * The entity class
+	 */
+	private final Class<?> entityClass;
+	/**
+	 * The attributes by name, null until resolved
+	 */
+	private volatile Map<String, Attribute<?, ?>> attributes;
+
+	private Attribute<?, ?> idAttribute;
+	private Attribute<?, ?> effectiveFromDate;
+	private Attribute<?, ?> effectiveToDate;
+	private Attribute<?, ?> warehouseCreatedTimestamp;
+	private Attribute<?, ?> warehouseLastUpdatedTimestamp;
+	private Attribute<?, ?> activeFlag;
+	private Attribute<?, ?> rowHash;
+
+	EntityAttributes(Class<?> entityClass)
+	{
+		this.entityClass = entityClass;
+	}
+
+	/**
+	 * Resolves the attributes from the given metamodel if not already resolved.
+	 * <p>
+	 * Falls back to the static metamodel class when the type is not managed by the metamodel
+	 *
+	 * @param metamodel The metamodel, may be null to only use the static metamodel class
+	 * @return This
+	 */
+	public EntityAttributes resolve(Metamodel metamodel)
+	{
+		if (attributes != null)
+		{
+			return this;
+		}
+		Map<String, Attribute<?, ?>> resolved = new HashMap<>();
+		boolean managed = false;
+		if (metamodel != null)
+		{
+			try
+			{
+				ManagedType<?> managedType = metamodel.managedType(entityClass);
+				for (Attribute<?, ?> attribute : managedType.getAttributes())
+				{
+					resolved.put(attribute.getName(), attribute);
+				}
+				idAttribute = resolveIdAttribute(managedType);
+				managed = true;
+			}
+			catch (IllegalArgumentException iae)
+			{
+				log.log(Level.FINE, "[" + entityClass.getCanonicalName() + "] is not a managed type, using the static metamodel", iae);
+			}
+		}
+		if (!managed)
+		{
+			resolveStaticMetamodel(resolved);
+			idAttribute = resolveIdField(resolved);
+		}
+		effectiveFromDate = resolved.get(EFFECTIVE_FROM_DATE_COLUMN_NAME);
+		effectiveToDate = resolved.get(EFFECTIVE_TO_DATE_COLUMN_NAME);
+		warehouseCreatedTimestamp = resolved.get(WAREHOUSE_CREATED_DATE_COLUMN_NAME);
+		warehouseLastUpdatedTimestamp = resolved.get(WAREHOUSE_UPDATED_DATE_COLUMN_NAME);
+		activeFlag = resolved.get(ACTIVE_FLAG_DATE_COLUMN_NAME);
+		rowHash = resolved.get(ROW_HASH_COLUMN_NAME);
+		//The volatile write publishes the handles above
+		attributes = Map.copyOf(resolved);
+		return this;
+	}
+
+	private static Attribute<?, ?> resolveIdAttribute(ManagedType<?> managedType)
+	{
+		if (managedType instanceof IdentifiableType)
+		{
+			IdentifiableType<?> identifiableType = (IdentifiableType<?>) managedType;
+			if (identifiableType.hasSingleIdAttribute() && identifiableType.getIdType() != null)
+			{
+				return identifiableType.getId(identifiableType.getIdType()
+				                                              .getJavaType());
+			}
+		}
+		return null;
+	}
+
+	private Attribute<?, ?> resolveIdField(Map<String, Attribute<?, ?>> resolved)
+	{
+		for (Class<?> type = entityClass; type != null && type != Object.class; type = type.getSuperclass())
+		{
+			for (Field field : type.getDeclaredFields())
+			{
+				if (field.isAnnotationPresent(Id.class) || field.isAnnotationPresent(EmbeddedId.class))
+				{
+					return resolved.get(field.getName());
+				}
+			}
+		}
+		return null;
+	}
+
+	private void resolveStaticMetamodel(Map<String, Attribute<?, ?>> resolved)
+	{
+		String clazz = entityClass.getCanonicalName() + '_';
+		try
+		{
+			Class<?> c = Class.forName(clazz, true, entityClass.getClassLoader());
+			for (Field field : c.getFields())
+			{
+				if (Modifier.isStatic(field.getModifiers()) && Attribute.class.isAssignableFrom(field.getType()))
+				{
+					Attribute<?, ?> attribute = (Attribute<?, ?>) field.get(null);
+					if (attribute != null)
+					{
+						resolved.put(field.getName(), attribute);
+					}
+				}
+			}
+		}
+		catch (Exception e)
+		{
+			log.log(Level.SEVERE, "Unable to read the static metamodel [" + clazz + "]", e);
+		}
+	}
+
+	/**
+	 * Returns the resolved attribute with the given name
+	 *
+	 * @param name The attribute name
+	 * @param <X>  The declaring type
+	 * @param <Y>  The attribute type
+	 * @return The attribute or null if it does not exist or the entry is not resolved
+	 */
+	public <X, Y> Attribute<X, Y> get(String name)
+	{
+		return (Attribute<X, Y>) getAttributes().get(name);
+	}
+
+	/**
+	 * If the attributes have been resolved
+	 *
+	 * @return if resolved
+	 */
+	public boolean isResolved()
+	{
+		return attributes != null;
+	}
+
+	/**
+	 * Returns the resolved attributes by name
+	 *
+	 * @return An unmodifiable map, empty if not yet resolved
+	 */
+	public Map<String, Attribute<?, ?>> getAttributes()
+	{
+		Map<String, Attribute<?, ?>> current = attributes;
+		return current == null ? Map.of() : current;
+	}
+
+	/**
+	 * The single identifier attribute
+	 *
+	 * @param <X> The declaring type
+	 * @param <Y> The identifier type
+	 * @return The attribute or null if the entity uses an id class
+	 */
+	public <X, Y> Attribute<X, Y> getIdAttribute()
+	{
+		return (Attribute<X, Y>) idAttribute;
+	}
+
+	/**
+	 * The effective from date attribute
+	 *
+	 * @param <X> The declaring type
+	 * @return The attribute or null if the entity does not declare it
+	 */
+	public <X> Attribute<X, OffsetDateTime> getEffectiveFromDate()
+	{
+		return (Attribute<X, OffsetDateTime>) effectiveFromDate;
+	}
+
+	/**
+	 * The effective to date attribute
+	 *
+	 * @param <X> The declaring type
+	 * @return The attribute or null if the entity does not declare it
+	 */
+	public <X> Attribute<X, OffsetDateTime> getEffectiveToDate()
+	{
+		return (Attribute<X, OffsetDateTime>) effectiveToDate;
+	}
+
+	/**
+	 * The warehouse created timestamp attribute
+	 *
+	 * @param <X> The declaring type
+	 * @return The attribute or null if the entity does not declare it
+	 */
+	public <X> Attribute<X, OffsetDateTime> getWarehouseCreatedTimestamp()
+	{
+		return (Attribute<X, OffsetDateTime>) warehouseCreatedTimestamp;
+	}
+
+	/**
+	 * The warehouse last updated timestamp attribute
+	 *
+	 * @param <X> The declaring type
+	 * @return The attribute or null if the entity does not declare it
+	 */
+	public <X> Attribute<X, OffsetDateTime> getWarehouseLastUpdatedTimestamp()
+	{
+		return (Attribute<X, OffsetDateTime>) warehouseLastUpdatedTimestamp;
+	}
+
+	/**
+	 * The active flag attribute
+	 *
+	 * @param <X> The declaring type
+	 * @param <Y> The attribute type
+	 * @return The attribute or null if the entity does not declare it
+	 */
+	public <X, Y> Attribute<X, Y> getActiveFlag()
+	{
+		return (Attribute<X, Y>) activeFlag;
+	}
+
+	/**
+	 * The row content hash attribute
+	 *
+	 * @param <X> The declaring type
+	 * @return The attribute or null if the entity does not map a row hash
+	 */
+	public <X> Attribute<X, String> getRowHash()
+	{
+		return (Attribute<X, String>) rowHash;
+	}
+
+	/**
+	 * The entity class
+	 *
+	 * @return The entity class
+	 */
+	public Class<?> getEntityClass()
+	{
+		return entityClass;
+	}
+}
@@ -0,0 +1,108 @@
+package com.entityassist.querybuilder.builders;
+
+import com.entityassist.EntityAssistException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * Stores change feed watermarks in a properties file.
+ * <p>
+ * Every save writes the whole file to a sibling temporary file, syncs it and moves it over the original,
+ * so a crash leaves either the previous or the new watermarks and never a partial file.
+ */
+@SuppressWarnings("unused")
+public final class FileWatermarkStore implements WatermarkStore
+{
+	private final Path file;
+
+	public FileWatermarkStore(Path file)
+	{
+		this.file = file;
+	}
+
+	/**
+	 * The file the watermarks are stored in
+	 *
+	 * @return The path
+	 */
+	public Path getFile()
+	{
+		return file;
+	}
+
+	@Override
+	public synchronized String load(String feed)
+	{
+		return read().getProperty(feed);
+	}
+
+	@Override
+	public synchronized void save(String feed, String watermark)
+	{
+		Properties watermarks = read();
+		if (watermark == null)
+		{
+			watermarks.remove(feed);
+		}
+		else
+		{
+			watermarks.setProperty(feed, watermark);
+		}
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try
+		{
+			if (file.getParent() != null)
+			{
+				Files.createDirectories(file.getParent());
+			}
+			try (OutputStream out = Files.newOutputStream(temporary))
+			{
+				watermarks.store(out, "Change feed watermarks");
+				out.flush();
+			}
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE))
+			{
+				channel.force(true);
+			}
+			try
+			{
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new EntityAssistException("Unable to save the watermark of feed [" + feed + "] to " + file, e);
+		}
+	}
+
+	private Properties read()
+	{
+		Properties watermarks = new Properties();
+		if (!Files.exists(file))
+		{
+			return watermarks;
+		}
+		try (InputStream in = Files.newInputStream(file))
+		{
+			watermarks.load(in);
+		}
+		catch (IOException e)
+		{
+			throw new EntityAssistException("Unable to read the change feed watermarks from " + file, e);
+		}
+		return watermarks;
+	}
+}
@@ -3,6 +3,7 @@ package com.entityassist.querybuilder.builders;
 import com.entityassist.enumerations.GroupedFilterType;
 
 import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.From;
 import jakarta.persistence.criteria.Predicate;
 import java.util.*;
 
@@ -74,11 +75,35 @@ public class GroupedExpression
 		{
 			Predicate[] preds = new Predicate[wheres.size()];
 			wheres.toArray(preds);
-			Predicate groupPredicate = builder.or(preds);
+			Predicate groupPredicate = groupedFilterType == GroupedFilterType.And ? builder.and(preds) : builder.or(preds);
 			return Optional.of(groupPredicate);
 		}
 	}
 
+	/**
+	 * Switches all the grouped expressions onto the given root
+	 *
+	 * @param root
+	 * 		The new root
+	 *
+	 * @return This
+	 */
+	GroupedExpression switchRoot(From root)
+	{
+		for (IFilterExpression filterExpression : getFilterExpressions())
+		{
+			if (filterExpression instanceof WhereExpression)
+			{
+				((WhereExpression<?, ?>) filterExpression).switchRoot(root);
+			}
+			else if (filterExpression instanceof GroupedExpression)
+			{
+				((GroupedExpression) filterExpression).switchRoot(root);
+			}
+		}
+		return this;
+	}
+
 	/**
 	 * Method getFilterExpressions returns the filterExpressions of this GroupedExpression object.
 	 * <p>
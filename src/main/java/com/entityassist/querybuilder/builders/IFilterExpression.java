@@ -91,13 +91,33 @@ public interface IFilterExpression
 	@SuppressWarnings({"unchecked", "UnusedReturnValue"})
 	@NotNull
 	static Set buildInObject(CriteriaBuilder.In<Object> inClause, @NotNull Object object)
+	{
+		Set output = toValueSet(object);
+		for (Object o : output)
+		{
+			inClause.value(o);
+		}
+		return output;
+	}
+
+	/**
+	 * Flattens an in clause value (single object, array or collection) into an ordered set
+	 *
+	 * @param object
+	 * 		The object to come in, Not null
+	 *
+	 * @return The distinct values in the order given
+	 */
+	@SuppressWarnings("unchecked")
+	@NotNull
+	static Set<Object> toValueSet(@NotNull Object object)
 	{
 		boolean isArray = object.getClass()
 		                        .isArray();
 		boolean isCollection = Collection.class.isAssignableFrom(object.getClass());
 		boolean isMap = Map.class.isAssignableFrom(object.getClass());
 
-		Set output = new LinkedHashSet();
+		Set<Object> output = new LinkedHashSet<>();
 
 		if (!(isArray || isCollection || isMap))
 		{
@@ -112,10 +132,6 @@ public interface IFilterExpression
 		{
 			output.addAll((Collection) object);
 		}
-		for (Object o : output)
-		{
-			inClause.value(o);
-		}
 		return output;
 	}
 
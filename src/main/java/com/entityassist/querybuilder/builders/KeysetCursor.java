@@ -0,0 +1,350 @@
+package com.entityassist.querybuilder.builders;
+
+import com.entityassist.EntityAssistException;
+import jakarta.persistence.metamodel.SingularAttribute;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.util.*;
+
+/**
+ * Encodes and decodes keyset continuation tokens.
+ * <p>
+ * A token holds a signature of the keys it was made for and the text of each key value of the last row of a page.
+ * Each value is written as its length and text, or a null marker, so values may contain any character.
+ * Values are parsed back through the java type of their key attribute, so a token never carries class names and
+ * cannot be used to instantiate arbitrary types.
+ */
+final class KeysetCursor
+{
+	private static final char SEPARATOR = '|';
+	private static final char LENGTH_END = ':';
+	private static final char NULL = '-';
+
+	private KeysetCursor()
+	{
+		//No config required
+	}
+
+	/**
+	 * Reads the key values from a row
+	 *
+	 * @param keys The keys
+	 * @param row  The entity row
+	 * @return The values in key order
+	 */
+	static List<Object> readValues(List<KeysetKey> keys, Object row)
+	{
+		List<Object> values = new ArrayList<>(keys.size());
+		for (KeysetKey key : keys)
+		{
+			Object value = row;
+			for (SingularAttribute<?, ?> attribute : key.getPath())
+			{
+				if (value == null)
+				{
+					break;
+				}
+				value = readValue(value, attribute);
+			}
+			values.add(value);
+		}
+		return values;
+	}
+
+	/**
+	 * Creates the continuation token for the given values
+	 *
+	 * @param keys   The keys
+	 * @param values The values in key order
+	 * @return The opaque token
+	 */
+	static String encode(List<KeysetKey> keys, List<Object> values)
+	{
+		StringBuilder token = new StringBuilder(signature(keys));
+		for (Object value : values)
+		{
+			token.append(SEPARATOR);
+			if (value == null)
+			{
+				token.append(NULL);
+			}
+			else
+			{
+				String text = format(value);
+				token.append(text.length())
+				     .append(LENGTH_END)
+				     .append(text);
+			}
+		}
+		return Base64.getUrlEncoder()
+		             .withoutPadding()
+		             .encodeToString(token.toString()
+		                                  .getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes the values of a continuation token
+	 *
+	 * @param keys  The keys of the query the token is used on
+	 * @param token The token
+	 * @return The values in key order
+	 * @throws EntityAssistException if the token is malformed or was made for different keys
+	 */
+	static List<Object> decode(List<KeysetKey> keys, String token)
+	{
+		String decoded;
+		try
+		{
+			decoded = new String(Base64.getUrlDecoder()
+			                           .decode(token), StandardCharsets.UTF_8);
+		}
+		catch (IllegalArgumentException iae)
+		{
+			throw new EntityAssistException("Invalid continuation token", iae);
+		}
+		List<String> parts = split(decoded);
+		if (parts == null || parts.size() != keys.size() + 1 || !signature(keys).equals(parts.get(0)))
+		{
+			throw new EntityAssistException("The continuation token was not created for this query");
+		}
+		List<Object> values = new ArrayList<>(keys.size());
+		for (int i = 0; i < keys.size(); i++)
+		{
+			String part = parts.get(i + 1);
+			try
+			{
+				values.add(part == null ? null : parse(keys.get(i)
+				                                           .getAttribute()
+				                                           .getJavaType(), part));
+			}
+			catch (RuntimeException e)
+			{
+				throw new EntityAssistException("Invalid continuation token value for [" + keys.get(i)
+				                                                                               .getName() + "]", e);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Splits a decoded token into its signature and values
+	 *
+	 * @param decoded The decoded token
+	 * @return The signature followed by each value, null for a null value, or null if the token is malformed
+	 */
+	private static List<String> split(String decoded)
+	{
+		List<String> parts = new ArrayList<>();
+		int position = decoded.indexOf(SEPARATOR);
+		parts.add(position < 0 ? decoded : decoded.substring(0, position));
+		while (position >= 0 && position < decoded.length())
+		{
+			if (decoded.charAt(position) != SEPARATOR || ++position >= decoded.length())
+			{
+				return null;
+			}
+			if (decoded.charAt(position) == NULL)
+			{
+				parts.add(null);
+				position++;
+				continue;
+			}
+			int lengthEnd = decoded.indexOf(LENGTH_END, position);
+			if (lengthEnd < 0)
+			{
+				return null;
+			}
+			int length;
+			try
+			{
+				length = Integer.parseInt(decoded.substring(position, lengthEnd));
+			}
+			catch (NumberFormatException nfe)
+			{
+				return null;
+			}
+			if (length < 0 || length > decoded.length() - lengthEnd - 1)
+			{
+				return null;
+			}
+			int end = lengthEnd + 1 + length;
+			parts.add(decoded.substring(lengthEnd + 1, end));
+			position = end;
+		}
+		return parts;
+	}
+
+	private static String signature(List<KeysetKey> keys)
+	{
+		StringBuilder signature = new StringBuilder();
+		for (KeysetKey key : keys)
+		{
+			signature.append(key.getName())
+			         .append(' ')
+			         .append(key.getDirection())
+			         .append(';');
+		}
+		return Integer.toHexString(signature.toString()
+		                                    .hashCode());
+	}
+
+	private static Object readValue(Object target, SingularAttribute<?, ?> attribute)
+	{
+		Member member = attribute.getJavaMember();
+		try
+		{
+			if (member instanceof Method)
+			{
+				return ((Method) member).invoke(target);
+			}
+			String name = attribute.getName();
+			String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+			for (String getter : new String[]{"get" + capitalized, "is" + capitalized})
+			{
+				try
+				{
+					return target.getClass()
+					             .getMethod(getter)
+					             .invoke(target);
+				}
+				catch (NoSuchMethodException nsme)
+				{
+					//Try the next accessor
+				}
+			}
+			if (member instanceof Field)
+			{
+				Field field = (Field) member;
+				if (field.trySetAccessible())
+				{
+					return field.get(target);
+				}
+			}
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new EntityAssistException("Unable to read keyset value [" + attribute.getName() + "] from " + target.getClass()
+			                                                                                                           .getName(), e);
+		}
+		throw new EntityAssistException("No accessible getter for keyset value [" + attribute.getName() + "] on " + target.getClass()
+		                                                                                                              .getName());
+	}
+
+	private static String format(Object value)
+	{
+		if (value instanceof Enum)
+		{
+			return ((Enum<?>) value).name();
+		}
+		if (value instanceof java.sql.Timestamp)
+		{
+			return ((java.sql.Timestamp) value).toInstant()
+			                                   .toString();
+		}
+		if (value instanceof Date)
+		{
+			return Long.toString(((Date) value).getTime());
+		}
+		return value.toString();
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Object parse(Class<?> type, String text)
+	{
+		if (type == String.class)
+		{
+			return text;
+		}
+		if (type == Long.class || type == long.class)
+		{
+			return Long.valueOf(text);
+		}
+		if (type == Integer.class || type == int.class)
+		{
+			return Integer.valueOf(text);
+		}
+		if (type == Short.class || type == short.class)
+		{
+			return Short.valueOf(text);
+		}
+		if (type == Byte.class || type == byte.class)
+		{
+			return Byte.valueOf(text);
+		}
+		if (type == Double.class || type == double.class)
+		{
+			return Double.valueOf(text);
+		}
+		if (type == Float.class || type == float.class)
+		{
+			return Float.valueOf(text);
+		}
+		if (type == Boolean.class || type == boolean.class)
+		{
+			return Boolean.valueOf(text);
+		}
+		if (type == Character.class || type == char.class)
+		{
+			return text.charAt(0);
+		}
+		if (type == BigDecimal.class)
+		{
+			return new BigDecimal(text);
+		}
+		if (type == BigInteger.class)
+		{
+			return new BigInteger(text);
+		}
+		if (type == UUID.class)
+		{
+			return UUID.fromString(text);
+		}
+		if (type.isEnum())
+		{
+			return Enum.valueOf((Class<Enum>) type, text);
+		}
+		if (type == OffsetDateTime.class)
+		{
+			return OffsetDateTime.parse(text);
+		}
+		if (type == LocalDateTime.class)
+		{
+			return LocalDateTime.parse(text);
+		}
+		if (type == LocalDate.class)
+		{
+			return LocalDate.parse(text);
+		}
+		if (type == LocalTime.class)
+		{
+			return LocalTime.parse(text);
+		}
+		if (type == ZonedDateTime.class)
+		{
+			return ZonedDateTime.parse(text);
+		}
+		if (type == Instant.class)
+		{
+			return Instant.parse(text);
+		}
+		if (type == java.sql.Timestamp.class)
+		{
+			return java.sql.Timestamp.from(Instant.parse(text));
+		}
+		if (type == java.sql.Date.class)
+		{
+			return new java.sql.Date(Long.parseLong(text));
+		}
+		if (type == Date.class)
+		{
+			return new Date(Long.parseLong(text));
+		}
+		throw new EntityAssistException("Unsupported keyset key type " + type.getName());
+	}
+}
@@ -0,0 +1,84 @@
+package com.entityassist.querybuilder.builders;
+
+import com.entityassist.enumerations.OrderByType;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.metamodel.SingularAttribute;
+
+import java.util.List;
+
+/**
+ * A single column of a keyset cursor - an attribute path from the root and its direction
+ */
+final class KeysetKey
+{
+	/**
+	 * The attribute path from the root, more than one for the components of an embedded id
+	 */
+	private final List<SingularAttribute<?, ?>> path;
+	/**
+	 * The direction the key is ordered in
+	 */
+	private final OrderByType direction;
+
+	KeysetKey(List<SingularAttribute<?, ?>> path, OrderByType direction)
+	{
+		this.path = List.copyOf(path);
+		this.direction = direction == null ? OrderByType.ASC : direction;
+	}
+
+	/**
+	 * Resolves the key path against the given root
+	 *
+	 * @param root The root of the query
+	 * @return The path to the key column
+	 */
+	Path<?> toPath(From<?, ?> root)
+	{
+		Path<?> output = root;
+		for (SingularAttribute<?, ?> attribute : path)
+		{
+			output = output.get(attribute.getName());
+		}
+		return output;
+	}
+
+	/**
+	 * The dotted name of the key path
+	 *
+	 * @return The name
+	 */
+	String getName()
+	{
+		StringBuilder name = new StringBuilder();
+		for (SingularAttribute<?, ?> attribute : path)
+		{
+			if (name.length() > 0)
+			{
+				name.append('.');
+			}
+			name.append(attribute.getName());
+		}
+		return name.toString();
+	}
+
+	/**
+	 * The attribute the key finally resolves to
+	 *
+	 * @return The last attribute of the path
+	 */
+	SingularAttribute<?, ?> getAttribute()
+	{
+		return path.get(path.size() - 1);
+	}
+
+	List<SingularAttribute<?, ?>> getPath()
+	{
+		return path;
+	}
+
+	OrderByType getDirection()
+	{
+		return direction;
+	}
+}
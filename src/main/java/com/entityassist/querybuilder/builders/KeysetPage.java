@@ -0,0 +1,57 @@
+package com.entityassist.querybuilder.builders;
+
+import java.util.List;
+
+/**
+ * A single page of a keyset paginated query
+ *
+ * @param <T> The row type
+ */
+@SuppressWarnings("unused")
+public final class KeysetPage<T>
+{
+	/**
+	 * The rows of this page
+	 */
+	private final List<T> results;
+	/**
+	 * The opaque token to fetch the page after this one, null on the last page
+	 */
+	private final String continuationToken;
+
+	public KeysetPage(List<T> results, String continuationToken)
+	{
+		this.results = results;
+		this.continuationToken = continuationToken;
+	}
+
+	/**
+	 * The rows of this page
+	 *
+	 * @return The rows, never null
+	 */
+	public List<T> getResults()
+	{
+		return results;
+	}
+
+	/**
+	 * The opaque token to pass to getPage for the following page
+	 *
+	 * @return The token, or null if this is the last page
+	 */
+	public String getContinuationToken()
+	{
+		return continuationToken;
+	}
+
+	/**
+	 * If there is a page after this one
+	 *
+	 * @return if more rows are available
+	 */
+	public boolean hasNext()
+	{
+		return continuationToken != null;
+	}
+}
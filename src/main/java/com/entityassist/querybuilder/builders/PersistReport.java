@@ -0,0 +1,204 @@
+package com.entityassist.querybuilder.builders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a batched persistAll, batch by batch, up to and including the first failed batch
+ */
+@SuppressWarnings("unused")
+public final class PersistReport
+{
+	/**
+	 * The batches in the order they were written
+	 */
+	private final List<Batch> batches = new ArrayList<>();
+	/**
+	 * If a failed batch stopped the run before every entity was attempted
+	 */
+	private boolean stopped;
+
+	PersistReport()
+	{
+		//Built by persistAll
+	}
+
+	void add(Batch batch)
+	{
+		batches.add(batch);
+	}
+
+	void setStopped(boolean stopped)
+	{
+		this.stopped = stopped;
+	}
+
+	/**
+	 * If a failed batch stopped the run, leaving the entities after it unattempted
+	 *
+	 * @return if stopped early
+	 */
+	public boolean isStopped()
+	{
+		return stopped;
+	}
+
+	/**
+	 * The batches in the order they were written
+	 *
+	 * @return the batches
+	 */
+	public List<Batch> getBatches()
+	{
+		return Collections.unmodifiableList(batches);
+	}
+
+	/**
+	 * The batches that failed to flush
+	 *
+	 * @return the failed batches
+	 */
+	public List<Batch> getFailedBatches()
+	{
+		List<Batch> failed = new ArrayList<>();
+		for (Batch batch : batches)
+		{
+			if (batch.getFailure() != null)
+			{
+				failed.add(batch);
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * The number of entities written
+	 *
+	 * @return the persisted count
+	 */
+	public long getPersisted()
+	{
+		long persisted = 0;
+		for (Batch batch : batches)
+		{
+			persisted += batch.getPersisted();
+		}
+		return persisted;
+	}
+
+	/**
+	 * The number of entities in batches that failed
+	 *
+	 * @return the failed count
+	 */
+	public long getFailed()
+	{
+		long failed = 0;
+		for (Batch batch : batches)
+		{
+			if (batch.getFailure() != null)
+			{
+				failed += batch.getSize();
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * If every batch was written
+	 *
+	 * @return if no batch failed
+	 */
+	public boolean isSuccessful()
+	{
+		return getFailedBatches().isEmpty();
+	}
+
+	/**
+	 * The total time spent writing
+	 *
+	 * @return the duration
+	 */
+	public Duration getDuration()
+	{
+		Duration duration = Duration.ZERO;
+		for (Batch batch : batches)
+		{
+			duration = duration.plus(batch.getDuration());
+		}
+		return duration;
+	}
+
+	/**
+	 * A single flush window of a persistAll
+	 */
+	public static final class Batch
+	{
+		private final int number;
+		private final int size;
+		private final int persisted;
+		private final Duration duration;
+		private final Throwable failure;
+
+		Batch(int number, int size, int persisted, Duration duration, Throwable failure)
+		{
+			this.number = number;
+			this.size = size;
+			this.persisted = persisted;
+			this.duration = duration;
+			this.failure = failure;
+		}
+
+		/**
+		 * The batch number, starting at 1
+		 *
+		 * @return the number
+		 */
+		public int getNumber()
+		{
+			return number;
+		}
+
+		/**
+		 * The number of entities given in this batch
+		 *
+		 * @return the size
+		 */
+		public int getSize()
+		{
+			return size;
+		}
+
+		/**
+		 * The number of entities written, excluding those declined by onCreate
+		 *
+		 * @return the persisted count
+		 */
+		public int getPersisted()
+		{
+			return persisted;
+		}
+
+		/**
+		 * The time taken to persist and flush the batch
+		 *
+		 * @return the duration
+		 */
+		public Duration getDuration()
+		{
+			return duration;
+		}
+
+		/**
+		 * The exception that failed the batch
+		 *
+		 * @return the failure or null if written
+		 */
+		public Throwable getFailure()
+		{
+			return failure;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.entityassist.querybuilder.builders;
+
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.guicedee.client.IGuiceContext;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Creates query builders for entities without resolving the builder class on every call.
+ * <p>
+ * The builder class of each entity type is resolved once, and the Guice provider for it is kept in a ClassValue,
+ * so creating a builder is a provider call. Call reset() if the injector is rebuilt.
+ */
+@SuppressWarnings("unused")
+public final class QueryBuilderFactory
+{
+	private static final ClassValue<BuilderProvider> providers = new ClassValue<>()
+	{
+		@Override
+		protected BuilderProvider computeValue(Class<?> type)
+		{
+			return new BuilderProvider();
+		}
+	};
+
+	/**
+	 * Bumped on reset, so cached providers from a previous injector are resolved again
+	 */
+	private static final AtomicInteger generation = new AtomicInteger();
+
+	private QueryBuilderFactory()
+	{
+		//No config required
+	}
+
+	/**
+	 * Creates a new builder instance for the entity class
+	 *
+	 * @param entityClass  The entity class
+	 * @param builderClass Resolves the builder class on the first call for the entity class
+	 * @param <Q>          The builder type
+	 * @return A new builder instance, without an entity set
+	 */
+	@SuppressWarnings("unchecked")
+	public static <Q> Q create(Class<?> entityClass, Supplier<Class<Q>> builderClass)
+	{
+		BuilderProvider holder = providers.get(entityClass);
+		Resolved resolved = holder.resolved;
+		int currentGeneration = generation.get();
+		if (resolved == null || resolved.generation != currentGeneration)
+		{
+			resolved = new Resolved(currentGeneration, IGuiceContext.get(Injector.class)
+			                                                        .getProvider(builderClass.get()));
+			holder.resolved = resolved;
+		}
+		return (Q) resolved.provider.get();
+	}
+
+	/**
+	 * Forgets the cached providers, for when the injector is rebuilt
+	 */
+	public static void reset()
+	{
+		generation.incrementAndGet();
+	}
+
+	private static final class BuilderProvider
+	{
+		private volatile Resolved resolved;
+	}
+
+	/**
+	 * A provider and the generation it was resolved in, published together so neither is read without the other
+	 */
+	private static final class Resolved
+	{
+		private final int generation;
+		private final Provider<?> provider;
+
+		private Resolved(int generation, Provider<?> provider)
+		{
+			this.generation = generation;
+			this.provider = provider;
+		}
+	}
+}
@@ -2,28 +2,30 @@ package com.entityassist.querybuilder.builders;
 
 import com.entityassist.RootEntity;
 import com.entityassist.services.querybuilders.IQueryBuilderRoot;
+import com.entityassist.validation.EntityValidator;
+import com.entityassist.validation.ValidationReport;
+import com.entityassist.validation.ValidationViolation;
+import com.guicedee.client.IGuiceContext;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaDelete;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.CriteriaUpdate;
 import jakarta.persistence.metamodel.Attribute;
-import jakarta.validation.ConstraintViolation;
-import jakarta.validation.Validation;
-import jakarta.validation.Validator;
-import jakarta.validation.ValidatorFactory;
 import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.Session;
 
 import java.io.Serializable;
-import java.lang.reflect.Field;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * Builds a Query Base
@@ -94,6 +96,15 @@ public abstract class QueryBuilderRoot<J extends QueryBuilderRoot<J, E, I>,
 
     private boolean commitDirectConnection;
 
+    /**
+     * The default number of entities written per flush and JDBC batch by persistAll
+     */
+    public static int defaultPersistBatchSize = 50;
+    /**
+     * The number of entities written per flush and JDBC batch by persistAll
+     */
+    private int persistBatchSize = defaultPersistBatchSize;
+
     public CriteriaBuilder getCriteriaBuilder()
     {
         if (criteriaBuilder == null)
@@ -130,6 +141,21 @@ public abstract class QueryBuilderRoot<J extends QueryBuilderRoot<J, E, I>,
         return (J) this;
     }
 
+    /**
+     * Sets the criteria query for this instance
+     *
+     * @param criteriaQuery The select statement to build onto
+     * @return This
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    @NotNull
+    public J setCriteriaQuery(CriteriaQuery<?> criteriaQuery)
+    {
+        this.criteriaQuery = criteriaQuery;
+        return (J) this;
+    }
+
 
     /**
      * Constructor QueryBuilderBase creates a new QueryBuilderBase instance.
@@ -229,6 +255,32 @@ public abstract class QueryBuilderRoot<J extends QueryBuilderRoot<J, E, I>,
         return (J) this;
     }
 
+    /**
+     * The number of entities written per flush and JDBC batch by persistAll
+     *
+     * @return the batch size
+     */
+    @Override
+    public int getPersistBatchSize()
+    {
+        return persistBatchSize;
+    }
+
+    /**
+     * Sets the number of entities written per flush and JDBC batch by persistAll
+     *
+     * @param persistBatchSize the batch size
+     * @return This
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    @NotNull
+    public J setPersistBatchSize(int persistBatchSize)
+    {
+        this.persistBatchSize = persistBatchSize;
+        return (J) this;
+    }
+
     /**
      * Persists this entity. Uses the get instance entity manager to operate.
      *
@@ -244,6 +296,7 @@ public abstract class QueryBuilderRoot<J extends QueryBuilderRoot<J, E, I>,
             if (onCreate(entity))
             {
                 getEntityManager().unwrap(Session.class).persist(entity);
+                invalidateResults();
                 entity.setFake(false);
                 setEntity(entity);
             }
@@ -263,6 +316,167 @@ public abstract class QueryBuilderRoot<J extends QueryBuilderRoot<J, E, I>,
         return (J) this;
     }
 
+    /**
+     * Persists a large number of entities in batches.
+     * <p>
+     * Each batch of the persist batch size goes through onCreateAll, is persisted with the session JDBC batch size set to the same size,
+     * then flushed and its entities detached, so memory stays constant and inserts are sent as JDBC batches.
+     * Only the batch's own entities are detached, other entities managed by the session are left as they are,
+     * along with associations cascaded from the batch unless they cascade detach.
+     * <p>
+     * A failed flush marks the surrounding transaction rollback only, so the first failed batch is recorded and stops the run,
+     * the remaining entities are not attempted, and the caller must roll back.
+     * Split the entities over separate transactions where batches must commit independently.
+     * Entities with identity generated ids cannot be JDBC batched by Hibernate.
+     *
+     * @param entities The entities to persist
+     * @return The per batch report
+     */
+    @Override
+    @NotNull
+    public PersistReport persistAll(Iterable<E> entities)
+    {
+        PersistReport report = new PersistReport();
+        int batchSize = Math.max(1, persistBatchSize);
+        Session session = getEntityManager().unwrap(Session.class);
+        Integer previousBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+        try
+        {
+            List<E> batch = new ArrayList<>(batchSize);
+            int number = 0;
+            Iterator<E> iterator = entities.iterator();
+            while (iterator.hasNext())
+            {
+                batch.add(iterator.next());
+                if (batch.size() >= batchSize || !iterator.hasNext())
+                {
+                    PersistReport.Batch written = persistBatch(session, ++number, batch);
+                    report.add(written);
+                    if (written.getFailure() != null)
+                    {
+                        report.setStopped(iterator.hasNext());
+                        break;
+                    }
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        finally
+        {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+        return report;
+    }
+
+    /**
+     * Persists a large number of entities in batches
+     *
+     * @param entities The entities to persist
+     * @return The per batch report
+     * @see #persistAll(Iterable)
+     */
+    @Override
+    @NotNull
+    public PersistReport persistAll(Stream<E> entities)
+    {
+        try (entities)
+        {
+            return persistAll((Iterable<E>) entities::iterator);
+        }
+    }
+
+    private PersistReport.Batch persistBatch(Session session, int number, List<E> batch)
+    {
+        long start = System.nanoTime();
+        List<E> accepted = new ArrayList<>();
+        try
+        {
+            accepted = onCreateAll(batch);
+            for (E entity : accepted)
+            {
+                session.persist(entity);
+            }
+            session.flush();
+            QueryResultCache.invalidate(session, getEntityClass());
+            for (E entity : accepted)
+            {
+                entity.setFake(false);
+                session.detach(entity);
+            }
+            return new PersistReport.Batch(number, batch.size(), accepted.size(), Duration.ofNanos(System.nanoTime() - start), null);
+        }
+        catch (RuntimeException e)
+        {
+            Logger.getLogger(getClass().getName())
+                  .log(Level.SEVERE, "Unable to persist batch " + number + " of " + getEntityClass().getName(), e);
+            for (E entity : accepted)
+            {
+                try
+                {
+                    if (session.contains(entity))
+                    {
+                        session.detach(entity);
+                    }
+                }
+                catch (RuntimeException detachFailure)
+                {
+                    e.addSuppressed(detachFailure);
+                }
+            }
+            return new PersistReport.Batch(number, batch.size(), 0, Duration.ofNanos(System.nanoTime() - start), e);
+        }
+    }
+
+    /**
+     * Marks the cached query results of this entity class stale, now and when the current transaction completes.
+     * Called by every write that runs through the builders
+     */
+    protected void invalidateResults()
+    {
+        QueryResultCache.invalidate(getEntityManager().unwrap(Session.class), getEntityClass());
+    }
+
+    /**
+     * Drops the current version near cache entries of the written id, now and when the current transaction completes
+     *
+     * @param id The id of the written row
+     */
+    protected void invalidateCurrentVersion(Object id)
+    {
+        CurrentVersionCache.invalidate(getEntityManager().unwrap(Session.class), getEntityClass(), id);
+    }
+
+    /**
+     * Drops every current version near cache entry of this entity class, now and when the current transaction completes.
+     * Called by the set based statements, whose rows are not known
+     */
+    protected void invalidateCurrentVersions()
+    {
+        CurrentVersionCache.invalidate(getEntityManager().unwrap(Session.class), getEntityClass());
+    }
+
+    /**
+     * Performed on a batch of a persistAll, returning the entities that must still be created.
+     * Defaults to onCreate for each entity
+     *
+     * @param entities The batch
+     * @return The entities to persist
+     */
+    @Override
+    public List<E> onCreateAll(List<E> entities)
+    {
+        List<E> accepted = new ArrayList<>(entities.size());
+        for (E entity : entities)
+        {
+            if (onCreate(entity))
+            {
+                accepted.add(entity);
+            }
+        }
+        return accepted;
+    }
+
     /**
      * Performed on create/persist
      *
@@ -312,6 +526,8 @@ public abstract class QueryBuilderRoot<J extends QueryBuilderRoot<J, E, I>,
             if (onUpdate(entity))
             {
                 entity = getEntityManager().merge(entity);
+                invalidateResults();
+                invalidateCurrentVersion(entity.getId());
             }
         }
         catch (IllegalStateException ise)
@@ -352,24 +568,30 @@ public abstract class QueryBuilderRoot<J extends QueryBuilderRoot<J, E, I>,
     public List<String> validateEntity(E entity)
     {
         List<String> errors = new ArrayList<>();
-        ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
-        Validator validator = factory.getValidator();
-        Set<?> constraintViolations = validator.validate(entity);
-        if (!constraintViolations.isEmpty())
+        for (ValidationViolation violation : IGuiceContext.get(EntityValidator.class)
+                                                          .validate(entity))
         {
-            for (Object constraintViolation : constraintViolations)
-            {
-                ConstraintViolation<?> contraints = (ConstraintViolation<?>) constraintViolation;
-                String error = contraints.getRootBeanClass()
-                                         .getSimpleName() + "." + contraints.getPropertyPath() + " " + contraints.getMessage();
-                errors.add(error);
-            }
+            errors.add(violation.toString());
         }
         return errors;
     }
 
     /**
-     * Returns the given attribute for a field name by reflectively accesing the static class
+     * Validates a batch of entities with the shared validator, in parallel for large batches
+     *
+     * @param entities The entities to validate
+     * @return The report of the invalid entities and their violations
+     */
+    @Override
+    @NotNull
+    public ValidationReport<E> validateAll(Collection<E> entities)
+    {
+        return IGuiceContext.get(EntityValidator.class)
+                            .validateAll(entities);
+    }
+
+    /**
+     * Returns the given attribute for a field name from the attribute registry
      *
      * @param fieldName the field to get an attribute for
      * @return the attribute or null
@@ -377,20 +599,29 @@ public abstract class QueryBuilderRoot<J extends QueryBuilderRoot<J, E, I>,
     @Override
     public <X, Y> Attribute<X, Y> getAttribute(@NotNull String fieldName)
     {
-        String clazz = getEntityClass().getCanonicalName() + '_';
-        try
+        Attribute<X, Y> attribute = getEntityAttributes().get(fieldName);
+        if (attribute == null)
         {
-            Class<?> c = Class.forName(clazz);
-            Field f = c.getField(fieldName);
-            //noinspection unchecked
-            return (Attribute<X, Y>) f.get(null);
+            Logger.getLogger(getClass().getName())
+                  .log(Level.SEVERE, "Unable to find attribute in class [" + getEntityClass().getCanonicalName() + "]-[" + fieldName + "]");
         }
-        catch (Exception e)
+        return attribute;
+    }
+
+    /**
+     * Returns the resolved metamodel attributes of the entity class, resolving them from the entity manager on first use
+     *
+     * @return the registry entry for the entity class
+     */
+    @Override
+    public EntityAttributes getEntityAttributes()
+    {
+        EntityAttributes attributes = AttributeRegistry.of(getEntityClass());
+        if (!attributes.isResolved())
         {
-            Logger.getLogger(getClass().getName())
-                  .log(Level.SEVERE, "Unable to field field in class [" + clazz + "]-[" + fieldName + "]", e);
+            attributes.resolve(getEntityManager().getMetamodel());
         }
-        return null;
+        return attributes;
     }
 
     /**
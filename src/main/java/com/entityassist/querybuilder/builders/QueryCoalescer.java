@@ -0,0 +1,286 @@
+package com.entityassist.querybuilder.builders;
+
+import com.entityassist.EntityAssistException;
+import com.entityassist.RootEntity;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shares one in-flight execution between concurrent identical queries.
+ * <p>
+ * The first caller for a key runs the query, and callers arriving while it runs wait for its result instead of querying the database again.
+ * A caller only joins a running query that started at the same write generations of the classes it reads, so a caller that follows a write
+ * never receives rows read before it. Followers receive shallow copies of the entity rows, so no two callers hold the same instance.
+ * Coalesced callers may see a result read by another transaction, so use it for reference data that is read far more than it is written,
+ * and never coalesce from a session with uncommitted writes to the classes read.
+ */
+@SuppressWarnings("unused")
+public final class QueryCoalescer
+{
+	private static final Logger log = Logger.getLogger(QueryCoalescer.class.getName());
+
+	/**
+	 * The executions currently running, by result key
+	 */
+	private static final Map<QueryResultCache.ResultKey, Flight> inFlight = new ConcurrentHashMap<>();
+	/**
+	 * The copyable state of each entity class
+	 */
+	private static final ClassValue<CopyPlan> copyPlans = new ClassValue<>()
+	{
+		@Override
+		protected CopyPlan computeValue(Class<?> type)
+		{
+			return CopyPlan.of(type);
+		}
+	};
+
+	private static final LongAdder executions = new LongAdder();
+	private static final LongAdder coalesced = new LongAdder();
+
+	/**
+	 * If new builders coalesce their queries by default
+	 */
+	private static volatile boolean enabled = false;
+
+	private QueryCoalescer()
+	{
+		//No config required
+	}
+
+	/**
+	 * If new builders coalesce their queries by default
+	 *
+	 * @return if enabled
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Sets if new builders coalesce their queries by default
+	 *
+	 * @param enabled if enabled
+	 */
+	public static void setEnabled(boolean enabled)
+	{
+		QueryCoalescer.enabled = enabled;
+	}
+
+	/**
+	 * The number of queries that went to the database
+	 *
+	 * @return the execution count
+	 */
+	public static long getExecutions()
+	{
+		return executions.sum();
+	}
+
+	/**
+	 * The number of queries answered by another caller's execution
+	 *
+	 * @return the coalesced count
+	 */
+	public static long getCoalesced()
+	{
+		return coalesced.sum();
+	}
+
+	/**
+	 * Runs the query, or waits for the identical query already running at the same write generations
+	 *
+	 * @param key   The result key of the query
+	 * @param query Runs the query, returning detached rows
+	 * @param <T>   The row type
+	 * @return The rows, copied when they came from another caller
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> List<T> execute(QueryResultCache.ResultKey key, Supplier<List<T>> query)
+	{
+		Flight mine = new Flight(key);
+		Flight running = inFlight.putIfAbsent(key, mine);
+		if (running != null && !running.key.isSameGenerations(key))
+		{
+			//Started before a write this caller must see, or after one it must not wait for
+			executions.increment();
+			return query.get();
+		}
+		if (running != null)
+		{
+			coalesced.increment();
+			try
+			{
+				return copyAll((List<T>) running.result.join());
+			}
+			catch (CompletionException e)
+			{
+				if (e.getCause() instanceof RuntimeException)
+				{
+					throw (RuntimeException) e.getCause();
+				}
+				throw new EntityAssistException("The coalesced query failed", e.getCause());
+			}
+		}
+		executions.increment();
+		try
+		{
+			List<T> result = query.get();
+			//Followers copy from a snapshot the leader's caller cannot change
+			mine.result.complete(Collections.unmodifiableList(new ArrayList<>(result)));
+			return result;
+		}
+		catch (RuntimeException | Error e)
+		{
+			mine.result.completeExceptionally(e);
+			throw e;
+		}
+		finally
+		{
+			inFlight.remove(key, mine);
+		}
+	}
+
+	/**
+	 * Copies the entity rows of a result, other values are kept
+	 *
+	 * @param rows The rows
+	 * @param <T>  The row type
+	 * @return A new list of copies
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> List<T> copyAll(List<T> rows)
+	{
+		List<T> copies = new ArrayList<>(rows.size());
+		for (T row : rows)
+		{
+			if (row instanceof RootEntity)
+			{
+				copies.add((T) copyOf(row));
+			}
+			else if (row instanceof Object[])
+			{
+				copies.add((T) ((Object[]) row).clone());
+			}
+			else
+			{
+				copies.add(row);
+			}
+		}
+		return copies;
+	}
+
+	/**
+	 * Returns a shallow copy of a detached entity, sharing its related entities and collections
+	 *
+	 * @param entity The entity
+	 * @param <T>    The entity type
+	 * @return The copy, or the entity itself when its class cannot be copied
+	 */
+	public static <T> T copyOf(T entity)
+	{
+		return copyPlans.get(entity.getClass())
+		                .copy(entity);
+	}
+
+	/**
+	 * A running execution and the key holding the generations it started at
+	 */
+	private static final class Flight
+	{
+		private final QueryResultCache.ResultKey key;
+		private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+		private Flight(QueryResultCache.ResultKey key)
+		{
+			this.key = key;
+		}
+	}
+
+	/**
+	 * The constructor and instance fields of an entity class
+	 */
+	private static final class CopyPlan
+	{
+		private final Constructor<?> constructor;
+		private final List<Field> fields;
+
+		private CopyPlan(Constructor<?> constructor, List<Field> fields)
+		{
+			this.constructor = constructor;
+			this.fields = fields;
+		}
+
+		private static CopyPlan of(Class<?> type)
+		{
+			try
+			{
+				Constructor<?> constructor = type.getDeclaredConstructor();
+				if (!constructor.trySetAccessible())
+				{
+					return new CopyPlan(null, List.of());
+				}
+				List<Field> fields = new ArrayList<>();
+				for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass())
+				{
+					for (Field field : current.getDeclaredFields())
+					{
+						if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()))
+						{
+							continue;
+						}
+						if (!field.trySetAccessible())
+						{
+							return new CopyPlan(null, List.of());
+						}
+						fields.add(field);
+					}
+				}
+				return new CopyPlan(constructor, List.copyOf(fields));
+			}
+			catch (NoSuchMethodException e)
+			{
+				log.log(Level.FINE, "[" + type.getName() + "] has no default constructor, coalesced rows are shared", e);
+				return new CopyPlan(null, List.of());
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private <T> T copy(T entity)
+		{
+			if (constructor == null)
+			{
+				return entity;
+			}
+			try
+			{
+				Object copy = constructor.newInstance();
+				for (Field field : fields)
+				{
+					field.set(copy, field.get(entity));
+				}
+				return (T) copy;
+			}
+			catch (ReflectiveOperationException e)
+			{
+				log.log(Level.FINE, "Unable to copy [" + entity.getClass()
+				                                             .getName() + "], the row is shared", e);
+				return entity;
+			}
+		}
+	}
+}
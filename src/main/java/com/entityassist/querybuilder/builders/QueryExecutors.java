@@ -0,0 +1,118 @@
+package com.entityassist.querybuilder.builders;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the executors that run concurrent query work, each task on its own entity manager.
+ * <p>
+ * Tasks spend nearly all of their time waiting on the database, so a virtual thread per task is used when the runtime provides them,
+ * falling back to a cached pool of daemon platform threads.
+ */
+public final class QueryExecutors
+{
+	private static final Logger log = Logger.getLogger(QueryExecutors.class.getName());
+	private static final AtomicInteger threadCount = new AtomicInteger();
+	/**
+	 * Executors.newVirtualThreadPerTaskExecutor, or null on runtimes without virtual threads
+	 */
+	private static final MethodHandle virtualThreadPerTask = findVirtualThreadPerTask();
+	/**
+	 * The shared executor for async operations, created on first use
+	 */
+	private static volatile Executor defaultExecutor;
+
+	private QueryExecutors()
+	{
+		//No config required
+	}
+
+	/**
+	 * Returns a new executor that starts a thread per task, virtual where available.
+	 * The caller owns the executor and must shut it down
+	 *
+	 * @return A new executor
+	 */
+	public static ExecutorService newTaskExecutor()
+	{
+		if (virtualThreadPerTask != null)
+		{
+			try
+			{
+				return (ExecutorService) virtualThreadPerTask.invoke();
+			}
+			catch (Throwable e)
+			{
+				log.log(Level.WARNING, "Unable to create a virtual thread executor, using platform threads", e);
+			}
+		}
+		return Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "entity-assist-query-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns the shared executor that async operations run on when their builder has none set
+	 *
+	 * @return The default executor, a thread per task unless replaced
+	 */
+	public static Executor getDefaultExecutor()
+	{
+		Executor executor = defaultExecutor;
+		if (executor == null)
+		{
+			synchronized (QueryExecutors.class)
+			{
+				executor = defaultExecutor;
+				if (executor == null)
+				{
+					executor = defaultExecutor = newTaskExecutor();
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Replaces the shared executor for async operations. The previous executor is not shut down
+	 *
+	 * @param executor The new default, or null to create a thread per task executor on next use
+	 */
+	public static void setDefaultExecutor(Executor executor)
+	{
+		defaultExecutor = executor;
+	}
+
+	/**
+	 * If tasks run on virtual threads
+	 *
+	 * @return if virtual threads are available
+	 */
+	public static boolean isVirtual()
+	{
+		return virtualThreadPerTask != null;
+	}
+
+	private static MethodHandle findVirtualThreadPerTask()
+	{
+		try
+		{
+			return MethodHandles.publicLookup()
+			                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+		}
+		catch (NoSuchMethodException | IllegalAccessException e)
+		{
+			log.log(Level.FINE, "Virtual threads are not available, query tasks use platform threads");
+			return null;
+		}
+	}
+}
@@ -0,0 +1,281 @@
+package com.entityassist.querybuilder.builders;
+
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.Bindable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the structural fingerprint of a query builder.
+ * <p>
+ * The fingerprint describes the shape of the query that select() would generate - entity, joins, operands, attributes,
+ * select aggregates and ordering - and never the bound values, so builders that differ only by value share a plan.
+ */
+final class QueryFingerprint
+{
+	private QueryFingerprint()
+	{
+		//No config required
+	}
+
+	/**
+	 * Returns the fingerprint for the builder
+	 *
+	 * @param builder The builder to describe
+	 * @param purpose What the query is going to be used for (select, count)
+	 * @return The fingerprint or null if the builder contains something that cannot be safely shared
+	 */
+	static String of(DefaultQueryBuilder<?, ?, ?> builder, String purpose)
+	{
+		StringBuilder fingerprint = new StringBuilder(128).append(purpose)
+		                                                  .append('|');
+		return appendBuilder(fingerprint, builder) ? fingerprint.toString() : null;
+	}
+
+	/**
+	 * Returns the where expressions that bind values, in the order used for both the fingerprint and the binding
+	 *
+	 * @param builder The builder to walk
+	 * @return All where expressions of the builder and its joined builders
+	 */
+	static List<WhereExpression<?, ?>> boundExpressions(DefaultQueryBuilder<?, ?, ?> builder)
+	{
+		List<WhereExpression<?, ?>> output = new ArrayList<>();
+		collect(builder, output);
+		return output;
+	}
+
+	private static void collect(DefaultQueryBuilder<?, ?, ?> builder, List<WhereExpression<?, ?>> output)
+	{
+		for (IFilterExpression filterExpression : builder.getWhereExpressions())
+		{
+			collect(filterExpression, output);
+		}
+		for (JoinExpression<?, ?, ?> join : builder.getJoins())
+		{
+			if (join.getOnBuilder() != null)
+			{
+				collect(join.getOnBuilder(), output);
+			}
+			if (join.getExecutor() != null)
+			{
+				collect(join.getExecutor(), output);
+			}
+		}
+	}
+
+	private static void collect(IFilterExpression filterExpression, List<WhereExpression<?, ?>> output)
+	{
+		if (filterExpression instanceof WhereExpression)
+		{
+			output.add((WhereExpression<?, ?>) filterExpression);
+		}
+		else if (filterExpression instanceof GroupedExpression)
+		{
+			for (IFilterExpression child : ((GroupedExpression) filterExpression).getFilterExpressions())
+			{
+				collect(child, output);
+			}
+		}
+	}
+
+	private static boolean appendBuilder(StringBuilder fingerprint, DefaultQueryBuilder<?, ?, ?> builder)
+	{
+		fingerprint.append(builder.getEntityClass()
+		                          .getName());
+		if (builder.getConstruct() != null)
+		{
+			fingerprint.append("->")
+			           .append(builder.getConstruct()
+			                          .getName());
+		}
+		//Anything added directly to the builder collections has no structure to describe
+		if (!builder.getHavingExpressions()
+		            .isEmpty()
+		    || builder.getFilters()
+		              .size() != builder.getWhereExpressions()
+		                                .size()
+		    || builder.getSelections()
+		              .size() != builder.getSelectExpressions()
+		                                .size()
+		    || builder.getGroupBys()
+		              .size() != builder.getGroupByExpressions()
+		                                .size())
+		{
+			return false;
+		}
+		fingerprint.append("|w[");
+		for (IFilterExpression filterExpression : builder.getWhereExpressions())
+		{
+			if (!appendFilter(fingerprint, filterExpression))
+			{
+				return false;
+			}
+		}
+		fingerprint.append("]s[");
+		for (SelectExpression selectExpression : builder.getSelectExpressions())
+		{
+			if (!appendPath(fingerprint, selectExpression.getAttribute()))
+			{
+				return false;
+			}
+			fingerprint.append(' ')
+			           .append(selectExpression.getAggregrate())
+			           .append(' ')
+			           .append(selectExpression.getAlias())
+			           .append(';');
+		}
+		fingerprint.append("]g[");
+		for (GroupByExpression groupByExpression : builder.getGroupByExpressions())
+		{
+			if (!appendAttribute(fingerprint, groupByExpression.getGroupByAttribute()))
+			{
+				return false;
+			}
+			fingerprint.append(';');
+		}
+		fingerprint.append("]o[");
+		for (OrderByExpression orderByExpression : builder.getOrderByExpressions())
+		{
+			if (!appendAttribute(fingerprint, orderByExpression.getAttribute()))
+			{
+				return false;
+			}
+			fingerprint.append(' ')
+			           .append(orderByExpression.getOrderByType())
+			           .append(';');
+		}
+		if (builder.getKeysetKeys() != null)
+		{
+			fingerprint.append("]k[");
+			for (KeysetKey key : builder.getKeysetKeys())
+			{
+				fingerprint.append(key.getName())
+				           .append(' ')
+				           .append(key.getDirection())
+				           .append(';');
+			}
+		}
+		fingerprint.append("]j[");
+		for (JoinExpression<?, ?, ?> join : builder.getJoins())
+		{
+			if (join.getAttribute() == null || join.getGeneratedRoot() == null)
+			{
+				return false;
+			}
+			appendJoin(fingerprint, join.getGeneratedRoot());
+			fingerprint.append(' ')
+			           .append(join.getJoinType());
+			if (join.getOnBuilder() != null)
+			{
+				fingerprint.append(" on{");
+				if (!appendBuilder(fingerprint, join.getOnBuilder()))
+				{
+					return false;
+				}
+				fingerprint.append('}');
+			}
+			if (join.getExecutor() != null)
+			{
+				fingerprint.append(" with{");
+				if (!appendBuilder(fingerprint, join.getExecutor()))
+				{
+					return false;
+				}
+				fingerprint.append('}');
+			}
+			fingerprint.append(';');
+		}
+		fingerprint.append(']');
+		return true;
+	}
+
+	private static boolean appendFilter(StringBuilder fingerprint, IFilterExpression filterExpression)
+	{
+		if (filterExpression instanceof WhereExpression)
+		{
+			if (!((WhereExpression<?, ?>) filterExpression).appendFingerprint(fingerprint))
+			{
+				return false;
+			}
+			fingerprint.append(';');
+			return true;
+		}
+		else if (filterExpression instanceof GroupedExpression)
+		{
+			GroupedExpression groupedExpression = (GroupedExpression) filterExpression;
+			fingerprint.append(groupedExpression.getGroupedFilterType())
+			           .append('(');
+			for (IFilterExpression child : groupedExpression.getFilterExpressions())
+			{
+				if (!appendFilter(fingerprint, child))
+				{
+					return false;
+				}
+			}
+			fingerprint.append(");");
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Describes a path expression as its join chain and attribute
+	 *
+	 * @param fingerprint The fingerprint being built
+	 * @param expression  The expression to describe
+	 * @return false if the expression is not a path to a mapped attribute
+	 */
+	static boolean appendPath(StringBuilder fingerprint, Expression<?> expression)
+	{
+		if (!(expression instanceof Path))
+		{
+			return false;
+		}
+		Path<?> path = (Path<?>) expression;
+		Bindable<?> model = path.getModel();
+		if (!(model instanceof Attribute))
+		{
+			return false;
+		}
+		if (path.getParentPath() instanceof Join)
+		{
+			appendJoin(fingerprint, (Join<?, ?>) path.getParentPath());
+			fingerprint.append('/');
+		}
+		return appendAttribute(fingerprint, (Attribute<?, ?>) model);
+	}
+
+	private static boolean appendAttribute(StringBuilder fingerprint, Attribute<?, ?> attribute)
+	{
+		if (attribute == null)
+		{
+			return false;
+		}
+		fingerprint.append(attribute.getDeclaringType()
+		                            .getJavaType()
+		                            .getName())
+		           .append('.')
+		           .append(attribute.getName());
+		return true;
+	}
+
+	private static void appendJoin(StringBuilder fingerprint, Join<?, ?> join)
+	{
+		From<?, ?> parent = join.getParent();
+		if (parent instanceof Join)
+		{
+			appendJoin(fingerprint, (Join<?, ?>) parent);
+			fingerprint.append('/');
+		}
+		fingerprint.append(join.getAttribute()
+		                       .getName())
+		           .append(':')
+		           .append(join.getJoinType());
+	}
+}
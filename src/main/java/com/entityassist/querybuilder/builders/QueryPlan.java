@@ -0,0 +1,56 @@
+package com.entityassist.querybuilder.builders;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compiled query plan, registered as a named query on the entity manager factory
+ */
+final class QueryPlan
+{
+	/**
+	 * Marks a fingerprint that could not be registered, so it is not attempted again
+	 */
+	static final QueryPlan UNSUPPORTED = new QueryPlan(null, Collections.emptyList());
+
+	/**
+	 * The named query the plan is registered under
+	 */
+	private final String name;
+	/**
+	 * The parameter names in bound value order
+	 */
+	private final List<String> parameterNames;
+
+	/**
+	 * A new compiled plan
+	 *
+	 * @param name           The named query name
+	 * @param parameterNames The parameter names in bound value order
+	 */
+	QueryPlan(String name, List<String> parameterNames)
+	{
+		this.name = name;
+		this.parameterNames = parameterNames;
+	}
+
+	/**
+	 * The named query the plan is registered under
+	 *
+	 * @return The name
+	 */
+	String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * The parameter names in bound value order
+	 *
+	 * @return The names
+	 */
+	List<String> getParameterNames()
+	{
+		return parameterNames;
+	}
+}
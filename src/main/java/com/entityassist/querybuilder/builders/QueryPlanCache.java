@@ -0,0 +1,247 @@
+package com.entityassist.querybuilder.builders;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches compiled query plans keyed by the structural fingerprint of a builder.
+ * <p>
+ * On the first execution of a shape the built criteria query is registered as a named query on the entity manager factory.
+ * Subsequent executions of the same shape create the named query and bind only the new values, so neither the select()
+ * walk nor the criteria translation is repeated. Builders only take part when their where values are bound as parameters,
+ * which is the case for builders created while the cache is enabled, or flagged with setPlanCached(true) before filtering.
+ */
+@SuppressWarnings("unused")
+public final class QueryPlanCache
+{
+	private static final Logger log = Logger.getLogger(QueryPlanCache.class.getName());
+
+	/**
+	 * The purpose of a query returning rows
+	 */
+	public static final String SELECT = "select";
+	/**
+	 * The purpose of a query returning a count
+	 */
+	public static final String COUNT = "count";
+
+	/**
+	 * The plans registered against each entity manager factory
+	 */
+	private static final Map<EntityManagerFactory, Map<String, QueryPlan>> plans = new ConcurrentHashMap<>();
+	/**
+	 * The named query name of each fingerprint registered against each entity manager factory.
+	 * Kept through clear, so a shape registered again replaces its named query instead of adding another
+	 */
+	private static final Map<EntityManagerFactory, Map<String, String>> names = new ConcurrentHashMap<>();
+	/**
+	 * Generates unique parameter names
+	 */
+	private static final AtomicLong parameterSequence = new AtomicLong();
+	/**
+	 * Generates unique named query names
+	 */
+	private static final AtomicLong planSequence = new AtomicLong();
+
+	private static final LongAdder hits = new LongAdder();
+	private static final LongAdder misses = new LongAdder();
+
+	/**
+	 * If new builders use the plan cache by default
+	 */
+	private static volatile boolean enabled = false;
+	/**
+	 * The maximum number of plans kept per entity manager factory
+	 */
+	private static volatile int maximumPlans = 1024;
+
+	private QueryPlanCache()
+	{
+		//No config required
+	}
+
+	/**
+	 * If new builders use the plan cache by default
+	 *
+	 * @return if enabled
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Sets if new builders use the plan cache by default
+	 *
+	 * @param enabled if enabled
+	 */
+	public static void setEnabled(boolean enabled)
+	{
+		QueryPlanCache.enabled = enabled;
+	}
+
+	/**
+	 * The maximum number of plans kept per entity manager factory
+	 *
+	 * @return the maximum
+	 */
+	public static int getMaximumPlans()
+	{
+		return maximumPlans;
+	}
+
+	/**
+	 * Sets the maximum number of plans kept per entity manager factory. Shapes over the limit run uncached.
+	 *
+	 * @param maximumPlans the maximum
+	 */
+	public static void setMaximumPlans(int maximumPlans)
+	{
+		QueryPlanCache.maximumPlans = maximumPlans;
+	}
+
+	/**
+	 * The number of executions that were served from a compiled plan
+	 *
+	 * @return the hit count
+	 */
+	public static long getHits()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * The number of executions that had to build their criteria query
+	 *
+	 * @return the miss count
+	 */
+	public static long getMisses()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * The number of plans currently held
+	 *
+	 * @return the plan count across all factories
+	 */
+	public static int size()
+	{
+		int size = 0;
+		for (Map<String, QueryPlan> value : plans.values())
+		{
+			size += value.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Forgets all plans and statistics.
+	 * <p>
+	 * JPA cannot remove a named query, so those already registered remain on their factories.
+	 * Each fingerprint keeps its name, so a shape compiled again after a clear replaces its earlier named query,
+	 * and the named queries never outnumber the distinct shapes seen.
+	 */
+	public static void clear()
+	{
+		plans.clear();
+		hits.reset();
+		misses.reset();
+	}
+
+	/**
+	 * Generates a unique name for a bound parameter
+	 *
+	 * @return The parameter name
+	 */
+	static String nextParameterName()
+	{
+		return "eaParam" + parameterSequence.incrementAndGet();
+	}
+
+	/**
+	 * Creates the query for a fingerprint from its compiled plan, binding the given values
+	 *
+	 * @param entityManager The entity manager to create the query on
+	 * @param fingerprint   The builder fingerprint
+	 * @param values        The bound values in fingerprint order
+	 * @param resultType    The type of result
+	 * @param <T>           The result type
+	 * @return The bound query, or empty if no plan is available
+	 */
+	public static <T> Optional<TypedQuery<T>> fromPlan(EntityManager entityManager, String fingerprint, List<Object> values, Class<T> resultType)
+	{
+		QueryPlan plan = getPlans(entityManager.getEntityManagerFactory()).get(fingerprint);
+		if (plan == null || plan == QueryPlan.UNSUPPORTED || plan.getParameterNames()
+		                                                         .size() != values.size())
+		{
+			misses.increment();
+			return Optional.empty();
+		}
+		try
+		{
+			TypedQuery<T> query = entityManager.createNamedQuery(plan.getName(), resultType);
+			for (int i = 0; i < values.size(); i++)
+			{
+				query.setParameter(plan.getParameterNames()
+				                       .get(i), values.get(i));
+			}
+			hits.increment();
+			return Optional.of(query);
+		}
+		catch (IllegalArgumentException iae)
+		{
+			log.log(Level.FINE, "Compiled plan [" + plan.getName() + "] could not be used, building the query", iae);
+			misses.increment();
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Registers the freshly built query as the compiled plan for the fingerprint.
+	 * <p>
+	 * Must be called before any first/max results or hints are applied, as the named query retains them.
+	 *
+	 * @param entityManager  The entity manager the query was created on
+	 * @param fingerprint    The builder fingerprint
+	 * @param parameterNames The parameter names in fingerprint order
+	 * @param query          The query built from the criteria
+	 */
+	public static void register(EntityManager entityManager, String fingerprint, List<String> parameterNames, Query query)
+	{
+		Map<String, QueryPlan> factoryPlans = getPlans(entityManager.getEntityManagerFactory());
+		if (factoryPlans.containsKey(fingerprint) || factoryPlans.size() >= maximumPlans)
+		{
+			return;
+		}
+		String name = names.computeIfAbsent(entityManager.getEntityManagerFactory(), key -> new ConcurrentHashMap<>())
+		                   .computeIfAbsent(fingerprint, key -> "entityassist.plan." + planSequence.incrementAndGet());
+		try
+		{
+			entityManager.getEntityManagerFactory()
+			             .addNamedQuery(name, query);
+			factoryPlans.putIfAbsent(fingerprint, new QueryPlan(name, parameterNames));
+		}
+		catch (RuntimeException e)
+		{
+			log.log(Level.FINE, "Unable to register a compiled plan for [" + fingerprint + "]", e);
+			factoryPlans.putIfAbsent(fingerprint, QueryPlan.UNSUPPORTED);
+		}
+	}
+
+	private static Map<String, QueryPlan> getPlans(EntityManagerFactory factory)
+	{
+		return plans.computeIfAbsent(factory, key -> new ConcurrentHashMap<>());
+	}
+}
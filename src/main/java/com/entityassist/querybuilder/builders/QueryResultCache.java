@@ -0,0 +1,561 @@
+package com.entityassist.querybuilder.builders;
+
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.PluralAttribute;
+import org.hibernate.Session;
+import org.hibernate.SessionEventListener;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An in-process cache of query results keyed by the structural fingerprint of a builder and its bound values.
+ * <p>
+ * Entries are evicted least recently used once the maximum is reached, and expire after the time to live.
+ * Every entity class carries a generation that the builders advance on each persist, update, delete and bulk statement,
+ * and again when the writing transaction completes. An entry remembers the generations of the classes it read when its query started,
+ * so any write to those classes makes it stale without scanning the cache.
+ * <p>
+ * Cached rows are detached instances shared between callers, so treat them as read only.
+ */
+@SuppressWarnings("unused")
+public final class QueryResultCache
+{
+	private static final Logger log = Logger.getLogger(QueryResultCache.class.getName());
+
+	/**
+	 * The write generation of each entity class
+	 */
+	private static final ClassValue<AtomicLong> generations = new ClassValue<>()
+	{
+		@Override
+		protected AtomicLong computeValue(Class<?> type)
+		{
+			return new AtomicLong();
+		}
+	};
+	/**
+	 * The listeners invalidating the classes written in a session when its transaction completes
+	 */
+	private static final Map<Session, CompletionInvalidation> completions = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private static final LongAdder hits = new LongAdder();
+	private static final LongAdder misses = new LongAdder();
+	private static final LongAdder evictions = new LongAdder();
+
+	/**
+	 * If new builders cache their results by default
+	 */
+	private static volatile boolean enabled = false;
+	/**
+	 * The maximum number of results held
+	 */
+	private static volatile int maximumEntries = 1024;
+	/**
+	 * How long a result is served for
+	 */
+	private static volatile Duration timeToLive = Duration.ofMinutes(5);
+
+	/**
+	 * The results in access order
+	 */
+	private static final LinkedHashMap<ResultKey, Entry> entries = new LinkedHashMap<>(64, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ResultKey, Entry> eldest)
+		{
+			if (size() > maximumEntries)
+			{
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	private QueryResultCache()
+	{
+		//No config required
+	}
+
+	/**
+	 * If new builders cache their results by default
+	 *
+	 * @return if enabled
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Sets if new builders cache their results by default
+	 *
+	 * @param enabled if enabled
+	 */
+	public static void setEnabled(boolean enabled)
+	{
+		QueryResultCache.enabled = enabled;
+	}
+
+	/**
+	 * The maximum number of results held
+	 *
+	 * @return the maximum
+	 */
+	public static int getMaximumEntries()
+	{
+		return maximumEntries;
+	}
+
+	/**
+	 * Sets the maximum number of results held, the least recently used are evicted first
+	 *
+	 * @param maximumEntries the maximum
+	 */
+	public static void setMaximumEntries(int maximumEntries)
+	{
+		QueryResultCache.maximumEntries = maximumEntries;
+	}
+
+	/**
+	 * How long a result is served for
+	 *
+	 * @return the time to live
+	 */
+	public static Duration getTimeToLive()
+	{
+		return timeToLive;
+	}
+
+	/**
+	 * Sets how long a result is served for
+	 *
+	 * @param timeToLive the time to live
+	 */
+	public static void setTimeToLive(Duration timeToLive)
+	{
+		QueryResultCache.timeToLive = timeToLive;
+	}
+
+	/**
+	 * The number of executions served from the cache
+	 *
+	 * @return the hit count
+	 */
+	public static long getHits()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * The number of executions that ran their query
+	 *
+	 * @return the miss count
+	 */
+	public static long getMisses()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * The number of results removed for size, age or a write to a class they read
+	 *
+	 * @return the eviction count
+	 */
+	public static long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+	/**
+	 * The number of results currently held
+	 *
+	 * @return the size
+	 */
+	public static int size()
+	{
+		synchronized (entries)
+		{
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Removes every result
+	 */
+	public static void clear()
+	{
+		synchronized (entries)
+		{
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Marks every cached result that read the entity class or one of its super classes as stale
+	 *
+	 * @param entityClass The written entity class
+	 */
+	public static void invalidate(Class<?> entityClass)
+	{
+		for (Class<?> type = entityClass; type != null && type != Object.class; type = type.getSuperclass())
+		{
+			generations.get(type)
+			           .incrementAndGet();
+		}
+	}
+
+	/**
+	 * Marks the results of the entity class stale now, and again when the session's current transaction completes,
+	 * so a result read by another transaction before the commit is not served afterwards
+	 *
+	 * @param session     The writing session
+	 * @param entityClass The written entity class
+	 */
+	public static void invalidate(Session session, Class<?> entityClass)
+	{
+		invalidate(entityClass);
+		try
+		{
+			completion(session).add(entityClass);
+		}
+		catch (RuntimeException e)
+		{
+			log.log(Level.FINE, "Unable to invalidate " + entityClass.getName() + " on transaction completion", e);
+		}
+	}
+
+	/**
+	 * Runs the action when the session's current transaction completes, whether it commits or rolls back.
+	 * Lets the other caches of the builders drop what they loaded while the transaction was open
+	 *
+	 * @param session The writing session
+	 * @param action  The action to run once
+	 */
+	public static void onCompletion(Session session, Runnable action)
+	{
+		try
+		{
+			completion(session).add(action);
+		}
+		catch (RuntimeException e)
+		{
+			log.log(Level.FINE, "Unable to register a transaction completion action", e);
+		}
+	}
+
+	/**
+	 * If the session has written one of the classes, or a class related to it by inheritance, in a transaction that has not completed.
+	 * Rows read in that session may be uncommitted and must not be shared with other sessions
+	 *
+	 * @param session The reading session
+	 * @param classes The classes read
+	 * @return if any of the classes has a pending write
+	 */
+	public static boolean hasPendingWrites(Session session, Class<?>... classes)
+	{
+		CompletionInvalidation completion = completions.get(session);
+		return completion != null && completion.isWritten(classes);
+	}
+
+	/**
+	 * If the session has written one of the classes the key reads in a transaction that has not completed.
+	 * Results read by such a session hold its uncommitted rows and must not be shared
+	 *
+	 * @param session The session
+	 * @param key     The result key
+	 * @return if the session has pending writes the key depends on
+	 */
+	public static boolean hasPendingWrites(Session session, ResultKey key)
+	{
+		return hasPendingWrites(session, key.dependencies);
+	}
+
+	private static CompletionInvalidation completion(Session session)
+	{
+		return completions.computeIfAbsent(session, key -> {
+			CompletionInvalidation listener = new CompletionInvalidation();
+			key.addEventListeners(listener);
+			return listener;
+		});
+	}
+
+	/**
+	 * Creates the cache key for the builder's current query
+	 *
+	 * @param builder    The builder
+	 * @param purpose    The query purpose, one of the QueryPlanCache purposes
+	 * @param resultType The result type
+	 * @return The key, or null if the builder cannot be described
+	 */
+	public static ResultKey key(DefaultQueryBuilder<?, ?, ?> builder, String purpose, Class<?> resultType)
+	{
+		String fingerprint = QueryFingerprint.of(builder, purpose);
+		if (fingerprint == null)
+		{
+			return null;
+		}
+		Set<Class<?>> dependencies = new LinkedHashSet<>();
+		collectDependencies(builder, dependencies);
+		Class<?>[] classes = dependencies.toArray(new Class<?>[0]);
+		long[] read = new long[classes.length];
+		for (int i = 0; i < classes.length; i++)
+		{
+			read[i] = generations.get(classes[i])
+			                     .get();
+		}
+		return new ResultKey(fingerprint + "->" + resultType.getName(), builder.getBoundValues(), builder.getMaxResults(), builder.getFirstResults(), classes, read);
+	}
+
+	/**
+	 * Returns the cached result for the key
+	 *
+	 * @param key The key
+	 * @param <T> The result type
+	 * @return The result, or null on a miss
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(ResultKey key)
+	{
+		Entry entry;
+		synchronized (entries)
+		{
+			entry = entries.get(key);
+			if (entry != null && (entry.expires - System.nanoTime() < 0 || !entry.isCurrent()))
+			{
+				entries.remove(key);
+				evictions.increment();
+				entry = null;
+			}
+		}
+		if (entry == null)
+		{
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return (T) entry.value;
+	}
+
+	/**
+	 * Stores the result for the key, unless one of the classes it read was written while the query ran
+	 *
+	 * @param key   The key created before the query ran
+	 * @param value The result
+	 */
+	public static void put(ResultKey key, Object value)
+	{
+		Entry entry = new Entry(value, key.dependencies, key.generations, System.nanoTime() + timeToLive.toNanos());
+		if (!entry.isCurrent())
+		{
+			return;
+		}
+		synchronized (entries)
+		{
+			entries.put(key, entry);
+		}
+	}
+
+	private static boolean isCurrent(Class<?>[] dependencies, long[] read)
+	{
+		for (int i = 0; i < dependencies.length; i++)
+		{
+			if (generations.get(dependencies[i])
+			               .get() != read[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void collectDependencies(DefaultQueryBuilder<?, ?, ?> builder, Set<Class<?>> dependencies)
+	{
+		dependencies.add(builder.getEntityClass());
+		for (JoinExpression<?, ?, ?> join : builder.getJoins())
+		{
+			Attribute<?, ?> attribute = join.getAttribute();
+			if (attribute instanceof PluralAttribute)
+			{
+				dependencies.add(((PluralAttribute<?, ?, ?>) attribute).getElementType()
+				                                                       .getJavaType());
+			}
+			else if (attribute != null)
+			{
+				dependencies.add(attribute.getJavaType());
+			}
+			if (join.getOnBuilder() != null)
+			{
+				collectDependencies(join.getOnBuilder(), dependencies);
+			}
+			if (join.getExecutor() != null)
+			{
+				collectDependencies(join.getExecutor(), dependencies);
+			}
+		}
+	}
+
+	/**
+	 * Identifies a result by query shape, bound values and paging
+	 */
+	public static final class ResultKey
+	{
+		private final String fingerprint;
+		private final List<Object> values;
+		private final Integer maxResults;
+		private final Integer firstResult;
+		private final Class<?>[] dependencies;
+		private final long[] generations;
+		private final int hash;
+
+		private ResultKey(String fingerprint, List<Object> values, Integer maxResults, Integer firstResult, Class<?>[] dependencies, long[] generations)
+		{
+			this.fingerprint = fingerprint;
+			this.values = values;
+			this.maxResults = maxResults;
+			this.firstResult = firstResult;
+			this.dependencies = dependencies;
+			this.generations = generations;
+			hash = Objects.hash(fingerprint, values, maxResults, firstResult);
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+			{
+				return true;
+			}
+			if (!(o instanceof ResultKey))
+			{
+				return false;
+			}
+			ResultKey other = (ResultKey) o;
+			return hash == other.hash
+			       && fingerprint.equals(other.fingerprint)
+			       && values.equals(other.values)
+			       && Objects.equals(maxResults, other.maxResults)
+			       && Objects.equals(firstResult, other.firstResult);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		/**
+		 * If the other key was created at the same write generations of the same classes, so both reads see the same committed writes
+		 *
+		 * @param other The other key
+		 * @return if both keys read the same generations
+		 */
+		public boolean isSameGenerations(ResultKey other)
+		{
+			return Arrays.equals(dependencies, other.dependencies) && Arrays.equals(generations, other.generations);
+		}
+
+		/**
+		 * If none of the classes this key read has been written since it was created
+		 *
+		 * @return if current
+		 */
+		public boolean isCurrent()
+		{
+			return QueryResultCache.isCurrent(dependencies, generations);
+		}
+
+		@Override
+		public String toString()
+		{
+			return fingerprint + values;
+		}
+	}
+
+	/**
+	 * A cached result and the class generations it was read at
+	 */
+	private static final class Entry
+	{
+		private final Object value;
+		private final Class<?>[] dependencies;
+		private final long[] read;
+		private final long expires;
+
+		private Entry(Object value, Class<?>[] dependencies, long[] read, long expires)
+		{
+			this.value = value;
+			this.dependencies = dependencies;
+			this.read = read;
+			this.expires = expires;
+		}
+
+		private boolean isCurrent()
+		{
+			return QueryResultCache.isCurrent(dependencies, read);
+		}
+	}
+
+	/**
+	 * Invalidates the classes written in a session, and runs the registered actions, when each of its transactions completes
+	 */
+	private static final class CompletionInvalidation implements SessionEventListener
+	{
+		private final Set<Class<?>> written = new LinkedHashSet<>();
+		private final List<Runnable> actions = new ArrayList<>();
+
+		private synchronized void add(Class<?> entityClass)
+		{
+			written.add(entityClass);
+		}
+
+		private synchronized void add(Runnable action)
+		{
+			actions.add(action);
+		}
+
+		private synchronized boolean isWritten(Class<?>... classes)
+		{
+			for (Class<?> type : classes)
+			{
+				for (Class<?> writtenClass : written)
+				{
+					if (type.isAssignableFrom(writtenClass) || writtenClass.isAssignableFrom(type))
+					{
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void transactionCompletion(boolean successful)
+		{
+			List<Runnable> run;
+			synchronized (this)
+			{
+				written.forEach(QueryResultCache::invalidate);
+				written.clear();
+				run = new ArrayList<>(actions);
+				actions.clear();
+			}
+			for (Runnable action : run)
+			{
+				try
+				{
+					action.run();
+				}
+				catch (RuntimeException e)
+				{
+					log.log(Level.WARNING, "A transaction completion action failed", e);
+				}
+			}
+		}
+	}
+}
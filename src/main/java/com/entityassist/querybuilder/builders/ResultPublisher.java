@@ -0,0 +1,215 @@
+package com.entityassist.querybuilder.builders;
+
+import com.entityassist.BaseEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Publishes the rows of a query to a reactive subscriber, reading only as many rows from the cursor as have been requested.
+ * <p>
+ * Every subscription opens its own entity manager and server side cursor, both closed on completion, failure or cancel.
+ * Entity rows are detached once emitted, so a subscription holds no more than the JDBC fetch size in memory,
+ * and a slow subscriber leaves the cursor idle instead of buffering the result.
+ *
+ * @param <E> The row type
+ */
+public final class ResultPublisher<E> implements Flow.Publisher<E>
+{
+	private static final Logger log = Logger.getLogger(ResultPublisher.class.getName());
+
+	/**
+	 * The JDBC fetch size used when the builder does not set one
+	 */
+	public static int defaultFetchSize = 256;
+
+	private final EntityManagerFactory factory;
+	private final Executor executor;
+	private final Function<EntityManager, Stream<E>> opener;
+
+	/**
+	 * Creates a publisher
+	 *
+	 * @param factory  The factory each subscription opens its entity manager from
+	 * @param executor The executor the cursor is read on
+	 * @param opener   Opens the row stream on the subscription's entity manager
+	 */
+	public ResultPublisher(EntityManagerFactory factory, Executor executor, Function<EntityManager, Stream<E>> opener)
+	{
+		this.factory = factory;
+		this.executor = executor;
+		this.opener = opener;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super E> subscriber)
+	{
+		Objects.requireNonNull(subscriber, "subscriber");
+		subscriber.onSubscribe(new CursorSubscription(subscriber));
+	}
+
+	/**
+	 * A single pass over the cursor, drained serially on the executor
+	 */
+	private final class CursorSubscription implements Flow.Subscription, Runnable
+	{
+		private final Flow.Subscriber<? super E> subscriber;
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger pending = new AtomicInteger();
+		private volatile boolean cancelled;
+		private volatile Throwable invalidRequest;
+		private boolean terminated;
+
+		private EntityManager entityManager;
+		private Stream<E> stream;
+		private Iterator<E> rows;
+
+		private CursorSubscription(Flow.Subscriber<? super E> subscriber)
+		{
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n)
+		{
+			if (n <= 0)
+			{
+				invalidRequest = new IllegalArgumentException("Requested " + n + " rows, the request must be positive");
+			}
+			else
+			{
+				requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel()
+		{
+			cancelled = true;
+			schedule();
+		}
+
+		private void schedule()
+		{
+			if (pending.getAndIncrement() == 0)
+			{
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			int missed = 1;
+			while (!terminated)
+			{
+				drain();
+				missed = pending.addAndGet(-missed);
+				if (missed == 0)
+				{
+					return;
+				}
+			}
+		}
+
+		private void drain()
+		{
+			if (cancelled)
+			{
+				close();
+				return;
+			}
+			if (invalidRequest != null)
+			{
+				fail(invalidRequest);
+				return;
+			}
+			long demand = requested.get();
+			long emitted = 0;
+			while (emitted != demand)
+			{
+				if (cancelled)
+				{
+					close();
+					return;
+				}
+				E row;
+				try
+				{
+					if (rows == null)
+					{
+						entityManager = factory.createEntityManager();
+						stream = opener.apply(entityManager);
+						rows = stream.iterator();
+					}
+					if (!rows.hasNext())
+					{
+						close();
+						subscriber.onComplete();
+						return;
+					}
+					row = rows.next();
+					//Projections and constructed selections are not entities and cannot be detached
+					if (row instanceof BaseEntity)
+					{
+						entityManager.detach(row);
+					}
+				}
+				catch (RuntimeException e)
+				{
+					fail(e);
+					return;
+				}
+				subscriber.onNext(row);
+				emitted++;
+			}
+			if (demand != Long.MAX_VALUE)
+			{
+				requested.addAndGet(-emitted);
+			}
+		}
+
+		private void fail(Throwable error)
+		{
+			close();
+			subscriber.onError(error);
+		}
+
+		private void close()
+		{
+			terminated = true;
+			try
+			{
+				if (stream != null)
+				{
+					stream.close();
+				}
+			}
+			catch (RuntimeException e)
+			{
+				log.log(Level.FINE, "Unable to close the published cursor", e);
+			}
+			finally
+			{
+				stream = null;
+				rows = null;
+				if (entityManager != null && entityManager.isOpen())
+				{
+					entityManager.close();
+				}
+				entityManager = null;
+			}
+		}
+	}
+}
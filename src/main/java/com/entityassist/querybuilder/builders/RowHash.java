@@ -0,0 +1,211 @@
+package com.entityassist.querybuilder.builders;
+
+import com.entityassist.EntityAssistException;
+import com.entityassist.services.entities.IRootEntity;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Transient;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.entityassist.querybuilder.QueryBuilderCore.ACTIVE_FLAG_DATE_COLUMN_NAME;
+import static com.entityassist.querybuilder.QueryBuilderSCD.*;
+
+/**
+ * Computes a stable content hash over the readable columns of an entity.
+ * <p>
+ * The identifier, the SCD and Core bookkeeping columns and the row hash column itself are excluded,
+ * so two versions of the same row hash equal when only their history differs.
+ * Fields are visited by name and values are written in a canonical form - instants for offset date times,
+ * plain strings for decimals and identifiers for related entities - so the hash does not depend on field order, offsets or scale.
+ */
+public final class RowHash
+{
+	private static final char SEPARATOR = '\u0000';
+	private static final String NULL = "\u0001";
+	private static final Set<String> EXCLUDED = Set.of(EFFECTIVE_FROM_DATE_COLUMN_NAME, EFFECTIVE_TO_DATE_COLUMN_NAME,
+	                                                   WAREHOUSE_CREATED_DATE_COLUMN_NAME, WAREHOUSE_UPDATED_DATE_COLUMN_NAME,
+	                                                   ACTIVE_FLAG_DATE_COLUMN_NAME, ROW_HASH_COLUMN_NAME);
+	/**
+	 * The hashed fields of each entity class, in name order
+	 */
+	private static final Map<Class<?>, List<Field>> fields = new ConcurrentHashMap<>();
+
+	private RowHash()
+	{
+		//No config required
+	}
+
+	/**
+	 * Computes the content hash of the entity
+	 *
+	 * @param entity The entity
+	 * @return The url safe base 64 SHA-256 of the readable columns
+	 */
+	public static String of(IRootEntity<?, ?, ?> entity)
+	{
+		StringBuilder content = new StringBuilder(256);
+		for (Field field : getFields(entity))
+		{
+			content.append(field.getName())
+			       .append('=');
+			appendValue(content, read(entity, field));
+			content.append(SEPARATOR);
+		}
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-256")
+			                             .digest(content.toString()
+			                                            .getBytes(StandardCharsets.UTF_8));
+			return Base64.getUrlEncoder()
+			             .withoutPadding()
+			             .encodeToString(digest);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new EntityAssistException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * Computes the hash of the entity and writes it into its row hash field, if the entity declares one
+	 *
+	 * @param entity The entity
+	 * @return The hash
+	 */
+	public static String stamp(IRootEntity<?, ?, ?> entity)
+	{
+		String hash = of(entity);
+		Field hashField = getHashField(entity.getClass());
+		if (hashField != null)
+		{
+			try
+			{
+				hashField.set(entity, hash);
+			}
+			catch (IllegalAccessException e)
+			{
+				throw new EntityAssistException("Unable to write the row hash of " + entity.getClass()
+				                                                                          .getName(), e);
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns the hashed fields of the entity class, built from the entity's own column rules
+	 *
+	 * @param entity An entity of the class
+	 * @return The fields in name order
+	 */
+	static List<Field> getFields(IRootEntity<?, ?, ?> entity)
+	{
+		return fields.computeIfAbsent(entity.getClass(), type ->
+		{
+			List<Field> output = new ArrayList<>();
+			for (Field field : entity.getFields())
+			{
+				if (Modifier.isStatic(field.getModifiers())
+				    || Modifier.isTransient(field.getModifiers())
+				    || field.isAnnotationPresent(Transient.class)
+				    || field.isAnnotationPresent(Id.class)
+				    || field.isAnnotationPresent(EmbeddedId.class)
+				    || field.isAnnotationPresent(GeneratedValue.class)
+				    || EXCLUDED.contains(field.getName())
+				    || !entity.isColumnReadable(field)
+				    || !field.trySetAccessible())
+				{
+					continue;
+				}
+				output.add(field);
+			}
+			output.sort(Comparator.comparing(Field::getName)
+			                      .thenComparing(field -> field.getDeclaringClass()
+			                                                   .getName()));
+			return List.copyOf(output);
+		});
+	}
+
+	private static Field getHashField(Class<?> type)
+	{
+		for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass())
+		{
+			try
+			{
+				Field field = current.getDeclaredField(ROW_HASH_COLUMN_NAME);
+				if (field.getType() == String.class && field.trySetAccessible())
+				{
+					return field;
+				}
+				return null;
+			}
+			catch (NoSuchFieldException e)
+			{
+				//Check the super class
+			}
+		}
+		return null;
+	}
+
+	private static Object read(Object entity, Field field)
+	{
+		try
+		{
+			return field.get(entity);
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new EntityAssistException("Unable to read " + field.getName() + " of " + entity.getClass()
+			                                                                                 .getName(), e);
+		}
+	}
+
+	private static void appendValue(StringBuilder content, Object value)
+	{
+		if (value == null)
+		{
+			content.append(NULL);
+		}
+		else if (value instanceof IRootEntity)
+		{
+			content.append('#');
+			appendValue(content, ((IRootEntity<?, ?, ?>) value).getId());
+		}
+		else if (value instanceof OffsetDateTime)
+		{
+			content.append(((OffsetDateTime) value).toInstant());
+		}
+		else if (value instanceof ZonedDateTime)
+		{
+			content.append(((ZonedDateTime) value).toInstant());
+		}
+		else if (value instanceof BigDecimal)
+		{
+			content.append(((BigDecimal) value).stripTrailingZeros()
+			                                   .toPlainString());
+		}
+		else if (value instanceof Enum)
+		{
+			content.append(((Enum<?>) value).name());
+		}
+		else if (value instanceof byte[])
+		{
+			content.append(Base64.getEncoder()
+			                     .encodeToString((byte[]) value));
+		}
+		else
+		{
+			content.append(value);
+		}
+	}
+}
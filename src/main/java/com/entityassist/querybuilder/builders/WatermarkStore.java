@@ -0,0 +1,26 @@
+package com.entityassist.querybuilder.builders;
+
+/**
+ * Durable storage for the watermarks of change feeds.
+ * <p>
+ * A watermark is the opaque continuation token of the last row a feed consumer has processed.
+ * Implementations must make a saved watermark survive a restart before save returns.
+ */
+public interface WatermarkStore
+{
+	/**
+	 * Returns the saved watermark of a feed
+	 *
+	 * @param feed The feed name
+	 * @return The watermark, or null if the feed has not been acknowledged yet
+	 */
+	String load(String feed);
+
+	/**
+	 * Saves the watermark of a feed, replacing the previous one
+	 *
+	 * @param feed      The feed name
+	 * @param watermark The watermark to resume from
+	 */
+	void save(String feed, String watermark);
+}
@@ -4,11 +4,16 @@ import com.entityassist.EntityAssistException;
 import com.entityassist.enumerations.Operand;
 
 
+import jakarta.persistence.Parameter;
+import jakarta.persistence.Query;
 import jakarta.persistence.criteria.*;
 import jakarta.persistence.metamodel.Attribute;
 import jakarta.validation.constraints.NotNull;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.logging.Logger;
 
@@ -23,6 +28,15 @@ final class WhereExpression<X, Y>
 
 	private CriteriaBuilder criteriaBuilder;
 
+	/**
+	 * If the value must be rendered as bound parameters instead of literals
+	 */
+	private boolean parameterized;
+	/**
+	 * The parameters generated for the value, created once and reused when the root is switched
+	 */
+	private List<ParameterExpression<?>> parameters;
+
 	WhereExpression()
 	{
 	}
@@ -116,11 +130,19 @@ final class WhereExpression<X, Y>
 		{
 			case Equals:
 			{
+				if (isBound())
+				{
+					return Optional.of(getCriteriaBuilder().equal(expressionAttribute, getParameters().get(0)));
+				}
 				return Optional.of(getCriteriaBuilder().equal(expressionAttribute, value));
 			}
 
 			case NotEquals:
 			{
+				if (isBound())
+				{
+					return Optional.of(getCriteriaBuilder().notEqual(expressionAttribute, getParameters().get(0)));
+				}
 				return Optional.of(getCriteriaBuilder().notEqual(expressionAttribute, value));
 			}
 			default:
@@ -138,10 +160,18 @@ final class WhereExpression<X, Y>
 		{
 			case Like:
 			{
+				if (isBound())
+				{
+					return Optional.of(getCriteriaBuilder().like((Expression<String>) expressionAttribute, (Expression<String>) getParameters().get(0)));
+				}
 				return Optional.of(getCriteriaBuilder().like((Expression<String>) expressionAttribute, value.toString()));
 			}
 			case NotLike:
 			{
+				if (isBound())
+				{
+					return Optional.of(getCriteriaBuilder().notLike((Expression<String>) expressionAttribute, (Expression<String>) getParameters().get(0)));
+				}
 				return Optional.of(getCriteriaBuilder().notLike((Expression<String>) expressionAttribute, value.toString()));
 			}
 			default:
@@ -162,7 +192,7 @@ final class WhereExpression<X, Y>
 				Expression<Object> path;
 				path = (Expression<Object>) expressionAttribute;
 				CriteriaBuilder.In<Object> in = getCriteriaBuilder().in(path);
-				IFilterExpression.buildInObject(in, value);
+				buildIn(in, value);
 				return Optional.of(in);
 			}
 			case NotInList:
@@ -170,7 +200,7 @@ final class WhereExpression<X, Y>
 				Expression<Object> path = null;
 				path = (Expression<Object>) expressionAttribute;
 				CriteriaBuilder.In<Object> in = getCriteriaBuilder().in(path);
-				IFilterExpression.buildInObject(in, value);
+				buildIn(in, value);
 				return Optional.of(getCriteriaBuilder().not(in));
 			}
 			default:
@@ -189,20 +219,35 @@ final class WhereExpression<X, Y>
 		{
 			case LessThan:
 			{
+				if (isBound())
+				{
+					return Optional.of(getCriteriaBuilder().lessThan((Expression) expressionAttribute, (Expression) getParameters().get(0)));
+				}
 				return Optional.of(getCriteriaBuilder().lessThan((Expression) expressionAttribute, value));
 			}
 			case LessThanEqualTo:
 			{
+				if (isBound())
+				{
+					return Optional.of(getCriteriaBuilder().lessThanOrEqualTo((Expression) expressionAttribute, (Expression) getParameters().get(0)));
+				}
 				return Optional.of(getCriteriaBuilder().lessThanOrEqualTo((Expression) expressionAttribute, value));
 			}
 			case GreaterThan:
 			{
+				if (isBound())
+				{
+					return Optional.of(getCriteriaBuilder().greaterThan((Expression) expressionAttribute, (Expression) getParameters().get(0)));
+				}
 				return Optional.of(getCriteriaBuilder().greaterThan((Expression) expressionAttribute, value));
 
 			}
 			case GreaterThanEqualTo:
 			{
-
+				if (isBound())
+				{
+					return Optional.of(getCriteriaBuilder().greaterThanOrEqualTo((Expression) expressionAttribute, (Expression) getParameters().get(0)));
+				}
 				return Optional.of(getCriteriaBuilder().greaterThanOrEqualTo((Expression) expressionAttribute, value));
 			}
 			default:
@@ -212,6 +257,201 @@ final class WhereExpression<X, Y>
 		}
 	}
 
+	/**
+	 * Adds the list values to the in clause, as bound parameters when parameterized
+	 *
+	 * @param in    The in clause
+	 * @param value The list value
+	 */
+	private void buildIn(CriteriaBuilder.In<Object> in, Object value)
+	{
+		if (isBound())
+		{
+			for (ParameterExpression<?> parameter : getParameters())
+			{
+				in.value(parameter);
+			}
+		}
+		else
+		{
+			IFilterExpression.buildInObject(in, value);
+		}
+	}
+
+	/**
+	 * If this expression renders its value through bound parameters
+	 *
+	 * @return true when the value is bound at execution time
+	 */
+	boolean isBound()
+	{
+		return parameterized && !getBoundValues().isEmpty();
+	}
+
+	/**
+	 * The values that are bound for this expression, in parameter order
+	 *
+	 * @return The values, empty if nothing is bound
+	 */
+	List<Object> getBoundValues()
+	{
+		if (expressionValue == null || operand == null)
+		{
+			return Collections.emptyList();
+		}
+		switch (operand)
+		{
+			case Null:
+			case NotNull:
+			{
+				return Collections.emptyList();
+			}
+			case Like:
+			case NotLike:
+			{
+				return Collections.singletonList(expressionValue.toString());
+			}
+			case InList:
+			case NotInList:
+			{
+				List<Object> values = new ArrayList<Object>(IFilterExpression.toValueSet(expressionValue));
+				if (parameterized)
+				{
+					padToBucket(values);
+				}
+				return values;
+			}
+			default:
+			{
+				return Collections.singletonList(expressionValue);
+			}
+		}
+	}
+
+	/**
+	 * Pads a list of in values to the next power of two by repeating the last value.
+	 * <p>
+	 * Repeated values do not change the result of an in clause, and keep the number of distinct statement shapes to one per bucket
+	 *
+	 * @param values The values to pad
+	 */
+	static void padToBucket(List<Object> values)
+	{
+		if (values.isEmpty())
+		{
+			return;
+		}
+		int bucket = Integer.highestOneBit(values.size());
+		if (bucket < values.size())
+		{
+			bucket = bucket << 1;
+		}
+		Object last = values.get(values.size() - 1);
+		while (values.size() < bucket)
+		{
+			values.add(last);
+		}
+	}
+
+	/**
+	 * Returns the generated parameters for the value, creating them on first use
+	 *
+	 * @return The parameter expressions in bound value order
+	 */
+	List<ParameterExpression<?>> getParameters()
+	{
+		if (parameters == null)
+		{
+			List<ParameterExpression<?>> created = new ArrayList<>();
+			for (Object boundValue : getBoundValues())
+			{
+				created.add(getCriteriaBuilder().parameter(getParameterType(boundValue), QueryPlanCache.nextParameterName()));
+			}
+			parameters = created;
+		}
+		return parameters;
+	}
+
+	/**
+	 * Binds the current values onto the given query through the generated parameters
+	 *
+	 * @param query The query created from the criteria containing this expression
+	 */
+	@SuppressWarnings("unchecked")
+	void bind(Query query)
+	{
+		if (parameters == null)
+		{
+			return;
+		}
+		List<Object> values = getBoundValues();
+		for (int i = 0; i < parameters.size(); i++)
+		{
+			query.setParameter((Parameter<Object>) parameters.get(i), values.get(i));
+		}
+	}
+
+	/**
+	 * Appends the structure of this expression (never its values) to the given fingerprint
+	 *
+	 * @param fingerprint The fingerprint being built
+	 * @return false if this expression renders literals and cannot be shared between executions
+	 */
+	boolean appendFingerprint(StringBuilder fingerprint)
+	{
+		if (!parameterized && !getBoundValues().isEmpty())
+		{
+			return false;
+		}
+		if (!QueryFingerprint.appendPath(fingerprint, expressionAttribute))
+		{
+			return false;
+		}
+		fingerprint.append(' ')
+		           .append(operand)
+		           .append(' ')
+		           .append(expressionValue == null ? "null" : getBoundValues().size());
+		return true;
+	}
+
+	/**
+	 * Resolves the parameter type for a value, preferring the mapped attribute type
+	 *
+	 * @param boundValue The value to bind
+	 * @return The class to declare the parameter as
+	 */
+	private Class<?> getParameterType(Object boundValue)
+	{
+		Class<?> javaType = expressionAttribute == null ? null : expressionAttribute.getJavaType();
+		if (javaType != null && !javaType.isPrimitive() && javaType.isInstance(boundValue))
+		{
+			return javaType;
+		}
+		return boundValue.getClass();
+	}
+
+	/**
+	 * If the value must be rendered as bound parameters instead of literals
+	 *
+	 * @return if parameterized
+	 */
+	public boolean isParameterized()
+	{
+		return parameterized;
+	}
+
+	/**
+	 * Sets if the value must be rendered as bound parameters instead of literals
+	 *
+	 * @param parameterized if parameterized
+	 * @return This
+	 */
+	public WhereExpression setParameterized(boolean parameterized)
+	{
+		this.parameterized = parameterized;
+		return this;
+	}
+
 	/**
 	 * Returns the attribute associated
 	 *
@@ -257,6 +497,7 @@ final class WhereExpression<X, Y>
 	public WhereExpression setOperand(Operand operand)
 	{
 		this.operand = operand;
+		parameters = null;
 		return this;
 	}
 
@@ -291,6 +532,7 @@ final class WhereExpression<X, Y>
 	public WhereExpression setExpressionValue(Y expressionValue)
 	{
 		this.expressionValue = expressionValue;
+		parameters = null;
 		return this;
 	}
 
@@ -305,6 +547,7 @@ final class WhereExpression<X, Y>
 	public WhereExpression setExpressionValue(Collection<Y> expressionValue)
 	{
 		this.expressionValue = expressionValue;
+		parameters = null;
 		return this;
 	}
 
@@ -319,6 +562,7 @@ final class WhereExpression<X, Y>
 	public WhereExpression setExpressionValue(Y...expressionValue)
 	{
 		this.expressionValue = expressionValue;
+		parameters = null;
 		return this;
 	}
 }
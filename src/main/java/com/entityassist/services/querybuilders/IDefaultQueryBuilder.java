@@ -622,6 +622,70 @@ public interface IDefaultQueryBuilder<J extends IDefaultQueryBuilder<J, E, I>,
 	
 	J setCacheName(String cacheName, String cacheRegion);
 	
+	/**
+	 * If this builder binds its where values as parameters instead of literals, padding in lists to power-of-two sizes
+	 *
+	 * @return if parameterized
+	 */
+	boolean isParameterized();
+	
+	/**
+	 * Sets if this builder binds its where values as parameters instead of literals.
+	 * Set it before any where clauses are added
+	 *
+	 * @param parameterized if parameterized
+	 * @return This
+	 */
+	J setParameterized(boolean parameterized);
+	
+	/**
+	 * If this builder binds its values as parameters and executes through the compiled query plan cache
+	 *
+	 * @return if plan cached
+	 */
+	boolean isPlanCached();
+	
+	/**
+	 * Sets if this builder binds its values as parameters and executes through the compiled query plan cache.
+	 * Set it before any where clauses are added
+	 *
+	 * @param planCached if plan cached
+	 * @return This
+	 */
+	J setPlanCached(boolean planCached);
+	
+	/**
+	 * If the results of this builder are served from and stored in the query result cache
+	 *
+	 * @return if result cached
+	 */
+	boolean isResultCached();
+	
+	/**
+	 * Sets if the results of this builder are served from and stored in the query result cache.
+	 * Set it before any where clauses are added
+	 *
+	 * @param resultCached if result cached
+	 * @return This
+	 */
+	J setResultCached(boolean resultCached);
+	
+	/**
+	 * If concurrent identical executions of this builder share one database call
+	 *
+	 * @return if coalesced
+	 */
+	boolean isCoalesced();
+	
+	/**
+	 * Sets if concurrent identical executions of this builder share one database call.
+	 * Set it before any where clauses are added
+	 *
+	 * @param coalesced if coalesced
+	 * @return This
+	 */
+	J setCoalesced(boolean coalesced);
+	
 	/**
 	 * Adds an OR group to the filter expressions with the previous where statement
 	 *
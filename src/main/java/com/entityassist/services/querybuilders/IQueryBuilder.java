@@ -1,12 +1,25 @@
 package com.entityassist.services.querybuilders;
 
 import com.entityassist.exceptions.QueryBuilderException;
+import com.entityassist.querybuilder.builders.KeysetPage;
 import com.entityassist.services.entities.IBaseEntity;
 import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.metamodel.SingularAttribute;
 
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.stream.Stream;
 
 @SuppressWarnings({"unused", "UnusedReturnValue"})
@@ -135,6 +148,139 @@ public interface IQueryBuilder<J extends IQueryBuilder<J, E, I>,
      */
     int delete();
 
+    /**
+     * Assigns a value to an attribute for a bulk update
+     *
+     * @param attribute The attribute to update
+     * @param value     The value to set, may be null
+     * @param <Y>       The attribute type
+     * @return This
+     */
+    <Y> J set(SingularAttribute<? super E, Y> attribute, Y value);
+
+    /**
+     * Assigns an expression to an attribute for a bulk update, built against the root of each update statement
+     *
+     * @param attribute  The attribute to update
+     * @param expression Builds the expression to set the attribute to from the update root and the criteria builder
+     * @param <Y>        The attribute type
+     * @return This
+     */
+    <Y> J setExpression(SingularAttribute<? super E, Y> attribute, BiFunction<Root<E>, CriteriaBuilder, Expression<? extends Y>> expression);
+
+    /**
+     * Assigns a value to an attribute by name for a bulk update
+     *
+     * @param attributeName The attribute name
+     * @param value         The value to set, may be null
+     * @return This
+     */
+    J set(String attributeName, Object value);
+
+    /**
+     * Returns the values assigned by set
+     *
+     * @return The attribute values in the order they were set, expressions as their builder functions
+     */
+    Map<SingularAttribute<? super E, ?>, Object> getUpdateValues();
+
+    /**
+     * Executes a single bulk UPDATE of the set values for all rows matching the filters
+     *
+     * @return The number of rows updated
+     */
+    int executeUpdate();
+
+    /**
+     * Executes the bulk UPDATE in chunks of the next matching ids in id order, one statement per chunk
+     *
+     * @param chunkSize The number of matching rows per statement
+     * @return The total number of rows updated
+     */
+    long executeUpdate(long chunkSize);
+
+    /**
+     * Executes the bulk UPDATE in chunks of the next matching ids in id order, each chunk in its own transaction with a pause between chunks
+     *
+     * @param chunkSize The number of matching rows per statement
+     * @param pause     The time to wait between chunks, or null to run every chunk in the caller's transaction
+     * @return The total number of rows updated
+     */
+    long executeUpdate(long chunkSize, Duration pause);
+
+    /**
+     * Scans the matching rows in key range partitions read concurrently, merged into one stream as they arrive
+     *
+     * @param partitions The number of partitions
+     * @return The merged rows
+     */
+    Stream<E> getAllPartitioned(int partitions);
+
+    /**
+     * Runs get() asynchronously on its own entity manager
+     *
+     * @return The future optional result
+     */
+    CompletableFuture<Optional<E>> getAsync();
+
+    /**
+     * Publishes the rows to a reactive subscriber, reading only the requested rows from a server side cursor
+     *
+     * @return A publisher of the rows
+     */
+    Flow.Publisher<E> getPublisher();
+
+    /**
+     * Runs getAll() asynchronously on its own entity manager
+     *
+     * @return The future rows
+     */
+    CompletableFuture<List<E>> getAllAsync();
+
+    /**
+     * Runs getCount() asynchronously on its own entity manager
+     *
+     * @return The future count
+     */
+    CompletableFuture<Long> getCountAsync();
+
+    /**
+     * Runs delete() asynchronously on its own entity manager and transaction
+     *
+     * @return The future number of rows deleted
+     */
+    CompletableFuture<Integer> deleteAsync();
+
+    /**
+     * Runs truncate() asynchronously on its own entity manager and transaction
+     *
+     * @return The future number of rows deleted
+     */
+    CompletableFuture<Integer> truncateAsync();
+
+    /**
+     * The executor the async operations run on
+     *
+     * @return The builder's executor, or the shared default
+     */
+    Executor getAsyncExecutor();
+
+    /**
+     * Sets the executor the async operations of this builder run on
+     *
+     * @param asyncExecutor The executor, or null for the shared default
+     * @return This
+     */
+    J setAsyncExecutor(Executor asyncExecutor);
+
+    /**
+     * Scans the matching rows in key range partitions, handing each partition's rows to the consumer on that partition's own thread
+     *
+     * @param partitions The number of partitions
+     * @param consumer   Receives the partition number and a stream of its rows
+     */
+    void getAllPartitioned(int partitions, BiConsumer<Integer, Stream<E>> consumer);
+
     /**
      * Deletes the given entity through the entity manager
      *
@@ -151,6 +297,123 @@ public interface IQueryBuilder<J extends IQueryBuilder<J, E, I>,
      */
     int truncate();
 
+    /**
+     * Loads the results as read only entities, without snapshots or dirty checking
+     *
+     * @return This
+     */
+    J readOnly();
+
+    /**
+     * If the results are loaded as read only entities
+     *
+     * @return if read only
+     */
+    boolean isReadOnly();
+
+    /**
+     * Sets if the results are loaded as read only entities
+     *
+     * @param readOnly if read only
+     * @return This
+     */
+    J setReadOnly(boolean readOnly);
+
+    /**
+     * The JDBC fetch size applied to list and stream reads
+     *
+     * @return The fetch size or null for the driver default
+     */
+    Integer getFetchSize();
+
+    /**
+     * Sets the JDBC fetch size applied to list and stream reads
+     *
+     * @param fetchSize The fetch size or null for the driver default
+     * @return This
+     */
+    J setFetchSize(Integer fetchSize);
+
+    /**
+     * The number of rows after which getResultStream detaches the streamed entities
+     *
+     * @return The interval, 0 when streamed rows stay attached
+     */
+    int getStreamDetachInterval();
+
+    /**
+     * Sets the number of rows after which getResultStream detaches the streamed entities
+     *
+     * @param streamDetachInterval The interval, 0 to keep streamed rows attached
+     * @return This
+     */
+    J setStreamDetachInterval(int streamDetachInterval);
+
+    /**
+     * Streams the results in constant memory, with the given fetch size and detaching rows in batches of the same size
+     *
+     * @param resultType The result type
+     * @param fetchSize  The rows fetched per round trip and detached per batch
+     * @param <T>        The result type
+     * @return A sequential stream that must be closed if not fully consumed
+     */
+    <T> Stream<T> getBoundedStream(Class<T> resultType, int fetchSize);
+
+    /**
+     * Returns a page of rows using keyset (seek) pagination on the order bys and the identifier
+     *
+     * @param pageSize          The maximum rows in the page
+     * @param continuationToken The token from the previous page, or null for the first page
+     * @return The page with its continuation token
+     */
+    KeysetPage<E> getPage(int pageSize, String continuationToken);
+
+    /**
+     * Loads the entities for the given ids in chunks, keyed by id in the order the ids were given
+     *
+     * @param ids The ids to load
+     * @return The found entities by id
+     */
+    Map<I, E> getAllById(Collection<I> ids);
+
+    /**
+     * Loads the entities for the given ids in chunks, as a list in the order of the given ids
+     *
+     * @param ids The ids to load
+     * @return The found entities in id order
+     */
+    List<E> getAllByIdOrdered(Collection<I> ids);
+
+    /**
+     * The number of ids loaded per in clause by getAllById
+     *
+     * @return the chunk size
+     */
+    int getIdChunkSize();
+
+    /**
+     * Sets the number of ids loaded per in clause by getAllById
+     *
+     * @param idChunkSize the chunk size
+     * @return This
+     */
+    J setIdChunkSize(int idChunkSize);
+
+    /**
+     * The number of chunks getAllById loads concurrently
+     *
+     * @return the parallelism, 1 for sequential
+     */
+    int getIdChunkParallelism();
+
+    /**
+     * Sets the number of chunks getAllById loads concurrently, each on its own entity manager
+     *
+     * @param idChunkParallelism the parallelism, 1 for sequential
+     * @return This
+     */
+    J setIdChunkParallelism(int idChunkParallelism);
+
     /**
      * If must be detached from the entity manager
      *
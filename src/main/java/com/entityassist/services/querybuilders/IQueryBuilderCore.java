@@ -2,8 +2,14 @@ package com.entityassist.services.querybuilders;
 
 import com.entityassist.enumerations.ActiveFlag;
 import com.entityassist.services.entities.ICoreEntity;
+import jakarta.persistence.metamodel.SingularAttribute;
 
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 @SuppressWarnings("unused")
 public interface IQueryBuilderCore<J extends IQueryBuilderCore<J, E, I>,
@@ -25,6 +31,35 @@ public interface IQueryBuilderCore<J extends IQueryBuilderCore<J, E, I>,
 
     J inVisibleRange();
 
+    /**
+     * Filters to the given active flags, as a rank range when the entity stores rank encoded flags
+     *
+     * @param flags The flags to include
+     * @return This
+     */
+    J inActiveFlagRange(Set<ActiveFlag> flags);
+
+    /**
+     * Moves the matching rows unchanged for longer than the age from one flag to another in chunked set based updates
+     *
+     * @param from      The flag of the rows to move
+     * @param to        The flag to move them to
+     * @param age       How long a row must have been unchanged
+     * @param chunkSize The number of rows moved per statement
+     * @param pause     The time to wait between chunks, or null to run in the caller's transaction
+     * @return The number of rows moved
+     */
+    long advanceActiveFlag(ActiveFlag from, ActiveFlag to, Duration age, long chunkSize, Duration pause);
+
+    /**
+     * Returns the current version of a business key, served from the current version near cache when possible
+     *
+     * @param businessKey The attribute identifying the entity across its versions
+     * @param value       The business key value
+     * @return A detached copy of the current version, if there is one
+     */
+    Optional<E> findCurrent(SingularAttribute<? super E, ?> businessKey, Object value);
+
     /**
      * Updates the current record with the given active flag type
      * uses the merge
@@ -43,6 +78,28 @@ public interface IQueryBuilderCore<J extends IQueryBuilderCore<J, E, I>,
      */
     E archive(E entity);
 
+    /**
+     * Marks every current record matching the filters as deleted in one bulk update, leaving historical versions as they are
+     *
+     * @return The number of rows updated
+     */
+    int softDelete();
+
+    /**
+     * Marks every current record matching the filters with the given active flag type in one bulk update, leaving historical versions as they are
+     *
+     * @param newActiveFlagType The new flag type to apply
+     * @return The number of rows updated
+     */
+    int softDelete(ActiveFlag newActiveFlagType);
+
+    /**
+     * Marks every current record matching the filters as archived in one bulk update, leaving historical versions as they are
+     *
+     * @return The number of rows updated
+     */
+    int archiveMatching();
+
     /**
      * Marks the given entity as the given status, with the effective to date and warehouse last updated as now
      * Merges the entity, then detaches,
@@ -54,4 +111,24 @@ public interface IQueryBuilderCore<J extends IQueryBuilderCore<J, E, I>,
      * @return The updated entity
      */
     E closeAndReturnNewlyUpdate(E entity, ActiveFlag status);
+
+    /**
+     * Versions a batch of changed entities, closing all current versions in set based updates
+     * then inserting the new versions with JDBC batching, stopping at the first failed insert batch
+     *
+     * @param entities The changed entities, with the ids of their current versions
+     * @param status   The status of the closed versions
+     * @return The new versions with their generated ids
+     * @throws com.entityassist.EntityAssistException when an id is not a current version or an insert batch fails, the caller must roll back
+     */
+    List<E> closeAndReturnNewlyUpdate(Collection<E> entities, ActiveFlag status);
+
+    /**
+     * Merges an incoming snapshot into the table, versioning only the rows whose content hash changed
+     *
+     * @param incoming The incoming snapshot
+     * @param status   The status of the closed versions
+     * @return The written entities, versioned rows first then inserted rows
+     */
+    List<E> mergeSnapshot(Collection<E> incoming, ActiveFlag status);
 }
@@ -1,6 +1,9 @@
 package com.entityassist.services.querybuilders;
 
+import com.entityassist.querybuilder.builders.EntityAttributes;
+import com.entityassist.querybuilder.builders.PersistReport;
 import com.entityassist.services.entities.IRootEntity;
+import com.entityassist.validation.ValidationReport;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaDelete;
@@ -10,7 +13,9 @@ import jakarta.persistence.metamodel.Attribute;
 
 import java.io.Serializable;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @SuppressWarnings({"unused", "UnusedReturnValue"})
 public interface IQueryBuilderRoot<J extends IQueryBuilderRoot<J, E, I>,
@@ -93,6 +98,45 @@ public interface IQueryBuilderRoot<J extends IQueryBuilderRoot<J, E, I>,
      * @return true if must still create
      */
     boolean onCreate(E entity);
+
+    /**
+     * Persists a large number of entities in batches, flushing and detaching after each batch and stopping at the first failed batch
+     *
+     * @param entities The entities to persist
+     * @return The per batch report
+     */
+    PersistReport persistAll(Iterable<E> entities);
+
+    /**
+     * Persists a large number of entities in batches, flushing and detaching after each batch and stopping at the first failed batch
+     *
+     * @param entities The entities to persist
+     * @return The per batch report
+     */
+    PersistReport persistAll(Stream<E> entities);
+
+    /**
+     * Performed on a batch of a persistAll, returning the entities that must still be created
+     *
+     * @param entities The batch
+     * @return The entities to persist
+     */
+    List<E> onCreateAll(List<E> entities);
+
+    /**
+     * The number of entities written per flush and JDBC batch by persistAll
+     *
+     * @return the batch size
+     */
+    int getPersistBatchSize();
+
+    /**
+     * Sets the number of entities written per flush and JDBC batch by persistAll
+     *
+     * @param persistBatchSize the batch size
+     * @return This
+     */
+    J setPersistBatchSize(int persistBatchSize);
     
     /**
      * If this ID is generated from the source and which form to use
@@ -141,13 +185,28 @@ public interface IQueryBuilderRoot<J extends IQueryBuilderRoot<J, E, I>,
     List<String> validateEntity(E entity);
 
     /**
-     * Returns the given attribute for a field name by reflectively accesing the static class
+     * Validates a batch of entities with the shared validator, in parallel for large batches
+     *
+     * @param entities The entities to validate
+     * @return The report of the invalid entities and their violations
+     */
+    ValidationReport<E> validateAll(Collection<E> entities);
+
+    /**
+     * Returns the given attribute for a field name from the attribute registry
      *
      * @param fieldName the field to get an attribute for
      * @return the attribute or null
      */
     <X, Y> Attribute<X, Y> getAttribute(String fieldName);
 
+    /**
+     * Returns the resolved metamodel attributes of the entity class
+     *
+     * @return the registry entry for the entity class
+     */
+    EntityAttributes getEntityAttributes();
+
     /**
      * Method getSelectIdentityString returns the selectIdentityString of this QueryBuilderBase object.
      *
@@ -234,6 +293,14 @@ public interface IQueryBuilderRoot<J extends IQueryBuilderRoot<J, E, I>,
 
     J setCriteriaQuery(CriteriaDelete<E> criteriaDelete);
 
+    /**
+     * Sets the criteria query for this instance
+     *
+     * @param criteriaQuery The select statement to build onto
+     * @return This
+     */
+    J setCriteriaQuery(CriteriaQuery<?> criteriaQuery);
+
 
     /**
      * Gets the criteria update object
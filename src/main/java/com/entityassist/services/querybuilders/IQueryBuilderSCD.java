@@ -1,5 +1,8 @@
 package com.entityassist.services.querybuilders;
 
+import com.entityassist.querybuilder.builders.AsOfSnapshot;
+import com.entityassist.querybuilder.builders.ChangeBatch;
+import com.entityassist.querybuilder.builders.WatermarkStore;
 import com.entityassist.services.entities.ISCDEntity;
 import com.guicedee.guicedinjection.pairing.Pair;
 import jakarta.persistence.*;
@@ -12,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -62,6 +66,41 @@ public interface IQueryBuilderSCD<J extends IQueryBuilderSCD<J, E, I>,
      */
     J inDateRange(LocalDateTime fromDate, LocalDateTime toDate);
 
+    /**
+     * Returns the versions valid at the given time that match this builder, materialized as a reusable snapshot
+     *
+     * @param asOf The point in time
+     * @return The snapshot of detached versions
+     */
+    AsOfSnapshot<E> getSnapshot(LocalDateTime asOf);
+
+    /**
+     * Where the warehouse last updated timestamp is on or after the given time
+     *
+     * @param time The earliest update to include
+     * @return This
+     */
+    J updatedSince(LocalDateTime time);
+
+    /**
+     * Returns the next batch of rows changed after the watermark, ordered by last updated timestamp and identifier
+     *
+     * @param watermark The watermark of the previous batch, or null to start from the beginning
+     * @param batchSize The maximum rows in the batch
+     * @return The batch with the watermark to continue from
+     */
+    ChangeBatch<E> getChanges(String watermark, int batchSize);
+
+    /**
+     * Returns the next batch of a named feed, resuming from the watermark saved in the store
+     *
+     * @param feed      The feed name
+     * @param store     The durable watermark store
+     * @param batchSize The maximum rows in the batch
+     * @return The batch, acknowledge it once processed
+     */
+    ChangeBatch<E> getChanges(String feed, WatermarkStore store, int batchSize);
+
     /**
      * Performs any required logic between the original and new entities during an update operation
      * which is a delete and marking of the record as historical, and the insert of a new record which is updated
@@ -73,5 +112,20 @@ public interface IQueryBuilderSCD<J extends IQueryBuilderSCD<J, E, I>,
      * @return currently always true @TODO
      */
     boolean onDeleteUpdate(E originalEntity, E newEntity);
-    
+
+    /**
+     * Returns the content hashes of the current versions with the given ids
+     *
+     * @param ids The ids to look up
+     * @return The stored hash by id, ids that are missing or only closed versions are absent
+     */
+    Map<I, String> getCurrentRowHashes(Collection<I> ids);
+
+    /**
+     * Returns the incoming entities whose content differs from their current version, including those without a current version
+     *
+     * @param incoming The incoming snapshot
+     * @return The new and changed entities in snapshot order
+     */
+    List<E> getChanged(Collection<E> incoming);
 }
@@ -0,0 +1,127 @@
+package com.entityassist.validation;
+
+import com.google.inject.Singleton;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The shared bean validator for entities.
+ * <p>
+ * Bootstrapping a validator factory is expensive, so a single factory is built on first use and kept for the life of the injector,
+ * then closed by EntityValidatorPreDestroy when the injector is destroyed.
+ * Validators are thread safe, so the same instance serves every builder and batch validations can run in parallel.
+ * Obtain it with IGuiceContext.get(EntityValidator.class), or bind a subclass to supply a differently configured factory.
+ */
+@Singleton
+@SuppressWarnings("unused")
+public class EntityValidator
+		implements AutoCloseable
+{
+	/**
+	 * Batches of at least this size are validated in parallel
+	 */
+	public static int parallelThreshold = 256;
+
+	private volatile ValidatorFactory validatorFactory;
+	private volatile Validator validator;
+
+	/**
+	 * The validator factory, built on first use
+	 *
+	 * @return The factory
+	 */
+	protected ValidatorFactory buildValidatorFactory()
+	{
+		return Validation.buildDefaultValidatorFactory();
+	}
+
+	/**
+	 * The shared validator
+	 *
+	 * @return The validator
+	 */
+	public Validator getValidator()
+	{
+		Validator current = validator;
+		if (current == null)
+		{
+			synchronized (this)
+			{
+				current = validator;
+				if (current == null)
+				{
+					validatorFactory = buildValidatorFactory();
+					current = validatorFactory.getValidator();
+					validator = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Validates a single entity
+	 *
+	 * @param entity The entity
+	 * @return The violations, empty if valid
+	 */
+	public List<ValidationViolation> validate(Object entity)
+	{
+		Set<ConstraintViolation<Object>> constraintViolations = getValidator().validate(entity);
+		if (constraintViolations.isEmpty())
+		{
+			return Collections.emptyList();
+		}
+		List<ValidationViolation> violations = new ArrayList<>(constraintViolations.size());
+		for (ConstraintViolation<?> constraintViolation : constraintViolations)
+		{
+			violations.add(new ValidationViolation(constraintViolation));
+		}
+		return violations;
+	}
+
+	/**
+	 * Validates a batch of entities, in parallel for batches of at least the parallel threshold
+	 *
+	 * @param entities The entities
+	 * @param <E>      The entity type
+	 * @return The report of all invalid entities, in batch order
+	 */
+	public <E> ValidationReport<E> validateAll(Collection<E> entities)
+	{
+		List<E> batch = entities instanceof List ? (List<E>) entities : new ArrayList<>(entities);
+		IntStream indexes = IntStream.range(0, batch.size());
+		if (batch.size() >= parallelThreshold)
+		{
+			indexes = indexes.parallel();
+		}
+		List<ValidationReport.Entry<E>> invalid = indexes.mapToObj(index -> {
+			                                                 E entity = batch.get(index);
+			                                                 List<ValidationViolation> violations = validate(entity);
+			                                                 return violations.isEmpty() ? null : new ValidationReport.Entry<>(index, entity, violations);
+		                                                 })
+		                                                 .filter(Objects::nonNull)
+		                                                 .collect(Collectors.toList());
+		return new ValidationReport<>(batch.size(), invalid);
+	}
+
+	/**
+	 * Closes the validator factory, called on injector shutdown. The next use builds a new one.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		if (validatorFactory != null)
+		{
+			validatorFactory.close();
+		}
+		validatorFactory = null;
+		validator = null;
+	}
+}
@@ -0,0 +1,18 @@
+package com.entityassist.validation;
+
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.interfaces.IGuicePreDestroy;
+
+/**
+ * Closes the shared validator factory when the injector is destroyed
+ */
+public class EntityValidatorPreDestroy
+		implements IGuicePreDestroy<EntityValidatorPreDestroy>
+{
+	@Override
+	public void onDestroy()
+	{
+		IGuiceContext.get(EntityValidator.class)
+		             .close();
+	}
+}
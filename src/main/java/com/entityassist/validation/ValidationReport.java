@@ -0,0 +1,112 @@
+package com.entityassist.validation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of validating a batch of entities
+ *
+ * @param <E> The entity type
+ */
+@SuppressWarnings("unused")
+public final class ValidationReport<E>
+{
+	/**
+	 * The number of entities validated
+	 */
+	private final int validated;
+	/**
+	 * The invalid entities in batch order
+	 */
+	private final List<Entry<E>> invalid;
+
+	ValidationReport(int validated, List<Entry<E>> invalid)
+	{
+		this.validated = validated;
+		this.invalid = invalid;
+	}
+
+	/**
+	 * If every entity in the batch is valid
+	 *
+	 * @return if valid
+	 */
+	public boolean isValid()
+	{
+		return invalid.isEmpty();
+	}
+
+	/**
+	 * The number of entities validated
+	 *
+	 * @return the batch size
+	 */
+	public int getValidated()
+	{
+		return validated;
+	}
+
+	/**
+	 * The invalid entities in batch order
+	 *
+	 * @return the entries, empty if valid
+	 */
+	public List<Entry<E>> getInvalid()
+	{
+		return invalid;
+	}
+
+	/**
+	 * The invalid entities
+	 *
+	 * @return the entities in batch order
+	 */
+	public List<E> getInvalidEntities()
+	{
+		List<E> entities = new ArrayList<>(invalid.size());
+		for (Entry<E> entry : invalid)
+		{
+			entities.add(entry.getEntity());
+		}
+		return entities;
+	}
+
+	/**
+	 * An invalid entity of the batch with its violations
+	 *
+	 * @param <E> The entity type
+	 */
+	public static final class Entry<E>
+	{
+		private final int index;
+		private final E entity;
+		private final List<ValidationViolation> violations;
+
+		Entry(int index, E entity, List<ValidationViolation> violations)
+		{
+			this.index = index;
+			this.entity = entity;
+			this.violations = violations;
+		}
+
+		/**
+		 * The position of the entity in the batch
+		 *
+		 * @return the index
+		 */
+		public int getIndex()
+		{
+			return index;
+		}
+
+		public E getEntity()
+		{
+			return entity;
+		}
+
+		public List<ValidationViolation> getViolations()
+		{
+			return violations;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.entityassist.validation;
+
+import jakarta.validation.ConstraintViolation;
+
+/**
+ * A single constraint violation of an entity
+ */
+@SuppressWarnings("unused")
+public final class ValidationViolation
+{
+	/**
+	 * The validated class
+	 */
+	private final Class<?> entityClass;
+	/**
+	 * The path to the invalid property
+	 */
+	private final String propertyPath;
+	/**
+	 * The interpolated message
+	 */
+	private final String message;
+	/**
+	 * The message template, usable as a stable error key
+	 */
+	private final String messageTemplate;
+	/**
+	 * The constraint annotation that failed
+	 */
+	private final String constraint;
+	/**
+	 * The value that failed validation
+	 */
+	private final Object invalidValue;
+
+	ValidationViolation(ConstraintViolation<?> violation)
+	{
+		this.entityClass = violation.getRootBeanClass();
+		this.propertyPath = String.valueOf(violation.getPropertyPath());
+		this.message = violation.getMessage();
+		this.messageTemplate = violation.getMessageTemplate();
+		this.constraint = violation.getConstraintDescriptor() == null || violation.getConstraintDescriptor()
+		                                                                          .getAnnotation() == null
+		                  ? null
+		                  : violation.getConstraintDescriptor()
+		                             .getAnnotation()
+		                             .annotationType()
+		                             .getSimpleName();
+		this.invalidValue = violation.getInvalidValue();
+	}
+
+	public Class<?> getEntityClass()
+	{
+		return entityClass;
+	}
+
+	public String getPropertyPath()
+	{
+		return propertyPath;
+	}
+
+	public String getMessage()
+	{
+		return message;
+	}
+
+	public String getMessageTemplate()
+	{
+		return messageTemplate;
+	}
+
+	public String getConstraint()
+	{
+		return constraint;
+	}
+
+	public Object getInvalidValue()
+	{
+		return invalidValue;
+	}
+
+	/**
+	 * The violation as Class.property message
+	 *
+	 * @return The readable violation
+	 */
+	@Override
+	public String toString()
+	{
+		return entityClass.getSimpleName() + "." + propertyPath + " " + message;
+	}
+}
@@ -8,6 +8,7 @@ module com.entityassist {
     exports com.entityassist.querybuilder;
     exports com.entityassist.exceptions;
     exports com.entityassist.querybuilder.builders;
+    exports com.entityassist.validation;
 
     requires transitive com.guicedee.guicedpersistence;
     requires transitive com.guicedee.guicedinjection;
@@ -19,5 +20,8 @@ module com.entityassist {
     requires jakarta.xml.bind;
     requires static lombok;
 
+    provides com.guicedee.guicedinjection.interfaces.IGuicePreDestroy with com.entityassist.validation.EntityValidatorPreDestroy;
+
     opens com.entityassist to org.hibernate.orm.core, com.fasterxml.jackson.databind, com.google.guice, org.hibernate.validator;
+    opens com.entityassist.validation to com.google.guice;
 }
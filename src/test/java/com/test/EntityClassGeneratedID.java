@@ -2,6 +2,7 @@ package com.test;
 
 import com.entityassist.CoreEntity;
 import jakarta.persistence.*;
+import jakarta.validation.constraints.Size;
 
 @Entity
 @Table
@@ -22,10 +23,39 @@ public class EntityClassGeneratedID
 	@JoinColumn(name = "entityClassOne")
 	private EntityClass entityClassOne;
 
+	@Column(name = "code")
+	@Size(max = 20)
+	private String code;
+
+	@Column(name = "counter")
+	private Integer counter;
+
 	public EntityClassGeneratedID()
 	{
 	}
 
+	public String getCode()
+	{
+		return code;
+	}
+
+	public EntityClassGeneratedID setCode(String code)
+	{
+		this.code = code;
+		return this;
+	}
+
+	public Integer getCounter()
+	{
+		return counter;
+	}
+
+	public EntityClassGeneratedID setCounter(Integer counter)
+	{
+		this.counter = counter;
+		return this;
+	}
+
 	public EntityClassTwo getEntityClass()
 	{
 		return entityClass;
@@ -0,0 +1,44 @@
+package com.test;
+
+import com.entityassist.CoreEntity;
+import com.entityassist.converters.ActiveFlagRankConverter;
+import jakarta.persistence.*;
+
+@Entity
+@Table
+@Convert(attributeName = "activeFlag",
+		converter = ActiveFlagRankConverter.class)
+@AttributeOverride(name = "activeFlag",
+		column = @Column(name = "ActiveFlagRank",
+				nullable = false))
+public class EntityClassRankFlag
+		extends CoreEntity<EntityClassRankFlag, EntityClassRankFlagBuilder, Long>
+{
+	@Id
+	@Column(name = "id")
+	private Long id;
+
+	public EntityClassRankFlag()
+	{
+	}
+
+	@Override
+	public String toString()
+	{
+		return "EntityRankFlag : " + getId();
+	}
+
+	@Override
+	public Long getId()
+	{
+		return id;
+	}
+
+	@Override
+	public EntityClassRankFlag setId(Long id)
+	{
+		this.id = id;
+		return this;
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.test;
+
+import com.entityassist.querybuilder.QueryBuilderCore;
+import com.google.inject.Key;
+import com.guicedee.client.IGuiceContext;
+import jakarta.persistence.EntityManager;
+
+public class EntityClassRankFlagBuilder
+        extends QueryBuilderCore<EntityClassRankFlagBuilder, EntityClassRankFlag, Long>
+{
+    public EntityClassRankFlagBuilder()
+    {
+    }
+
+    @Override
+    public EntityManager getEntityManager()
+    {
+        return IGuiceContext.get(Key.get(EntityManager.class));
+    }
+
+    @Override
+    public boolean onCreate(EntityClassRankFlag entity)
+    {
+        return true;
+    }
+
+    @Override
+    public boolean isIdGenerated()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean onUpdate(EntityClassRankFlag entity)
+    {
+        return true;
+    }
+}
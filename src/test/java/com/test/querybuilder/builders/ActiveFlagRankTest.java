@@ -0,0 +1,189 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.converters.ActiveFlagRankConverter;
+import com.entityassist.converters.ActiveFlagRankMigration;
+import com.entityassist.enumerations.ActiveFlag;
+import com.entityassist.enumerations.Operand;
+import com.google.inject.persist.Transactional;
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClass;
+import com.test.EntityClassRankFlag;
+import com.test.EntityClassRankFlag_;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ActiveFlagRankTest
+{
+    private static final Logger log = Logger.getLogger(ActiveFlagRankTest.class.getName());
+
+    @Test
+    public void testRangesAreContiguousRanks()
+    {
+        for (Set<ActiveFlag> range : List.of(ActiveFlag.getActiveRangeAndUp(), ActiveFlag.getActiveRange(), ActiveFlag.getVisibleRangeAndUp(),
+                                             ActiveFlag.getVisibleRange(), ActiveFlag.getRemovedRangeAndUp(), ActiveFlag.getRemovedRange(),
+                                             ActiveFlag.getArchivedRange(), ActiveFlag.getHighlightedRangeAndUp(), ActiveFlag.getHighlightedRange(),
+                                             ActiveFlag.getPermanentRange()))
+        {
+            int lowest = range.stream()
+                              .mapToInt(ActiveFlag::getRank)
+                              .min()
+                              .orElseThrow();
+            int highest = range.stream()
+                               .mapToInt(ActiveFlag::getRank)
+                               .max()
+                               .orElseThrow();
+            Set<ActiveFlag> between = Arrays.stream(ActiveFlag.values())
+                                            .filter(flag -> flag.getRank() >= lowest && flag.getRank() <= highest)
+                                            .collect(Collectors.toSet());
+            assertEquals(range, between);
+        }
+    }
+
+    @Test
+    public void testConverterRoundTrip()
+    {
+        ActiveFlagRankConverter converter = new ActiveFlagRankConverter();
+        for (ActiveFlag flag : ActiveFlag.values())
+        {
+            assertEquals(flag, converter.convertToEntityAttribute(converter.convertToDatabaseColumn(flag)));
+        }
+        assertFalse(ActiveFlagRankConverter.isApplied(EntityClass.class));
+        assertTrue(ActiveFlagRankConverter.isApplied(EntityClassRankFlag.class));
+    }
+
+    /**
+     * Every range read through the rank column returns the same rows as the in list over the same flags
+     */
+    @Test
+    public void testRankRangeMatchesInList()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+        IGuiceContext.get(ActiveFlagRankTest.class)
+                     .seedEveryFlag();
+        for (Set<ActiveFlag> range : List.of(ActiveFlag.getActiveRange(), ActiveFlag.getVisibleRangeAndUp(), ActiveFlag.getRemovedRange(),
+                                             ActiveFlag.getArchivedRange(), ActiveFlag.getHighlightedRangeAndUp(), Set.of(ActiveFlag.Errored)))
+        {
+            Set<Long> ranged = ids(new EntityClassRankFlag().builder()
+                                                            .inActiveFlagRange(range)
+                                                            .getAll());
+            Set<Long> listed = ids(new EntityClassRankFlag().builder()
+                                                            .where(EntityClassRankFlag_.activeFlag, Operand.InList, range)
+                                                            .getAll());
+            assertFalse(ranged.isEmpty());
+            assertEquals(listed, ranged, "Range " + range);
+        }
+    }
+
+    private static Set<Long> ids(List<EntityClassRankFlag> rows)
+    {
+        return rows.stream()
+                   .map(EntityClassRankFlag::getId)
+                   .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    @Transactional()
+    public void seedEveryFlag()
+    {
+        if (new EntityClassRankFlag().builder()
+                                     .getCount() > 0)
+        {
+            return;
+        }
+        long id = 1;
+        for (ActiveFlag flag : ActiveFlag.values())
+        {
+            new EntityClassRankFlag().setId(id++)
+                                     .setActiveFlag(flag)
+                                     .persist();
+        }
+    }
+
+    /**
+     * Compares the H2 plans of the visible range as an in list over names and as a range over ranks
+     */
+    @Test
+    public void testRangePlanUsesRankIndex()
+    {
+        Session session = new EntityClass().builder()
+                                           .getEntityManager()
+                                           .unwrap(Session.class);
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement())
+            {
+                statement.execute("DROP TABLE IF EXISTS FlagPlan");
+                statement.execute("CREATE TABLE FlagPlan (id BIGINT PRIMARY KEY, ActiveFlag VARCHAR(50) NOT NULL)");
+                statement.execute("CREATE INDEX IDX_FlagPlan_ActiveFlag ON FlagPlan (ActiveFlag)");
+            }
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO FlagPlan (id, ActiveFlag) VALUES (?, ?)"))
+            {
+                ActiveFlag[] flags = ActiveFlag.values();
+                for (int i = 0; i < 20_000; i++)
+                {
+                    insert.setLong(1, i);
+                    insert.setString(2, flags[i % flags.length].name());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            try (Statement statement = connection.createStatement())
+            {
+                statement.execute(ActiveFlagRankMigration.addColumnStatement("FlagPlan", "ActiveFlagRank"));
+                statement.execute(ActiveFlagRankMigration.updateStatement("FlagPlan", "ActiveFlag", "ActiveFlagRank"));
+                statement.execute(ActiveFlagRankMigration.createIndexStatement("FlagPlan", "ActiveFlagRank"));
+
+                String names = ActiveFlag.getVisibleRangeAndUp()
+                                         .stream()
+                                         .map(flag -> "'" + flag.name() + "'")
+                                         .collect(Collectors.joining(","));
+                String inList = "SELECT COUNT(*) FROM FlagPlan WHERE ActiveFlag IN (" + names + ")";
+                String range = "SELECT COUNT(*) FROM FlagPlan WHERE ActiveFlagRank >= " + ActiveFlag.Archived.getRank();
+
+                String rangePlan = explain(statement, range);
+                log.fine("In list plan : " + explain(statement, inList));
+                log.fine("Range plan : " + rangePlan);
+                assertTrue(rangePlan.toUpperCase()
+                                    .contains("IDX_FLAGPLAN_ACTIVEFLAGRANK"));
+                assertEquals(count(statement, inList), count(statement, range));
+                statement.execute("DROP TABLE FlagPlan");
+            }
+        });
+    }
+
+    private static String explain(Statement statement, String sql) throws SQLException
+    {
+        try (ResultSet plan = statement.executeQuery("EXPLAIN " + sql))
+        {
+            plan.next();
+            return plan.getString(1)
+                       .replace('\n', ' ');
+        }
+    }
+
+    private static long count(Statement statement, String sql) throws SQLException
+    {
+        try (ResultSet result = statement.executeQuery(sql))
+        {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.enumerations.ActiveFlag;
+import com.entityassist.enumerations.Operand;
+import com.entityassist.querybuilder.ActiveFlagTiering;
+import com.google.inject.persist.Transactional;
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClass;
+import com.test.EntityClassGeneratedID;
+import com.test.EntityClassGeneratedID_;
+import com.test.EntityClassTwo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ActiveFlagTieringTest
+{
+    @Test
+    public void testDefaultTiers()
+    {
+        ActiveFlagTiering tiering = new ActiveFlagTiering();
+        assertEquals(3, tiering.getTiers()
+                               .size());
+        assertEquals(Duration.ofDays(60), tiering.getTiers()
+                                                 .get(ActiveFlag.MidTermStorage)
+                                                 .getAge());
+        assertThrows(UnsupportedOperationException.class, () -> tiering.setTier(ActiveFlag.Archived, ActiveFlag.Archived, Duration.ZERO));
+    }
+
+    @Test
+    public void testRunOnEmptyTables()
+    {
+        ActiveFlagTiering tiering = new ActiveFlagTiering().register(() -> new EntityClass().builder())
+                                                           .register(() -> new EntityClassTwo().builder())
+                                                           .setChunkSize(100)
+                                                           .setPause(Duration.ofMillis(1));
+        assertEquals(0, tiering.runOnce());
+        assertEquals(1, tiering.getRuns());
+        assertEquals(0, tiering.getFailures());
+        assertFalse(tiering.isStarted());
+    }
+
+    @Test
+    public void testOnlyRowsOlderThanTheAgeMove()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+        List<Long> old = new ArrayList<>();
+        List<Long> recent = new ArrayList<>();
+        ActiveFlagTieringTest seeder = IGuiceContext.get(ActiveFlagTieringTest.class);
+        //Interleaved, so the chunks span ids of recent rows that must be left alone
+        for (int i = 0; i < 3; i++)
+        {
+            old.add(seeder.seed(Duration.ofDays(20)));
+            recent.add(seeder.seed(Duration.ZERO));
+        }
+        long moved = new EntityClassGeneratedID().builder()
+                                                 .advanceActiveFlag(ActiveFlag.Errored, ActiveFlag.Resolved, Duration.ofDays(10), 2, Duration.ofMillis(1));
+        assertEquals(3, moved);
+        assertEquals(3L, count(old, ActiveFlag.Resolved));
+        assertEquals(3L, count(recent, ActiveFlag.Errored));
+        assertEquals(0L, count(recent, ActiveFlag.Resolved));
+    }
+
+    private long count(List<Long> ids, ActiveFlag flag)
+    {
+        return new EntityClassGeneratedID().builder()
+                                           .where(EntityClassGeneratedID_.id, Operand.InList, ids)
+                                           .where(EntityClassGeneratedID_.activeFlag, Operand.Equals, flag)
+                                           .getCount();
+    }
+
+    @Transactional()
+    public Long seed(Duration age)
+    {
+        EntityClassGeneratedID entity = new EntityClassGeneratedID();
+        entity.setActiveFlag(ActiveFlag.Errored);
+        entity.setWarehouseLastUpdatedTimestamp(OffsetDateTime.now(ZoneOffset.UTC)
+                                                              .minus(age));
+        entity.persist();
+        return entity.getId();
+    }
+}
@@ -0,0 +1,129 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.querybuilder.builders.AsOfSnapshot;
+import com.entityassist.querybuilder.builders.AsOfSnapshotCache;
+import com.google.inject.persist.Transactional;
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClassGeneratedID;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class AsOfSnapshotCacheTest
+{
+    @BeforeAll
+    public void configUp()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+        AsOfSnapshotCache.setEnabled(true);
+    }
+
+    @BeforeEach
+    public void reset()
+    {
+        AsOfSnapshotCache.clear();
+        AsOfSnapshotCache.setMaximumRows(100_000);
+        AsOfSnapshotCache.setTimeToLive(Duration.ofMinutes(5));
+    }
+
+    @AfterAll
+    public void configDown()
+    {
+        AsOfSnapshotCache.setEnabled(false);
+        AsOfSnapshotCache.setMaximumRows(100_000);
+        AsOfSnapshotCache.setTimeToLive(Duration.ofMinutes(5));
+    }
+
+    @Test
+    public void testSameSessionIsServedFromCache()
+    {
+        IGuiceContext.get(AsOfSnapshotCacheTest.class)
+                     .seed();
+        LocalDateTime asOf = LocalDateTime.now()
+                                          .plusDays(1);
+        AsOfSnapshot<EntityClassGeneratedID> first = snapshot(asOf);
+        long hits = AsOfSnapshotCache.getHits();
+        AsOfSnapshot<EntityClassGeneratedID> second = snapshot(asOf);
+        assertSame(first, second);
+        assertEquals(hits + 1, AsOfSnapshotCache.getHits());
+        assertEquals(1, AsOfSnapshotCache.size());
+    }
+
+    @Test
+    public void testWriteMakesSnapshotStale()
+    {
+        IGuiceContext.get(AsOfSnapshotCacheTest.class)
+                     .seed();
+        LocalDateTime asOf = LocalDateTime.now()
+                                          .plusDays(1);
+        AsOfSnapshot<EntityClassGeneratedID> before = snapshot(asOf);
+        Long id = IGuiceContext.get(AsOfSnapshotCacheTest.class)
+                               .seed();
+        long misses = AsOfSnapshotCache.getMisses();
+        AsOfSnapshot<EntityClassGeneratedID> after = snapshot(asOf);
+        assertNotSame(before, after);
+        assertEquals(misses + 1, AsOfSnapshotCache.getMisses());
+        assertFalse(before.find(id)
+                          .isPresent());
+        assertTrue(after.find(id)
+                        .isPresent());
+        assertEquals(before.size() + 1, after.size());
+    }
+
+    @Test
+    public void testRowBoundEvictsLeastRecentlyUsed()
+    {
+        IGuiceContext.get(AsOfSnapshotCacheTest.class)
+                     .seed();
+        LocalDateTime asOf = LocalDateTime.now()
+                                          .plusDays(1);
+        AsOfSnapshot<EntityClassGeneratedID> first = snapshot(asOf);
+        AsOfSnapshotCache.setMaximumRows(first.size());
+        long evictions = AsOfSnapshotCache.getEvictions();
+        snapshot(asOf.plusDays(1));
+        assertEquals(1, AsOfSnapshotCache.size());
+        assertEquals(evictions + 1, AsOfSnapshotCache.getEvictions());
+        assertNotSame(first, snapshot(asOf));
+    }
+
+    @Test
+    public void testExpiredSnapshotIsReadAgain() throws Exception
+    {
+        IGuiceContext.get(AsOfSnapshotCacheTest.class)
+                     .seed();
+        AsOfSnapshotCache.setTimeToLive(Duration.ofMillis(50));
+        LocalDateTime asOf = LocalDateTime.now()
+                                          .plusDays(1);
+        AsOfSnapshot<EntityClassGeneratedID> first = snapshot(asOf);
+        Thread.sleep(100);
+        long evictions = AsOfSnapshotCache.getEvictions();
+        assertNotSame(first, snapshot(asOf));
+        assertEquals(evictions + 1, AsOfSnapshotCache.getEvictions());
+    }
+
+    private AsOfSnapshot<EntityClassGeneratedID> snapshot(LocalDateTime asOf)
+    {
+        return new EntityClassGeneratedID().builder()
+                                           .getSnapshot(asOf);
+    }
+
+    @Transactional()
+    public Long seed()
+    {
+        EntityClassGeneratedID entity = new EntityClassGeneratedID();
+        entity.persist();
+        return entity.getId();
+    }
+}
@@ -0,0 +1,122 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.enumerations.ActiveFlag;
+import com.entityassist.enumerations.Operand;
+import com.google.inject.persist.Transactional;
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClassGeneratedID;
+import com.test.EntityClassGeneratedIDBuilder;
+import com.test.EntityClassGeneratedID_;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class BulkUpdateTest
+{
+    @BeforeAll
+    public void configUp()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+    }
+
+    @Test
+    public void testLiteralSet()
+    {
+        IGuiceContext.get(BulkUpdateTest.class)
+                     .seed("literal", 3);
+        assertEquals(3, IGuiceContext.get(BulkUpdateTest.class)
+                                     .hide("literal"));
+        for (EntityClassGeneratedID row : rows("literal"))
+        {
+            assertEquals(ActiveFlag.Hidden, row.getActiveFlag());
+        }
+    }
+
+    @Test
+    public void testIncrementInOneStatement()
+    {
+        IGuiceContext.get(BulkUpdateTest.class)
+                     .seed("increment", 3);
+        assertEquals(3, IGuiceContext.get(BulkUpdateTest.class)
+                                     .increment("increment"));
+        assertEquals(3, IGuiceContext.get(BulkUpdateTest.class)
+                                     .increment("increment"));
+        for (EntityClassGeneratedID row : rows("increment"))
+        {
+            assertEquals(2, row.getCounter());
+        }
+    }
+
+    @Test
+    public void testIncrementOverSeveralChunks()
+    {
+        IGuiceContext.get(BulkUpdateTest.class)
+                     .seed("chunked", 5);
+        //Each chunk builds the increment on its own update root
+        assertEquals(5, IGuiceContext.get(BulkUpdateTest.class)
+                                     .incrementInChunks("chunked", 2));
+        assertEquals(5, incrementing("chunked").executeUpdate(2, Duration.ofMillis(1)));
+        for (EntityClassGeneratedID row : rows("chunked"))
+        {
+            assertEquals(2, row.getCounter());
+        }
+    }
+
+    private EntityClassGeneratedIDBuilder incrementing(String code)
+    {
+        return new EntityClassGeneratedID().builder()
+                                           .where(EntityClassGeneratedID_.code, Operand.Equals, code)
+                                           .setExpression(EntityClassGeneratedID_.counter, (root, cb) -> cb.sum(root.get(EntityClassGeneratedID_.counter), 1));
+    }
+
+    private List<EntityClassGeneratedID> rows(String code)
+    {
+        List<EntityClassGeneratedID> rows = new EntityClassGeneratedID().builder()
+                                                                        .where(EntityClassGeneratedID_.code, Operand.Equals, code)
+                                                                        .getAll();
+        assertFalse(rows.isEmpty());
+        return rows;
+    }
+
+    @Transactional()
+    public void seed(String code, int rows)
+    {
+        for (int i = 0; i < rows; i++)
+        {
+            new EntityClassGeneratedID().setCode(code)
+                                        .setCounter(0)
+                                        .persist();
+        }
+    }
+
+    @Transactional()
+    public int hide(String code)
+    {
+        return new EntityClassGeneratedID().builder()
+                                           .where(EntityClassGeneratedID_.code, Operand.Equals, code)
+                                           .set(EntityClassGeneratedID_.activeFlag, ActiveFlag.Hidden)
+                                           .executeUpdate();
+    }
+
+    @Transactional()
+    public int increment(String code)
+    {
+        return incrementing(code).executeUpdate();
+    }
+
+    @Transactional()
+    public long incrementInChunks(String code, long chunkSize)
+    {
+        return incrementing(code).executeUpdate(chunkSize);
+    }
+}
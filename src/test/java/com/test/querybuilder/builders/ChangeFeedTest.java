@@ -0,0 +1,112 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.enumerations.Operand;
+import com.entityassist.querybuilder.builders.ChangeBatch;
+import com.entityassist.querybuilder.builders.FileWatermarkStore;
+import com.google.inject.persist.Transactional;
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClass;
+import com.test.EntityClassGeneratedID;
+import com.test.EntityClassGeneratedID_;
+import com.test.EntityClass_;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ChangeFeedTest
+{
+    @Test
+    public void testEmptyFeedKeepsWatermark() throws Exception
+    {
+        FileWatermarkStore store = new FileWatermarkStore(Files.createTempDirectory("feeds")
+                                                               .resolve("watermarks.properties"));
+        ChangeBatch<EntityClass> batch = new EntityClass().builder()
+                                                          .inActiveRange()
+                                                          .getChanges("sync", store, 100);
+        assertTrue(batch.getResults()
+                        .isEmpty());
+        assertFalse(batch.hasMore());
+        assertNull(batch.getWatermark());
+        batch.acknowledge();
+        assertNull(store.load("sync"));
+    }
+
+    @Test
+    public void testWatermarkStoreSurvivesReopen() throws Exception
+    {
+        Path file = Files.createTempDirectory("feeds")
+                         .resolve("watermarks.properties");
+        new FileWatermarkStore(file).save("sync", "token");
+        assertEquals("token", new FileWatermarkStore(file).load("sync"));
+    }
+
+    @Test
+    public void testOtherOrderingIsRejected()
+    {
+        assertThrows(UnsupportedOperationException.class, () -> new EntityClass().builder()
+                                                                                 .orderBy(EntityClass_.id)
+                                                                                 .getChanges(null, 10));
+    }
+
+    @Test
+    public void testSharedTimestampAcrossBatchesIsReadOnce()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+        List<Long> seeded = IGuiceContext.get(ChangeFeedTest.class)
+                                         .seedSameTimestamp("feed", 5);
+
+        List<Long> read = new ArrayList<>();
+        String watermark = null;
+        int batches = 0;
+        ChangeBatch<EntityClassGeneratedID> batch;
+        do
+        {
+            batch = new EntityClassGeneratedID().builder()
+                                                .where(EntityClassGeneratedID_.code, Operand.Equals, "feed")
+                                                .getChanges(watermark, 2);
+            batch.getResults()
+                 .forEach(row -> read.add(row.getId()));
+            watermark = batch.getWatermark();
+            batches++;
+        }
+        while (batch.hasMore() && batches < 10);
+
+        //Every batch boundary falls between rows with the same timestamp
+        assertEquals(3, batches);
+        //Ties are ordered by identifier, so every row arrives once and in order
+        assertEquals(seeded, read);
+        assertTrue(new EntityClassGeneratedID().builder()
+                                               .where(EntityClassGeneratedID_.code, Operand.Equals, "feed")
+                                               .getChanges(watermark, 2)
+                                               .getResults()
+                                               .isEmpty());
+    }
+
+    @Transactional()
+    public List<Long> seedSameTimestamp(String code, int rows)
+    {
+        OffsetDateTime updated = OffsetDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < rows; i++)
+        {
+            EntityClassGeneratedID entity = new EntityClassGeneratedID().setCode(code);
+            entity.setWarehouseLastUpdatedTimestamp(updated);
+            entity.persist();
+            ids.add(entity.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,184 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.enumerations.Operand;
+import com.google.inject.persist.Transactional;
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClass;
+import com.test.EntityClassGeneratedID;
+import com.test.EntityClassGeneratedID_;
+import com.test.EntityClassTwo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ConcurrentReadTest
+{
+    @BeforeAll
+    public void configUp()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+    }
+
+    @Test
+    public void testAsyncReads() throws Exception
+    {
+        CompletableFuture<List<EntityClass>> rows = new EntityClass().builder()
+                                                                     .inActiveRange()
+                                                                     .getAllAsync();
+        CompletableFuture<Long> count = new EntityClassTwo().builder()
+                                                            .inVisibleRange()
+                                                            .getCountAsync();
+        assertTrue(rows.get(30, TimeUnit.SECONDS)
+                       .isEmpty());
+        assertEquals(0L, count.get(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPartitionedScanOfEmptyTable()
+    {
+        try (Stream<EntityClass> rows = new EntityClass().builder()
+                                                         .inActiveRange()
+                                                         .getAllPartitioned(4))
+        {
+            assertEquals(0, rows.count());
+        }
+        AtomicInteger partitions = new AtomicInteger();
+        new EntityClassTwo().builder()
+                            .getAllPartitioned(4, (partition, rows) -> partitions.incrementAndGet());
+        assertEquals(0, partitions.get());
+    }
+
+    @Test
+    public void testPublisherCompletes() throws Exception
+    {
+        Collector<EntityClass> collector = new Collector<>(1);
+        new EntityClass().builder()
+                         .inActiveRange()
+                         .getPublisher()
+                         .subscribe(collector);
+        assertTrue(collector.received.get(30, TimeUnit.SECONDS)
+                                     .isEmpty());
+    }
+
+    @Test
+    public void testPublisherHonoursDemand() throws Exception
+    {
+        List<Long> seeded = IGuiceContext.get(ConcurrentReadTest.class)
+                                         .seed("publish", 5);
+        Collector<EntityClassGeneratedID> collector = new Collector<>(2);
+        new EntityClassGeneratedID().builder()
+                                    .where(EntityClassGeneratedID_.code, Operand.Equals, "publish")
+                                    .orderBy(EntityClassGeneratedID_.id)
+                                    .getPublisher()
+                                    .subscribe(collector);
+
+        List<EntityClassGeneratedID> rows = collector.received.get(30, TimeUnit.SECONDS);
+        assertFalse(collector.overflowed, "More rows were emitted than requested");
+        List<Long> ids = new ArrayList<>();
+        for (EntityClassGeneratedID row : rows)
+        {
+            ids.add(row.getId());
+        }
+        assertEquals(seeded, ids);
+    }
+
+    @Test
+    public void testPublisherOfProjection() throws Exception
+    {
+        IGuiceContext.get(ConcurrentReadTest.class)
+                     .seed("publish-code", 3);
+        Collector<Object> collector = new Collector<>(2);
+        new EntityClassGeneratedID().builder()
+                                    .selectColumn(EntityClassGeneratedID_.code)
+                                    .where(EntityClassGeneratedID_.code, Operand.Equals, "publish-code")
+                                    .getPublisher()
+                                    .subscribe(collector);
+
+        List<Object> rows = collector.received.get(30, TimeUnit.SECONDS);
+        assertEquals(List.of("publish-code", "publish-code", "publish-code"), rows);
+    }
+
+    @Transactional()
+    public List<Long> seed(String code, int rows)
+    {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < rows; i++)
+        {
+            EntityClassGeneratedID entity = new EntityClassGeneratedID().setCode(code);
+            entity.persist();
+            ids.add(entity.getId());
+        }
+        return ids;
+    }
+
+    //Requests rows a few at a time, asking for more only once the previous request is delivered
+    private static class Collector<T>
+            implements Flow.Subscriber<T>
+    {
+        private final CompletableFuture<List<T>> received = new CompletableFuture<>();
+        private final List<T> rows = new ArrayList<>();
+        private final int batch;
+        private Flow.Subscription subscription;
+        private long requested;
+        private volatile boolean overflowed;
+
+        private Collector(int batch)
+        {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+            request();
+        }
+
+        @Override
+        public void onNext(T item)
+        {
+            rows.add(item);
+            if (rows.size() > requested)
+            {
+                overflowed = true;
+            }
+            if (rows.size() == requested)
+            {
+                request();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            received.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete()
+        {
+            received.complete(rows);
+        }
+
+        private void request()
+        {
+            requested += batch;
+            subscription.request(batch);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.enumerations.ActiveFlag;
+import com.entityassist.querybuilder.builders.CurrentVersionCache;
+import com.google.inject.persist.Transactional;
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClassGeneratedID;
+import com.test.EntityClassGeneratedID_;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class CurrentVersionCacheTest
+{
+    @BeforeAll
+    public void configUp()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+        CurrentVersionCache.clear();
+        CurrentVersionCache.setEnabled(true);
+    }
+
+    @AfterAll
+    public void configDown()
+    {
+        CurrentVersionCache.setEnabled(false);
+        CurrentVersionCache.setTimeToLive(Duration.ofMinutes(5));
+        CurrentVersionCache.clear();
+    }
+
+    @Test
+    public void testRepeatedLookupIsServedFromCache()
+    {
+        Long id = cachedVersion();
+        long hits = CurrentVersionCache.getHits();
+        EntityClassGeneratedID version = findCurrent(id);
+        assertEquals(id, version.getId());
+        assertEquals(hits + 1, CurrentVersionCache.getHits());
+    }
+
+    @Test
+    public void testUpdateEvicts()
+    {
+        Long id = cachedVersion();
+        IGuiceContext.get(CurrentVersionCacheTest.class)
+                     .update(id);
+        assertNotCached(id);
+    }
+
+    @Test
+    public void testArchiveEvicts()
+    {
+        Long id = cachedVersion();
+        IGuiceContext.get(CurrentVersionCacheTest.class)
+                     .archive(id);
+        assertNotCached(id);
+        assertFalse(new EntityClassGeneratedID().builder()
+                                                .findCurrent(EntityClassGeneratedID_.id, id)
+                                                .isPresent());
+    }
+
+    @Test
+    public void testCloseAndReturnNewlyUpdateEvicts()
+    {
+        Long id = cachedVersion();
+        Long newId = IGuiceContext.get(CurrentVersionCacheTest.class)
+                                  .closeAndReturnNewlyUpdate(id);
+        assertNotEquals(id, newId);
+        assertNotCached(id);
+        assertFalse(new EntityClassGeneratedID().builder()
+                                                .findCurrent(EntityClassGeneratedID_.id, id)
+                                                .isPresent());
+    }
+
+    @Test
+    public void testExpiredEntryIsEvicted() throws Exception
+    {
+        CurrentVersionCache.setTimeToLive(Duration.ofMillis(50));
+        try
+        {
+            Long id = cachedVersion();
+            Thread.sleep(100);
+            long evictions = CurrentVersionCache.getEvictions();
+            assertNotCached(id);
+            assertEquals(evictions + 1, CurrentVersionCache.getEvictions());
+        }
+        finally
+        {
+            CurrentVersionCache.setTimeToLive(Duration.ofMinutes(5));
+        }
+    }
+
+    private Long cachedVersion()
+    {
+        Long id = IGuiceContext.get(CurrentVersionCacheTest.class)
+                               .seed();
+        int size = CurrentVersionCache.size();
+        assertEquals(id, findCurrent(id).getId());
+        assertEquals(size + 1, CurrentVersionCache.size());
+        return id;
+    }
+
+    private EntityClassGeneratedID findCurrent(Long id)
+    {
+        return new EntityClassGeneratedID().builder()
+                                           .findCurrent(EntityClassGeneratedID_.id, id)
+                                           .orElseThrow();
+    }
+
+    private void assertNotCached(Long id)
+    {
+        assertNull(CurrentVersionCache.get(EntityClassGeneratedID.class, EntityClassGeneratedID_.id.getName(), id));
+    }
+
+    @Transactional()
+    public Long seed()
+    {
+        EntityClassGeneratedID entity = new EntityClassGeneratedID();
+        entity.persist();
+        return entity.getId();
+    }
+
+    @Transactional()
+    public void update(Long id)
+    {
+        EntityClassGeneratedID entity = new EntityClassGeneratedID().find(id)
+                                                                    .orElseThrow();
+        entity.setActiveFlag(ActiveFlag.Hidden);
+        entity.update();
+    }
+
+    @Transactional()
+    public void archive(Long id)
+    {
+        EntityClassGeneratedID entity = new EntityClassGeneratedID().find(id)
+                                                                    .orElseThrow();
+        entity.builder()
+              .archive(entity);
+    }
+
+    @Transactional()
+    public Long closeAndReturnNewlyUpdate(Long id)
+    {
+        EntityClassGeneratedID entity = new EntityClassGeneratedID().find(id)
+                                                                    .orElseThrow();
+        return entity.builder()
+                     .closeAndReturnNewlyUpdate(entity, ActiveFlag.Archived)
+                     .getId();
+    }
+}
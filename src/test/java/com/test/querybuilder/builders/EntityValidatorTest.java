@@ -0,0 +1,77 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.validation.EntityValidator;
+import com.entityassist.validation.ValidationReport;
+import com.entityassist.validation.ValidationViolation;
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClassGeneratedID;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class EntityValidatorTest
+{
+    @BeforeAll
+    public void configUp()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+    }
+
+    @Test
+    public void testParallelBatchReportsInvalidIndexes()
+    {
+        int size = EntityValidator.parallelThreshold + 44;
+        List<EntityClassGeneratedID> batch = new ArrayList<>(size);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+        {
+            boolean invalid = i % 7 == 3;
+            batch.add(new EntityClassGeneratedID().setCode(invalid ? "too-long-for-the-column-" + i : "ok-" + i));
+            if (invalid)
+            {
+                expected.add(i);
+            }
+        }
+
+        ValidationReport<EntityClassGeneratedID> report = IGuiceContext.get(EntityValidator.class)
+                                                                       .validateAll(batch);
+        assertFalse(report.isValid());
+        assertEquals(size, report.getValidated());
+        List<Integer> indexes = new ArrayList<>();
+        for (ValidationReport.Entry<EntityClassGeneratedID> entry : report.getInvalid())
+        {
+            indexes.add(entry.getIndex());
+            assertSame(batch.get(entry.getIndex()), entry.getEntity());
+            assertEquals(1, entry.getViolations()
+                                 .size());
+            ValidationViolation violation = entry.getViolations()
+                                                 .get(0);
+            assertEquals("code", violation.getPropertyPath());
+            assertEquals(entry.getEntity()
+                              .getCode(), violation.getInvalidValue());
+        }
+        //Reported in batch order even though validated in parallel
+        assertEquals(expected, indexes);
+    }
+
+    @Test
+    public void testCloseRebuildsOnNextUse()
+    {
+        EntityValidator validator = IGuiceContext.get(EntityValidator.class);
+        assertTrue(validator.validate(new EntityClassGeneratedID().setCode("ok"))
+                            .isEmpty());
+        validator.close();
+        assertEquals(1, validator.validate(new EntityClassGeneratedID().setCode("too-long-for-the-column"))
+                                 .size());
+    }
+}
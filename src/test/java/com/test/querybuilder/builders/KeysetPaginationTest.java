@@ -0,0 +1,96 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.EntityAssistException;
+import com.entityassist.enumerations.Operand;
+import com.entityassist.querybuilder.builders.KeysetPage;
+import com.google.inject.persist.Transactional;
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClass;
+import com.test.EntityClassGeneratedID;
+import com.test.EntityClassGeneratedID_;
+import com.test.EntityClassTwo;
+import com.test.EntityClassTwo_;
+import com.test.TransYtd;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class KeysetPaginationTest
+{
+    @Test
+    public void testFirstPageHasNoContinuation()
+    {
+        KeysetPage<EntityClass> page = new EntityClass().builder()
+                                                        .inActiveRange()
+                                                        .getPage(10, null);
+        assertTrue(page.getResults()
+                       .isEmpty());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    public void testOrderedPageWithCompositeKey()
+    {
+        KeysetPage<TransYtd> page = new TransYtd().builder()
+                                                  .getPage(10, null);
+        assertTrue(page.getResults()
+                       .isEmpty());
+        assertNull(page.getContinuationToken());
+
+        KeysetPage<EntityClassTwo> ordered = new EntityClassTwo().builder()
+                                                                 .orderBy(EntityClassTwo_.activeFlag)
+                                                                 .getPage(5, null);
+        assertFalse(ordered.hasNext());
+    }
+
+    @Test
+    public void testForeignTokenIsRejected()
+    {
+        assertThrows(EntityAssistException.class, () -> new EntityClass().builder()
+                                                                         .getPage(10, "bm90LWEtdG9rZW4"));
+    }
+
+    @Test
+    public void testValuesWithControlCharactersPage()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+        //The old separator and null marker characters inside the key values
+        List<String> codes = List.of("keyset\u0000", "keyset\u0000\u0001", "keyset\u0001");
+        IGuiceContext.get(KeysetPaginationTest.class)
+                     .seed(codes);
+
+        List<String> paged = new ArrayList<>();
+        String token = null;
+        do
+        {
+            KeysetPage<EntityClassGeneratedID> page = new EntityClassGeneratedID().builder()
+                                                                                  .where(EntityClassGeneratedID_.code, Operand.InList, codes)
+                                                                                  .orderBy(EntityClassGeneratedID_.code)
+                                                                                  .getPage(1, token);
+            page.getResults()
+                .forEach(row -> paged.add(row.getCode()));
+            token = page.getContinuationToken();
+        }
+        while (token != null);
+        assertEquals(codes, paged);
+    }
+
+    @Transactional()
+    public void seed(List<String> codes)
+    {
+        for (String code : codes)
+        {
+            new EntityClassGeneratedID().setCode(code)
+                                        .persist();
+        }
+    }
+}
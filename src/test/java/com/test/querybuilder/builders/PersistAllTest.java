@@ -0,0 +1,145 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.enumerations.ActiveFlag;
+import com.entityassist.enumerations.Operand;
+import com.entityassist.querybuilder.builders.PersistReport;
+import com.google.inject.persist.Transactional;
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClass;
+import com.test.EntityClassBuilder;
+import com.test.EntityClass_;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class PersistAllTest
+{
+    @BeforeAll
+    public void configUp()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+    }
+
+    @Test
+    public void testPersistsInBatches()
+    {
+        Run run = new Run();
+        IGuiceContext.get(PersistAllTest.class)
+                     .persistAll(entities(9_100_000L, 7), 3, run);
+
+        PersistReport report = run.report;
+        assertTrue(report.isSuccessful());
+        assertFalse(report.isStopped());
+        assertEquals(3, report.getBatches()
+                              .size());
+        assertEquals(List.of(3, 3, 1), sizes(report));
+        assertEquals(7, report.getPersisted());
+        assertEquals(0, report.getFailed());
+        assertFalse(run.managed, "Every persisted entity should be detached");
+        assertEquals(run.jdbcBatchSize, run.restoredJdbcBatchSize);
+        assertEquals(7, count(9_100_000L, 9_100_007L));
+    }
+
+    @Test
+    public void testStopsAtFirstFailedBatch()
+    {
+        IGuiceContext.get(PersistAllTest.class)
+                     .persistAll(entities(9_200_004L, 1), 3, new Run());
+        //The second batch repeats the id already stored and fails on the primary key
+        Run run = new Run();
+        try
+        {
+            IGuiceContext.get(PersistAllTest.class)
+                         .persistAll(entities(9_200_000L, 8), 3, run);
+        }
+        catch (RuntimeException rolledBack)
+        {
+            //Committing a transaction marked rollback only may throw
+        }
+        assertNotNull(run.report);
+
+        PersistReport report = run.report;
+        assertFalse(report.isSuccessful());
+        assertTrue(report.isStopped());
+        assertEquals(2, report.getBatches()
+                              .size());
+        assertNull(report.getBatches()
+                         .get(0)
+                         .getFailure());
+        PersistReport.Batch failed = report.getFailedBatches()
+                                           .get(0);
+        assertEquals(2, failed.getNumber());
+        assertEquals(3, failed.getSize());
+        assertEquals(0, failed.getPersisted());
+        assertNotNull(failed.getFailure());
+        assertEquals(3, report.getPersisted());
+        assertFalse(run.managed, "Neither the flushed nor the failed batch should stay managed");
+        assertEquals(run.jdbcBatchSize, run.restoredJdbcBatchSize);
+        //The failed flush rolls the transaction back, the first batch included
+        assertEquals(1, count(9_200_000L, 9_200_008L));
+    }
+
+    @Transactional()
+    public void persistAll(List<EntityClass> entities, int batchSize, Run run)
+    {
+        EntityClassBuilder builder = new EntityClass().builder()
+                                                      .setPersistBatchSize(batchSize);
+        Session session = builder.getEntityManager()
+                                 .unwrap(Session.class);
+        run.jdbcBatchSize = session.getJdbcBatchSize();
+        run.report = builder.persistAll(entities);
+        run.restoredJdbcBatchSize = session.getJdbcBatchSize();
+        run.managed = entities.stream()
+                              .anyMatch(session::contains);
+    }
+
+    private List<EntityClass> entities(long firstId, int count)
+    {
+        List<EntityClass> entities = new ArrayList<>(count);
+        for (long id = firstId; id < firstId + count; id++)
+        {
+            //Outside the active range, so the tests reading active rows of the shared table do not see them
+            EntityClass entity = new EntityClass().setId(id);
+            entity.setActiveFlag(ActiveFlag.Archived);
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    private List<Integer> sizes(PersistReport report)
+    {
+        List<Integer> sizes = new ArrayList<>();
+        for (PersistReport.Batch batch : report.getBatches())
+        {
+            sizes.add(batch.getSize());
+        }
+        return sizes;
+    }
+
+    private long count(long fromId, long toId)
+    {
+        return new EntityClass().builder()
+                                .where(EntityClass_.id, Operand.GreaterThanEqualTo, fromId)
+                                .where(EntityClass_.id, Operand.LessThan, toId)
+                                .getCount();
+    }
+
+    public static class Run
+    {
+        private PersistReport report;
+        private Integer jdbcBatchSize;
+        private Integer restoredJdbcBatchSize;
+        private boolean managed;
+    }
+}
@@ -0,0 +1,123 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.querybuilder.builders.QueryCoalescer;
+import com.entityassist.querybuilder.builders.QueryPlanCache;
+import com.entityassist.querybuilder.builders.QueryResultCache;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClass;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class QueryCoalescerTest
+{
+    @BeforeAll
+    public void configUp()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+    }
+
+    @Test
+    public void testFollowerReceivesCopiesOfTheLeadersRows() throws Exception
+    {
+        QueryResultCache.ResultKey key = key();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<EntityClass> rows = new ArrayList<>(List.of(new EntityClass().setId(1L)));
+        long executions = QueryCoalescer.getExecutions();
+        long coalesced = QueryCoalescer.getCoalesced();
+
+        CompletableFuture<List<EntityClass>> leader = CompletableFuture.supplyAsync(() -> {
+            List<EntityClass> result = QueryCoalescer.execute(key, blocking(rows, started, release));
+            //The leader's caller owns its list and may change it once returned
+            result.clear();
+            return result;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<EntityClass>> follower = CompletableFuture.supplyAsync(() -> QueryCoalescer.execute(key, () -> fail("The follower must not query")));
+        awaitCoalesced(coalesced + 1);
+        release.countDown();
+
+        List<EntityClass> followed = follower.get(5, TimeUnit.SECONDS);
+        assertTrue(leader.get(5, TimeUnit.SECONDS)
+                         .isEmpty());
+        assertEquals(1, followed.size());
+        assertEquals(1L, followed.get(0)
+                                 .getId());
+        assertNotSame(rows.get(0), followed.get(0));
+        assertEquals(executions + 1, QueryCoalescer.getExecutions());
+    }
+
+    @Test
+    public void testFollowerAfterAWriteRunsItsOwnQuery() throws Exception
+    {
+        QueryResultCache.ResultKey before = key();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        long executions = QueryCoalescer.getExecutions();
+        long coalesced = QueryCoalescer.getCoalesced();
+
+        CompletableFuture<List<EntityClass>> leader = CompletableFuture.supplyAsync(() -> QueryCoalescer.execute(before, blocking(List.of(new EntityClass().setId(1L)), started, release)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        QueryResultCache.invalidate(EntityClass.class);
+        QueryResultCache.ResultKey after = key();
+        assertEquals(before, after);
+        assertFalse(before.isSameGenerations(after));
+
+        List<EntityClass> own = QueryCoalescer.execute(after, () -> new ArrayList<>(List.of(new EntityClass().setId(2L))));
+        release.countDown();
+        assertEquals(2L, own.get(0)
+                            .getId());
+        assertEquals(1L, leader.get(5, TimeUnit.SECONDS)
+                               .get(0)
+                               .getId());
+        assertEquals(coalesced, QueryCoalescer.getCoalesced());
+        assertEquals(executions + 2, QueryCoalescer.getExecutions());
+    }
+
+    private QueryResultCache.ResultKey key()
+    {
+        QueryResultCache.ResultKey key = QueryResultCache.key(new EntityClass().builder(), QueryPlanCache.SELECT, EntityClass.class);
+        assertNotNull(key);
+        return key;
+    }
+
+    private Supplier<List<EntityClass>> blocking(List<EntityClass> rows, CountDownLatch started, CountDownLatch release)
+    {
+        return () -> {
+            started.countDown();
+            try
+            {
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            }
+            catch (InterruptedException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            return new ArrayList<>(rows);
+        };
+    }
+
+    private void awaitCoalesced(long expected) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (QueryCoalescer.getCoalesced() < expected)
+        {
+            assertTrue(System.nanoTime() < deadline, "The follower never joined the leader");
+            Thread.sleep(5);
+        }
+    }
+}
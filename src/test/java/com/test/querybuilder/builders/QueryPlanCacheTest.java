@@ -0,0 +1,52 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.enumerations.Operand;
+import com.entityassist.querybuilder.builders.QueryPlanCache;
+import com.test.EntityClass;
+import com.test.EntityClass_;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class QueryPlanCacheTest
+{
+    @Test
+    public void testSameShapeSharesPlan()
+    {
+        QueryPlanCache.clear();
+        List<EntityClass> first = new EntityClass().builder()
+                                                   .setPlanCached(true)
+                                                   .where(EntityClass_.id, Operand.Equals, 1000L)
+                                                   .inActiveRange()
+                                                   .getAll();
+        int plans = QueryPlanCache.size();
+        List<EntityClass> second = new EntityClass().builder()
+                                                    .setPlanCached(true)
+                                                    .where(EntityClass_.id, Operand.Equals, 2000L)
+                                                    .inActiveRange()
+                                                    .getAll();
+        assertTrue(first.isEmpty());
+        assertTrue(second.isEmpty());
+        assertEquals(1, plans, "The first execution should have compiled a plan");
+        assertEquals(plans, QueryPlanCache.size(), "The same shape with different values should not compile a new plan");
+    }
+
+    @Test
+    public void testDifferentOperandCompilesNewPlan()
+    {
+        QueryPlanCache.clear();
+        new EntityClass().builder()
+                         .setPlanCached(true)
+                         .where(EntityClass_.id, Operand.Equals, 1L)
+                         .getCount();
+        new EntityClass().builder()
+                         .setPlanCached(true)
+                         .where(EntityClass_.id, Operand.GreaterThan, 1L)
+                         .getCount();
+        assertEquals(2, QueryPlanCache.size());
+    }
+}
@@ -0,0 +1,156 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.enumerations.ActiveFlag;
+import com.entityassist.enumerations.Operand;
+import com.entityassist.querybuilder.builders.QueryResultCache;
+import com.google.inject.persist.Transactional;
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClassGeneratedID;
+import com.test.EntityClassGeneratedID_;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class QueryResultCacheTest
+{
+    @BeforeAll
+    public void configUp()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+    }
+
+    @BeforeEach
+    public void reset()
+    {
+        QueryResultCache.clear();
+        QueryResultCache.setTimeToLive(Duration.ofMinutes(5));
+    }
+
+    @AfterAll
+    public void configDown()
+    {
+        QueryResultCache.setTimeToLive(Duration.ofMinutes(5));
+        QueryResultCache.clear();
+    }
+
+    @Test
+    public void testRepeatedQueryIsServedFromCache()
+    {
+        Long id = IGuiceContext.get(QueryResultCacheTest.class)
+                               .seed(ActiveFlag.Active);
+        List<EntityClassGeneratedID> first = byId(id);
+        long hits = QueryResultCache.getHits();
+        List<EntityClassGeneratedID> second = byId(id);
+        assertEquals(hits + 1, QueryResultCache.getHits());
+        assertEquals(1, second.size());
+        assertEquals(first.get(0)
+                          .getId(), second.get(0)
+                                          .getId());
+    }
+
+    @Test
+    public void testPersistInvalidates()
+    {
+        IGuiceContext.get(QueryResultCacheTest.class)
+                     .seed(ActiveFlag.Invisible);
+        long before = countFlagged(ActiveFlag.Invisible);
+        IGuiceContext.get(QueryResultCacheTest.class)
+                     .seed(ActiveFlag.Invisible);
+        long misses = QueryResultCache.getMisses();
+        assertEquals(before + 1, countFlagged(ActiveFlag.Invisible));
+        assertEquals(misses + 1, QueryResultCache.getMisses());
+    }
+
+    @Test
+    public void testUpdateInvalidates()
+    {
+        Long id = IGuiceContext.get(QueryResultCacheTest.class)
+                               .seed(ActiveFlag.Active);
+        assertEquals(ActiveFlag.Active, byId(id).get(0)
+                                                .getActiveFlag());
+        IGuiceContext.get(QueryResultCacheTest.class)
+                     .update(id, ActiveFlag.Hidden);
+        assertEquals(ActiveFlag.Hidden, byId(id).get(0)
+                                                .getActiveFlag());
+    }
+
+    @Test
+    public void testExpiredResultIsReadAgain() throws Exception
+    {
+        Long id = IGuiceContext.get(QueryResultCacheTest.class)
+                               .seed(ActiveFlag.Active);
+        QueryResultCache.setTimeToLive(Duration.ofMillis(50));
+        byId(id);
+        Thread.sleep(100);
+        long evictions = QueryResultCache.getEvictions();
+        long misses = QueryResultCache.getMisses();
+        byId(id);
+        assertEquals(evictions + 1, QueryResultCache.getEvictions());
+        assertEquals(misses + 1, QueryResultCache.getMisses());
+    }
+
+    @Test
+    public void testUncommittedReadsAreNotShared()
+    {
+        assertEquals(0, IGuiceContext.get(QueryResultCacheTest.class)
+                                     .seedAndCount());
+    }
+
+    private List<EntityClassGeneratedID> byId(Long id)
+    {
+        return new EntityClassGeneratedID().builder()
+                                           .setResultCached(true)
+                                           .where(EntityClassGeneratedID_.id, Operand.Equals, id)
+                                           .getAll();
+    }
+
+    private long countFlagged(ActiveFlag flag)
+    {
+        return new EntityClassGeneratedID().builder()
+                                           .setResultCached(true)
+                                           .where(EntityClassGeneratedID_.activeFlag, Operand.Equals, flag)
+                                           .getCount();
+    }
+
+    @Transactional()
+    public Long seed(ActiveFlag flag)
+    {
+        EntityClassGeneratedID entity = new EntityClassGeneratedID();
+        entity.setActiveFlag(flag);
+        entity.persist();
+        return entity.getId();
+    }
+
+    @Transactional()
+    public void update(Long id, ActiveFlag flag)
+    {
+        EntityClassGeneratedID entity = new EntityClassGeneratedID().find(id)
+                                                                    .orElseThrow();
+        entity.setActiveFlag(flag);
+        entity.update();
+    }
+
+    /**
+     * Counts within the transaction that wrote, returning the number of results the count left in the cache
+     */
+    @Transactional()
+    public int seedAndCount()
+    {
+        seed(ActiveFlag.Errored);
+        int size = QueryResultCache.size();
+        assertTrue(countFlagged(ActiveFlag.Errored) > 0);
+        return QueryResultCache.size() - size;
+    }
+}
@@ -0,0 +1,249 @@
+package com.test.querybuilder.builders;
+
+import com.entityassist.SCDEntity;
+import com.entityassist.enumerations.ActiveFlag;
+import com.entityassist.enumerations.Operand;
+import com.google.inject.persist.Transactional;
+import com.guicedee.client.IGuiceContext;
+import com.guicedee.guicedinjection.GuiceContext;
+import com.test.EntityAssistTestDBModule;
+import com.test.EntityClassGeneratedID;
+import com.test.EntityClassGeneratedID_;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SCDVersioningTest
+{
+    private static final OffsetDateTime closedAt = OffsetDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final OffsetDateTime endOfTime = SCDEntity.EndOfTime.atOffset(ZoneOffset.UTC);
+
+    @BeforeAll
+    public void configUp()
+    {
+        GuiceContext.instance()
+                    .loadIGuiceModules()
+                    .add(new EntityAssistTestDBModule());
+    }
+
+    @Test
+    public void testSoftDeleteLeavesHistoricalVersions()
+    {
+        Long historical = IGuiceContext.get(SCDVersioningTest.class)
+                                       .seedHistorical("soft-delete");
+        Long current = IGuiceContext.get(SCDVersioningTest.class)
+                                    .seedCurrent("soft-delete");
+
+        assertEquals(1, IGuiceContext.get(SCDVersioningTest.class)
+                                     .softDelete("soft-delete"));
+        assertHistorical(historical);
+        assertEquals(1, count(current, ActiveFlag.Deleted, Operand.LessThan, endOfTime));
+    }
+
+    @Test
+    public void testArchiveMatchingLeavesHistoricalVersions()
+    {
+        Long historical = IGuiceContext.get(SCDVersioningTest.class)
+                                       .seedHistorical("archive-matching");
+        Long current = IGuiceContext.get(SCDVersioningTest.class)
+                                    .seedCurrent("archive-matching");
+
+        assertEquals(1, IGuiceContext.get(SCDVersioningTest.class)
+                                     .archiveMatching("archive-matching"));
+        assertHistorical(historical);
+        assertEquals(1, count(current, ActiveFlag.Archived, Operand.LessThan, endOfTime));
+    }
+
+    @Test
+    public void testBatchVersioningClosesCurrentRows()
+    {
+        List<Long> current = List.of(IGuiceContext.get(SCDVersioningTest.class)
+                                                  .seedCurrent("version-batch"),
+                                     IGuiceContext.get(SCDVersioningTest.class)
+                                                  .seedCurrent("version-batch"),
+                                     IGuiceContext.get(SCDVersioningTest.class)
+                                                  .seedCurrent("version-batch"));
+
+        List<Long> versions = IGuiceContext.get(SCDVersioningTest.class)
+                                           .version("version-batch", current);
+        assertEquals(3, versions.size());
+        for (Long closed : current)
+        {
+            assertFalse(versions.contains(closed));
+            assertEquals(1, count(closed, ActiveFlag.Archived, Operand.LessThan, endOfTime));
+        }
+        for (Long version : versions)
+        {
+            assertEquals(1, count(version, ActiveFlag.Active, Operand.Equals, endOfTime));
+        }
+        assertEquals(6L, rows("version-batch"));
+    }
+
+    @Test
+    public void testBatchVersioningRejectsAClosedVersion()
+    {
+        Long historical = IGuiceContext.get(SCDVersioningTest.class)
+                                       .seedHistorical("version-stale");
+        List<Long> current = List.of(IGuiceContext.get(SCDVersioningTest.class)
+                                                  .seedCurrent("version-stale"),
+                                     IGuiceContext.get(SCDVersioningTest.class)
+                                                  .seedCurrent("version-stale"));
+        List<Long> batch = new ArrayList<>(current);
+        batch.add(historical);
+
+        assertThrows(RuntimeException.class, () -> IGuiceContext.get(SCDVersioningTest.class)
+                                                                .version("version-stale", batch));
+        //The transaction rolled back, the closed version kept its dates and no version was closed or inserted
+        assertHistorical(historical);
+        for (Long open : current)
+        {
+            assertEquals(1, count(open, ActiveFlag.Active, Operand.Equals, endOfTime));
+        }
+        assertEquals(3L, rows("version-stale"));
+    }
+
+    @Test
+    public void testMergeSnapshotVersionsOnlyChangedRows()
+    {
+        Long unchanged = IGuiceContext.get(SCDVersioningTest.class)
+                                      .seedCurrent("merge");
+        Long changed = IGuiceContext.get(SCDVersioningTest.class)
+                                    .seedCurrent("merge");
+        Long historical = IGuiceContext.get(SCDVersioningTest.class)
+                                       .seedHistorical("merge");
+
+        List<EntityClassGeneratedID> incoming = List.of(new EntityClassGeneratedID().setCode("merge")
+                                                                                    .setId(unchanged),
+                                                        new EntityClassGeneratedID().setCode("merge")
+                                                                                    .setCounter(5)
+                                                                                    .setId(changed),
+                                                        new EntityClassGeneratedID().setCode("merge")
+                                                                                    .setCounter(7),
+                                                        //Carries the id of a closed version, so is inserted as a new row
+                                                        new EntityClassGeneratedID().setCode("merge")
+                                                                                    .setCounter(9)
+                                                                                    .setId(historical));
+        List<EntityClassGeneratedID> detected = new EntityClassGeneratedID().builder()
+                                                                            .getChanged(incoming);
+        assertEquals(3, detected.size());
+        for (int i = 0; i < detected.size(); i++)
+        {
+            assertSame(incoming.get(i + 1), detected.get(i));
+        }
+
+        List<Long> written = IGuiceContext.get(SCDVersioningTest.class)
+                                          .merge(incoming);
+        assertEquals(3, written.size());
+        assertFalse(written.contains(unchanged));
+        assertFalse(written.contains(changed));
+        assertFalse(written.contains(historical));
+        assertEquals(1, count(unchanged, ActiveFlag.Active, Operand.Equals, endOfTime));
+        assertEquals(1, count(changed, ActiveFlag.Archived, Operand.LessThan, endOfTime));
+        assertHistorical(historical);
+        for (Long id : written)
+        {
+            assertEquals(1, count(id, ActiveFlag.Active, Operand.Equals, endOfTime));
+        }
+        assertEquals(6L, rows("merge"));
+    }
+
+    private void assertHistorical(Long id)
+    {
+        assertEquals(1, count(id, ActiveFlag.Archived, Operand.Equals, closedAt), "A closed version must keep its flag and effective to date");
+        assertEquals(1L, new EntityClassGeneratedID().builder()
+                                                     .where(EntityClassGeneratedID_.id, Operand.Equals, id)
+                                                     .where(EntityClassGeneratedID_.warehouseLastUpdatedTimestamp, Operand.Equals, closedAt)
+                                                     .getCount());
+    }
+
+    private long count(Long id, ActiveFlag flag, Operand effectiveTo, OffsetDateTime date)
+    {
+        //Counted in the database, the persistence context may still hold the entities from before the bulk update
+        return new EntityClassGeneratedID().builder()
+                                           .where(EntityClassGeneratedID_.id, Operand.Equals, id)
+                                           .where(EntityClassGeneratedID_.activeFlag, Operand.Equals, flag)
+                                           .where(EntityClassGeneratedID_.effectiveToDate, effectiveTo, date)
+                                           .getCount();
+    }
+
+    private Long rows(String code)
+    {
+        return new EntityClassGeneratedID().builder()
+                                           .where(EntityClassGeneratedID_.code, Operand.Equals, code)
+                                           .getCount();
+    }
+
+    @Transactional()
+    public List<Long> version(String code, List<Long> ids)
+    {
+        List<EntityClassGeneratedID> changed = new ArrayList<>();
+        for (Long id : ids)
+        {
+            changed.add(new EntityClassGeneratedID().setCode(code)
+                                                    .setCounter(1)
+                                                    .setId(id));
+        }
+        List<Long> versions = new ArrayList<>();
+        for (EntityClassGeneratedID version : new EntityClassGeneratedID().builder()
+                                                                          .closeAndReturnNewlyUpdate(changed, ActiveFlag.Archived))
+        {
+            versions.add(version.getId());
+        }
+        return versions;
+    }
+
+    @Transactional()
+    public List<Long> merge(List<EntityClassGeneratedID> incoming)
+    {
+        List<Long> written = new ArrayList<>();
+        for (EntityClassGeneratedID entity : new EntityClassGeneratedID().builder()
+                                                                         .mergeSnapshot(incoming, ActiveFlag.Archived))
+        {
+            written.add(entity.getId());
+        }
+        return written;
+    }
+
+    @Transactional()
+    public Long seedHistorical(String code)
+    {
+        EntityClassGeneratedID entity = new EntityClassGeneratedID().setCode(code);
+        entity.setActiveFlag(ActiveFlag.Archived);
+        entity.setEffectiveToDate(closedAt);
+        entity.setWarehouseLastUpdatedTimestamp(closedAt);
+        entity.persist();
+        return entity.getId();
+    }
+
+    @Transactional()
+    public Long seedCurrent(String code)
+    {
+        EntityClassGeneratedID entity = new EntityClassGeneratedID().setCode(code);
+        entity.persist();
+        return entity.getId();
+    }
+
+    @Transactional()
+    public int softDelete(String code)
+    {
+        return new EntityClassGeneratedID().builder()
+                                           .where(EntityClassGeneratedID_.code, Operand.Equals, code)
+                                           .softDelete();
+    }
+
+    @Transactional()
+    public int archiveMatching(String code)
+    {
+        return new EntityClassGeneratedID().builder()
+                                           .where(EntityClassGeneratedID_.code, Operand.Equals, code)
+                                           .archiveMatching();
+    }
+}
@@ -10,6 +10,6 @@ module entity.assist.test {
 
     provides IGuiceModule with EntityAssistTestDBModule;
 
-    opens com.test to org.junit.platform.commons,org.hibernate.orm.core,com.google.guice,net.bytebuddy,com.entityassist;
+    opens com.test to org.junit.platform.commons,org.hibernate.orm.core,com.google.guice,net.bytebuddy,com.entityassist,org.hibernate.validator;
 
 }
\ No newline at end of file